@@ -19,7 +19,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 @SmallTest
@@ -90,6 +93,45 @@ public class ClientTest {
         client.notify(new RuntimeException("Testing"));
     }
 
+    @Test
+    public void testOutOfMemoryPersistsPendingSessions() {
+        config.setSessionBatchWindowMs(60000);
+        config.setDelivery(new Delivery() {
+            @Override
+            public void deliver(@NonNull SessionTrackingPayload payload,
+                                @NonNull Configuration config)
+                throws DeliveryFailureException {
+                throw new DeliveryFailureException("Offline");
+            }
+
+            @Override
+            public void deliver(@NonNull Report report, @NonNull Configuration config) {
+            }
+        });
+        client = new Client(context, config);
+        List<File> before = storedSessions();
+
+        // the session is buffered until the batch window elapses
+        client.startSession();
+        client.cacheAndNotify(new OutOfMemoryError(), Severity.ERROR, new MetaData(),
+            HandledState.REASON_UNHANDLED_EXCEPTION, null, Thread.currentThread());
+
+        List<File> stored = storedSessions();
+        stored.removeAll(before);
+        assertEquals(1, stored.size());
+    }
+
+    private List<File> storedSessions() {
+        List<File> files = new ArrayList<>();
+
+        for (File file : new File(client.sessionStore.storeDirectory).listFiles()) {
+            if (!client.sessionStore.isReservedFile(file)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void testConfig() {
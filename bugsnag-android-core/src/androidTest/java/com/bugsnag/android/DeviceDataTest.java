@@ -1,12 +1,14 @@
 package com.bugsnag.android;
 
 import static com.bugsnag.android.BugsnagTestUtils.mapToJson;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
+import android.os.Build;
 import androidx.test.core.app.ApplicationProvider;
 
 import org.json.JSONException;
@@ -21,16 +23,19 @@ import java.util.Map;
 public class DeviceDataTest {
 
     private Map<String, Object> deviceData;
+    private Connectivity connectivity;
+    private Context context;
+    private SharedPreferences prefs;
 
     /**
      * Generates a device data object
      */
     @Before
     public void setUp() throws Exception {
-        Connectivity connectivity = BugsnagTestUtils.generateConnectivity();
-        Context context = ApplicationProvider.getApplicationContext();
+        connectivity = BugsnagTestUtils.generateConnectivity();
+        context = ApplicationProvider.getApplicationContext();
         Resources resources = context.getResources();
-        SharedPreferences prefs = context.getSharedPreferences("", Context.MODE_PRIVATE);
+        prefs = context.getSharedPreferences("", Context.MODE_PRIVATE);
         DeviceData deviceData = new DeviceData(connectivity, context, resources, prefs);
         this.deviceData = deviceData.getDeviceData();
     }
@@ -60,4 +65,24 @@ public class DeviceDataTest {
         assertNotNull(deviceDataJson.getString("orientation"));
     }
 
+    @Test
+    public void testPersistedRootStatusIsReused() {
+        prefs.edit()
+            .putBoolean("device.rooted", true)
+            .putString("device.rooted.fingerprint", Build.FINGERPRINT)
+            .commit();
+        DeviceData data = new DeviceData(connectivity, context, context.getResources(), prefs);
+        assertEquals(true, data.getDeviceDataSummary().get("jailbroken"));
+    }
+
+    @Test
+    public void testRootStatusDetectedAfterOsUpdate() {
+        prefs.edit()
+            .putBoolean("device.rooted", true)
+            .putString("device.rooted.fingerprint", "previous-build")
+            .commit();
+        DeviceData data = new DeviceData(connectivity, context, context.getResources(), prefs);
+        assertNotNull(data.getDeviceDataSummary().get("jailbroken"));
+        assertEquals(Build.FINGERPRINT, prefs.getString("device.rooted.fingerprint", null));
+    }
 }
@@ -58,6 +58,26 @@ public class ErrorReaderTest {
         assertNotNull(error);
     }
 
+    @Test
+    public void testReadCompressedError() throws IOException {
+        ClassLoader classLoader = ErrorReaderTest.class.getClassLoader();
+        InputStream input = classLoader.getResourceAsStream("error.json");
+        File fixtureFile = File.createTempFile("error", ".json");
+        OutputStream output = PayloadCompression.GZIP.compress(new FileOutputStream(fixtureFile));
+        try {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        } finally {
+            output.close();
+        }
+        Error compressed = ErrorReader.readError(new Configuration("key"), fixtureFile);
+        assertEquals(error.getExceptionName(), compressed.getExceptionName());
+        assertEquals(error.getAppData(), compressed.getAppData());
+    }
+
     @Test(expected = IOException.class)
     public void testReadPartialFileThrows() throws IOException {
         File fixtureFile = null;
@@ -68,6 +68,8 @@ internal class CustomFileStore(
     maxStoreCount: Int,
     comparator: java.util.Comparator<File>?,
     delegate: Delegate?
-) : FileStore<CustomStreamable>(config, appContext, folder, maxStoreCount, comparator, delegate) {
+) : FileStore<CustomStreamable>(
+    config, appContext, folder, maxStoreCount, Long.MAX_VALUE, comparator, delegate
+) {
     override fun getFilename(`object`: Any?) = "$folder/foo.json"
 }
@@ -20,6 +20,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
@@ -109,6 +110,27 @@ public class SessionTrackingPayloadTest {
         assertEquals(2, sessions.length());
     }
 
+    /**
+     * Serialises a batch of sessions along with a stored session file
+     */
+    @Test
+    public void testBatchedSessions() throws Exception {
+        sessionStore.write(generateSession());
+        List<File> storedFiles = sessionStore.findStoredFiles();
+        Session other = new Session("other", new Date(), null, false);
+
+        SessionTrackingPayload payload = SessionTrackingPayload.forSessions(
+            Arrays.asList(session, other), storedFiles, appData, deviceData);
+        assertEquals(session, payload.getSession());
+        assertEquals(2, payload.getSessions().size());
+        rootNode = streamableToJson(payload);
+
+        JSONArray sessions = rootNode.getJSONArray("sessions");
+        assertEquals(3, sessions.length());
+        assertEquals("test", sessions.getJSONObject(1).getString("id"));
+        assertEquals("other", sessions.getJSONObject(2).getString("id"));
+    }
+
     @Test
     public void testAutoCapturedOverride() throws Exception {
         session = new Session("id", new Date(), null, false);
@@ -9,7 +9,9 @@ import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,6 +24,9 @@ class AppData {
     static final String RELEASE_STAGE_DEVELOPMENT = "development";
     static final String RELEASE_STAGE_PRODUCTION = "production";
 
+    // the low memory state is collected again after this period, as it requires a binder call
+    private static final long LOW_MEMORY_TTL_MS = 5 * 1000;
+
     private final Context appContext;
     private final Configuration config;
     private final SessionTracker sessionTracker;
@@ -40,6 +45,14 @@ class AppData {
 
     private PackageManager packageManager;
 
+    private final CachedValue<Boolean> lowMemory = new CachedValue<Boolean>(LOW_MEMORY_TTL_MS) {
+        @Nullable
+        @Override
+        Boolean compute() {
+            return isLowMemory();
+        }
+    };
+
     AppData(Context appContext, PackageManager packageManager,
             Configuration config, SessionTracker sessionTracker) {
         this.appContext = appContext;
@@ -90,10 +103,18 @@ class AppData {
         map.put("versionName", calculateVersionName());
         map.put("activeScreen", getActiveScreenClass());
         map.put("memoryUsage", getMemoryUsage());
-        map.put("lowMemory", isLowMemory());
+        map.put("lowMemory", lowMemory.get());
         return map;
     }
 
+    /**
+     * Gets the values which change frequently and are expensive to collect, so should be
+     * refreshed by a {@link MetricsSampler}
+     */
+    List<CachedValue<?>> getSampledValues() {
+        return Collections.<CachedValue<?>>singletonList(lowMemory);
+    }
+
     void setBinaryArch(String binaryArch) {
         this.binaryArch = binaryArch;
     }
@@ -1,11 +1,16 @@
 package com.bugsnag.android;
 
 import android.annotation.SuppressLint;
+import android.app.Application;
 import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Static access to a Bugsnag Client, the easiest way to use Bugsnag in your Android app.
@@ -21,8 +26,14 @@ public final class Bugsnag {
 
     private static final Object lock = new Object();
 
+    private static final String INIT_THREAD_NAME = "Bugsnag Init";
+
     @SuppressLint("StaticFieldLeak")
-    static Client client;
+    static volatile Client client;
+
+    // guarded by lock
+    @Nullable
+    private static Future<Client> pendingInit;
 
     private Bugsnag() {
     }
@@ -73,13 +84,81 @@ public final class Bugsnag {
     @NonNull
     public static Client init(@NonNull Context androidContext, @NonNull Configuration config) {
         synchronized (lock) {
-            if (client == null) {
+            if (client == null && pendingInit == null) {
                 client = new Client(androidContext, config);
-            } else {
+                return client;
+            }
+            logClientInitWarning();
+        }
+        return getClient();
+    }
+
+    /**
+     * Initialize the static Bugsnag client on a background thread, so that the app's startup
+     * is not delayed. An uncaught exception handler is installed immediately, which waits
+     * briefly for initialization to complete if an exception is thrown before then.
+     * <p>
+     * Any other Bugsnag methods which are called before initialization completes will block
+     * until the client is ready. The returned future can be used to wait for the client
+     * without blocking, for instance by checking {@link Future#isDone()}.
+     *
+     * @param androidContext an Android context, usually <code>this</code>
+     * @param config         a configuration for the Client
+     * @return a future which completes once the client has been initialized
+     */
+    @NonNull
+    public static Future<Client> initAsync(@NonNull Context androidContext,
+                                           @NonNull final Configuration config) {
+        synchronized (lock) {
+            if (client != null || pendingInit != null) {
                 logClientInitWarning();
+                return pendingInit != null ? pendingInit : completedFuture(client);
+            }
+            final Context appContext = androidContext.getApplicationContext();
+            final DeferredLifecycleCallbacks lifecycleCallbacks = new DeferredLifecycleCallbacks();
+
+            if (appContext instanceof Application) {
+                ((Application) appContext).registerActivityLifecycleCallbacks(lifecycleCallbacks);
             }
+            FutureTask<Client> task = new FutureTask<>(new Callable<Client>() {
+                @Override
+                public Client call() {
+                    try {
+                        Client newClient = new Client(appContext, config, lifecycleCallbacks);
+                        client = newClient;
+                        lifecycleCallbacks.setDelegate(newClient.sessionTracker);
+                        return newClient;
+                    } catch (RuntimeException exception) {
+                        // stop buffering callbacks, which would retain each activity
+                        if (appContext instanceof Application) {
+                            ((Application) appContext)
+                                .unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+                        }
+                        throw exception;
+                    } finally {
+                        ExceptionHandler.onStartupComplete();
+                    }
+                }
+            });
+
+            if (config.getEnableExceptionHandler()) {
+                ExceptionHandler.enableDuringStartup(task);
+            }
+            pendingInit = task;
+            new Thread(task, INIT_THREAD_NAME).start();
+            return task;
         }
-        return client;
+    }
+
+    private static Future<Client> completedFuture(final Client client) {
+        FutureTask<Client> task = new FutureTask<>(new Callable<Client>() {
+            @Override
+            public Client call() {
+                return client;
+            }
+        });
+        task.run();
+        return task;
     }
 
     private static void logClientInitWarning() {
@@ -739,10 +818,35 @@ public final class Bugsnag {
     @NonNull
     public static Client getClient() {
         if (client == null) {
-            throw new IllegalStateException("You must call Bugsnag.init before any"
-                + " other Bugsnag methods");
+            Future<Client> init;
+
+            synchronized (lock) {
+                init = pendingInit;
+            }
+            if (init == null) {
+                throw new IllegalStateException("You must call Bugsnag.init before any"
+                    + " other Bugsnag methods");
+            }
+            return awaitClient(init);
         }
 
         return client;
     }
+
+    /**
+     * Waits for a client which is being initialized in the background
+     */
+    @NonNull
+    private static Client awaitClient(@NonNull Future<Client> init) {
+        try {
+            return init.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while Bugsnag was initializing",
+                exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Bugsnag failed to initialize",
+                exception.getCause());
+        }
+    }
 }
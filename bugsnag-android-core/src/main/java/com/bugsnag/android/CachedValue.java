@@ -0,0 +1,95 @@
+package com.bugsnag.android;
+
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A value which is expensive to collect, such as one which requires a binder call. The value
+ * is cached until it is invalidated by an event which may have changed it, or until its
+ * time-to-live elapses if no such event is available.
+ * <p>
+ * While a {@link MetricsSampler} refreshes the value in the background the time-to-live is
+ * not applied, so that reading the value does not block on collecting it.
+ */
+abstract class CachedValue<T> {
+
+    /**
+     * A cached value, and the invalidation generation it was computed in
+     */
+    private static final class Entry<T> {
+        @Nullable
+        final T value;
+        final int generation;
+        final long computedAtNs;
+
+        Entry(@Nullable T value, int generation, long computedAtNs) {
+            this.value = value;
+            this.generation = generation;
+            this.computedAtNs = computedAtNs;
+        }
+    }
+
+    private final long ttlNs;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    @Nullable
+    private volatile Entry<T> entry;
+    private volatile boolean sampled;
+
+    /**
+     * @param ttlMs the time after which the value is collected again, or 0 if the value should
+     *              be cached until it is invalidated
+     */
+    CachedValue(long ttlMs) {
+        this.ttlNs = ttlMs > 0 ? TimeUnit.MILLISECONDS.toNanos(ttlMs) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Collects the current value
+     */
+    @Nullable
+    abstract T compute();
+
+    /**
+     * Gets the cached value, collecting it if the cache is empty, invalidated, or expired
+     */
+    @Nullable
+    T get() {
+        Entry<T> current = entry;
+        int currentGeneration = generation.get();
+        long nowNs = System.nanoTime();
+
+        if (current == null
+            || current.generation != currentGeneration
+            || (!sampled && nowNs - current.computedAtNs >= ttlNs)) {
+            // if invalidated while computing, the entry is ignored by the next call to get()
+            current = new Entry<>(compute(), currentGeneration, nowNs);
+            entry = current;
+        }
+        return current.value;
+    }
+
+    /**
+     * Collects the value, replacing any cached value
+     */
+    void refresh() {
+        int currentGeneration = generation.get();
+        entry = new Entry<>(compute(), currentGeneration, System.nanoTime());
+    }
+
+    /**
+     * Sets whether the value is periodically refreshed, in which case it does not expire
+     */
+    void setSampled(boolean sampled) {
+        this.sampled = sampled;
+    }
+
+    /**
+     * Discards the cached value, so that it is collected again on next access
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+    }
+}
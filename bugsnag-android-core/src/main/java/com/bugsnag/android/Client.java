@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
@@ -76,12 +77,15 @@ public class Client extends Observable implements Observer {
 
     final SessionStore sessionStore;
 
+    private final EmergencyReporter emergencyReporter;
+
     final EventReceiver eventReceiver;
     final SessionTracker sessionTracker;
     final SharedPreferences sharedPrefs;
 
     private final OrientationEventListener orientationListener;
     private final Connectivity connectivity;
+    private final MetricsSampler metricsSampler;
     final StorageManager storageManager;
 
     @Nullable
@@ -90,6 +94,8 @@ public class Client extends Observable implements Observer {
     @Nullable
     private Class<?> anrPluginClz;
 
+    private final StartupTracer startupTracer;
+
     /**
      * Initialize a Bugsnag client
      *
@@ -130,6 +136,23 @@ public class Client extends Observable implements Observer {
      * @param configuration  a configuration for the Client
      */
     public Client(@NonNull Context androidContext, @NonNull Configuration configuration) {
+        this(androidContext, configuration, null);
+    }
+
+    /**
+     * Initialize a Bugsnag client on a background thread
+     *
+     * @param androidContext     an Android context, usually <code>this</code>
+     * @param configuration      a configuration for the Client
+     * @param lifecycleCallbacks callbacks which were registered before initialization started,
+     *                           which the caller forwards to the session tracker once the
+     *                           Client is constructed. If null the session tracker is
+     *                           registered for activity lifecycle callbacks directly.
+     */
+    Client(@NonNull Context androidContext, @NonNull Configuration configuration,
+           @Nullable DeferredLifecycleCallbacks lifecycleCallbacks) {
+        startupTracer = new StartupTracer(configuration.getEnableStartupTracing());
+        startupTracer.beginSection("init");
         warnIfNotAppContext(androidContext);
         appContext = androidContext.getApplicationContext();
         config = configuration;
@@ -139,6 +162,8 @@ public class Client extends Observable implements Observer {
         connectivity = new ConnectivityCompat(appContext, new Function1<Boolean, Unit>() {
             @Override
             public Unit invoke(Boolean connected) {
+                deviceData.onNetworkChanged();
+
                 if (connected) {
                     errorStore.flushAsync();
                 }
@@ -156,11 +181,22 @@ public class Client extends Observable implements Observer {
         eventReceiver = new EventReceiver(this);
 
         // Set up and collect constant app and device diagnostics
+        startupTracer.beginSection("loadPrefs");
         sharedPrefs = appContext.getSharedPreferences(SHARED_PREF_KEY, Context.MODE_PRIVATE);
+        startupTracer.endSection();
 
+        startupTracer.beginSection("createAppData");
         appData = new AppData(appContext, appContext.getPackageManager(), config, sessionTracker);
+        startupTracer.endSection();
+
+        startupTracer.beginSection("createDeviceData");
         Resources resources = appContext.getResources();
         deviceData = new DeviceData(connectivity, this.appContext, resources, sharedPrefs);
+        startupTracer.endSection();
+
+        List<CachedValue<?>> sampledValues = new ArrayList<>(deviceData.getSampledValues());
+        sampledValues.addAll(appData.getSampledValues());
+        metricsSampler = new MetricsSampler(sampledValues, config.getMetricsSamplingPeriodMs());
 
         // Set up breadcrumbs
         breadcrumbs = new Breadcrumbs(configuration);
@@ -181,7 +217,9 @@ public class Client extends Observable implements Observer {
             user.setId(deviceId);
         }
 
-        if (appContext instanceof Application) {
+        if (lifecycleCallbacks != null) {
+            Logger.info("Activity lifecycle callbacks were registered before initialization");
+        } else if (appContext instanceof Application) {
             Application application = (Application) appContext;
             application.registerActivityLifecycleCallbacks(sessionTracker);
         } else {
@@ -208,6 +246,7 @@ public class Client extends Observable implements Observer {
         }
 
         // Create the error store that is used in the exception handler
+        startupTracer.beginSection("createErrorStore");
         errorStore = new ErrorStore(config, appContext, new ErrorStore.Delegate() {
             @Override
             public void onErrorIOFailure(Exception exc, File errorFile, String context) {
@@ -230,6 +269,14 @@ public class Client extends Observable implements Observer {
                 Client.this.reportInternalBugsnagError(err);
             }
         });
+        startupTracer.endSection();
+
+        // Recover any crash written to the scratch file by the previous process
+        startupTracer.beginSection("prepareCrashScratchFile");
+        errorStore.prepareCrashScratchFile();
+        startupTracer.endSection();
+        emergencyReporter = new EmergencyReporter(config, appData, deviceData, breadcrumbs,
+            errorStore);
 
         // Install a default exception handler with this client
         if (config.getEnableExceptionHandler()) {
@@ -288,14 +335,24 @@ public class Client extends Observable implements Observer {
             Logger.warn("Failed to set up orientation tracking: " + ex);
         }
 
+        // sampling is started and suspended by foreground changes after this
+        metricsSampler.setInForeground(Boolean.TRUE.equals(sessionTracker.isInForeground()));
+
         // Flush any on-disk errors
+        startupTracer.beginSection("flushOnLaunch");
         errorStore.flushOnLaunch();
+        startupTracer.endSection();
+
+        startupTracer.beginSection("loadPlugins");
         loadPlugins();
+        startupTracer.endSection();
 
         // react to changes in config
         ClientConfigObserver observer = new ClientConfigObserver(this, config);
         config.addObserver(observer);
         client.addObserver(observer);
+        startupTracer.endSection();
+        startupTracer.finish();
     }
 
     void recordStorageCacheBehavior(MetaData metaData) {
@@ -316,9 +373,18 @@ public class Client extends Observable implements Observer {
 
     private void loadPlugins() {
         NativeInterface.setClient(this);
+
+        startupTracer.beginSection("loadNdkPlugin");
         enableOrDisableNdkReporting();
+        startupTracer.endSection();
+
+        startupTracer.beginSection("loadAnrPlugin");
         enableOrDisableAnrReporting();
+        startupTracer.endSection();
+
+        startupTracer.beginSection("loadRegisteredPlugins");
         BugsnagPluginInterface.INSTANCE.loadRegisteredPlugins(this);
+        startupTracer.endSection();
     }
 
     void enableOrDisableNdkReporting() {
@@ -370,6 +436,13 @@ public class Client extends Observable implements Observer {
     @Override
     public void update(@NonNull Observable observable, @NonNull Object arg) {
         if (arg instanceof Message) {
+            Message msg = (Message) arg;
+
+            if (msg.type == NativeInterface.MessageType.UPDATE_IN_FOREGROUND
+                && msg.value instanceof List) {
+                Object inForeground = ((List<?>) msg.value).get(0);
+                metricsSampler.setInForeground(Boolean.TRUE.equals(inForeground));
+            }
             setChanged();
             super.notifyObservers(arg);
         }
@@ -659,6 +732,26 @@ public class Client extends Observable implements Observer {
         return deviceData;
     }
 
+    /**
+     * Gets the time taken by each phase of initializing this Client, in nanoseconds. The
+     * overall time is recorded as "init", and each phase within it, such as "createDeviceData"
+     * or "flushOnLaunch", is recorded under its own name in the order it started.
+     * <p>
+     * Timings are only recorded if {@link Configuration#setEnableStartupTracing(boolean)} was
+     * enabled before the Client was created, otherwise the map is empty.
+     *
+     * @return the duration of each initialization phase in nanoseconds
+     */
+    @NonNull
+    public Map<String, Long> getStartupTimings() {
+        return startupTracer.getTimings();
+    }
+
+    @NonNull
+    StartupTracer getStartupTracer() {
+        return startupTracer;
+    }
+
     /**
      * Removes the current user data and sets it back to defaults
      */
@@ -1038,6 +1131,12 @@ public class Client extends Observable implements Observer {
                 errorStore.write(error);
                 errorStore.flushAsync();
                 break;
+            case CACHE_PENDING:
+                errorStore.writePendingError(error);
+                break;
+            case CACHE_UNHANDLED:
+                errorStore.writeUnhandledError(error);
+                break;
             default:
                 break;
         }
@@ -1082,7 +1181,8 @@ public class Client extends Observable implements Observer {
                             headers.put("Bugsnag-Internal-Error", "true");
                             headers.remove(Configuration.HEADER_API_KEY);
                             DefaultDelivery defaultDelivery = (DefaultDelivery) delivery;
-                            defaultDelivery.deliver(config.getEndpoint(), report, headers);
+                            defaultDelivery.deliver(config.getEndpoint(), report, headers,
+                                config.getPayloadCompression());
                         }
 
                     } catch (Exception exception) {
@@ -1483,22 +1583,49 @@ public class Client extends Observable implements Observer {
     }
 
     /**
-     * Caches an error then attempts to notify.
+     * Caches an error then attempts to notify. Errors caused by memory being exhausted are
+     * stored as a reduced report by the {@link EmergencyReporter} instead. In either case,
+     * pending sessions are persisted so that they are delivered on the next launch.
      *
      * Should only ever be called from the {@link ExceptionHandler}.
      */
     void cacheAndNotify(@NonNull Throwable exception, Severity severity, MetaData metaData,
                         @HandledState.SeverityReason String severityReason,
                         @Nullable String attributeValue, Thread thread) {
-        Error error = new Error.Builder(config, exception,
-            sessionTracker, thread, true)
-            .severity(severity)
-            .metaData(metaData)
-            .severityReasonType(severityReason)
-            .attributeValue(attributeValue)
-            .build();
+        if (EmergencyReporter.isOutOfMemory(exception)) {
+            reportOutOfMemory(exception, thread);
+            return;
+        }
+
+        try {
+            Error error = new Error.Builder(config, exception,
+                sessionTracker, thread, true)
+                .severity(severity)
+                .metaData(metaData)
+                .severityReasonType(severityReason)
+                .attributeValue(attributeValue)
+                .build();
+
+            notify(error, DeliveryStyle.CACHE_UNHANDLED, null);
+        } catch (OutOfMemoryError oom) {
+            reportOutOfMemory(exception, thread);
+            return;
+        }
+        sessionTracker.persistPendingSessions();
+    }
 
-        notify(error, DeliveryStyle.ASYNC_WITH_CACHE, null);
+    /**
+     * Stores a reduced report of an error caused by memory being exhausted, then persists
+     * pending sessions if the memory released by the {@link EmergencyReporter} allows it.
+     */
+    private void reportOutOfMemory(@NonNull Throwable exception, @NonNull Thread thread) {
+        emergencyReporter.report(exception, thread);
+
+        try {
+            sessionTracker.persistPendingSessions();
+        } catch (OutOfMemoryError oom) {
+            Logger.warn("Failed to persist pending sessions", oom);
+        }
     }
 
     private boolean runBeforeSendTasks(Report report) {
@@ -1631,6 +1758,7 @@ public class Client extends Observable implements Observer {
     }
 
     void close() {
+        metricsSampler.stop();
         orientationListener.disable();
         connectivity.unregisterForNetworkChanges();
     }
@@ -0,0 +1,34 @@
+package com.bugsnag.android;
+
+/**
+ * A source of time, which can be replaced in tests
+ */
+interface Clock {
+
+    /**
+     * A clock backed by {@link System#nanoTime()} and {@link System#currentTimeMillis()}
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    /**
+     * Returns the current time in nanoseconds. The value is only meaningful when compared with
+     * other values returned by the same clock.
+     */
+    long nanoTime();
+
+    /**
+     * Returns the current wall clock time in milliseconds since the epoch, which can be
+     * compared with times recorded by a previous process, but may jump if the clock is changed.
+     */
+    long currentTimeMillis();
+}
@@ -46,6 +46,17 @@ public class Configuration extends Observable implements Observer {
     private boolean enableExceptionHandler = true;
     private boolean persistUserBetweenSessions = false;
     private long launchCrashThresholdMs = 5 * 1000;
+    private long launchCrashFlushTimeoutMs = 2 * 1000;
+    @NonNull
+    private volatile PayloadCompression payloadCompression = PayloadCompression.NONE;
+    private int maxStoredErrors = 128;
+    private long maxStoredErrorBytes = 10 * 1024 * 1024;
+    private int maxStoredSessions = 128;
+    private long maxStoredSessionBytes = 2 * 1024 * 1024;
+    private int maxConcurrentDeliveries = 1;
+    private long sessionBatchWindowMs = 0;
+    private long metricsSamplingPeriodMs = 10 * 1000;
+    private boolean enableStartupTracing = false;
     private boolean autoCaptureSessions = true;
     private boolean automaticallyCollectBreadcrumbs = true;
 
@@ -53,6 +64,10 @@ public class Configuration extends Observable implements Observer {
     private boolean detectAnrs = false;
     private boolean detectNdkCrashes;
     private long anrThresholdMs = 5000;
+    private boolean enableAnrWatchdog = false;
+    private long anrSampleIntervalMs = 500;
+    private long stallThresholdMs = 0;
+    private long stallSampleIntervalMs = 10;
 
     @NonNull
     private MetaData metaData;
@@ -580,6 +595,259 @@ public class Configuration extends Observable implements Observer {
         }
     }
 
+    /**
+     * Retrieves the maximum time in ms for which initialization waits for launch crash reports
+     * to be delivered.
+     *
+     * @return the timeout in ms
+     */
+    public long getLaunchCrashFlushTimeoutMs() {
+        return launchCrashFlushTimeoutMs;
+    }
+
+    /**
+     * Sets the maximum time in ms for which initialization waits for launch crash reports to be
+     * delivered. Initialization continues as soon as delivery completes, so this only limits how
+     * long a slow request can delay startup; the request itself continues in the background.
+     * <p>
+     * If set to 0, initialization never waits for launch crash reports to be delivered.
+     * <p>
+     * By default, this value is set at 2,000ms.
+     *
+     * @param launchCrashFlushTimeoutMs the timeout in ms. Any value below 0 will default to 0.
+     */
+    public void setLaunchCrashFlushTimeoutMs(long launchCrashFlushTimeoutMs) {
+        if (launchCrashFlushTimeoutMs <= 0) {
+            this.launchCrashFlushTimeoutMs = 0;
+        } else {
+            this.launchCrashFlushTimeoutMs = launchCrashFlushTimeoutMs;
+        }
+    }
+
+    /**
+     * Retrieves how error reports are compressed when they are stored or delivered.
+     *
+     * @return the payload compression
+     */
+    @NonNull
+    public PayloadCompression getPayloadCompression() {
+        return payloadCompression;
+    }
+
+    /**
+     * Sets how error reports are compressed when they are stored on disk, and when they are
+     * delivered by the default delivery. Compression reduces the disk space used by reports
+     * with large thread dumps and breadcrumbs, at the cost of CPU time when they are written.
+     * <p>
+     * Stored reports are read whichever compression they were written with, so this can be
+     * changed between launches.
+     * <p>
+     * By default, payloads are not compressed.
+     *
+     * @param payloadCompression the payload compression
+     */
+    public void setPayloadCompression(@NonNull PayloadCompression payloadCompression) {
+        this.payloadCompression = payloadCompression;
+    }
+
+    /**
+     * Retrieves the maximum number of error reports which are stored on disk until they can
+     * be delivered.
+     *
+     * @return the maximum number of stored error reports
+     */
+    public int getMaxStoredErrors() {
+        return maxStoredErrors;
+    }
+
+    /**
+     * Sets the maximum number of error reports which are stored on disk until they can be
+     * delivered. Once either this or {@link #setMaxStoredErrorBytes(long)} is exceeded, stored
+     * reports are discarded: handled errors first, then unhandled errors, then launch crashes,
+     * and the oldest reports first within each of those.
+     * <p>
+     * This must be set before the Client is created. By default, this value is set at 128.
+     *
+     * @param maxStoredErrors the maximum number of reports. Any value below 1 will default to 1.
+     */
+    public void setMaxStoredErrors(int maxStoredErrors) {
+        this.maxStoredErrors = Math.max(1, maxStoredErrors);
+    }
+
+    /**
+     * Retrieves the maximum total size in bytes of the error reports stored on disk.
+     *
+     * @return the maximum size in bytes
+     */
+    public long getMaxStoredErrorBytes() {
+        return maxStoredErrorBytes;
+    }
+
+    /**
+     * Sets the maximum total size in bytes of the error reports stored on disk until they can
+     * be delivered. Reports are discarded as described in {@link #setMaxStoredErrors(int)},
+     * although the most recent report is always stored, even if it alone exceeds the limit.
+     * <p>
+     * This must be set before the Client is created. By default, this value is set at 10MB.
+     *
+     * @param maxStoredErrorBytes the maximum size in bytes. Any value below 1 will default to 1.
+     */
+    public void setMaxStoredErrorBytes(long maxStoredErrorBytes) {
+        this.maxStoredErrorBytes = Math.max(1, maxStoredErrorBytes);
+    }
+
+    /**
+     * Retrieves the maximum number of session files which are stored on disk until they can
+     * be delivered.
+     *
+     * @return the maximum number of stored session files
+     */
+    public int getMaxStoredSessions() {
+        return maxStoredSessions;
+    }
+
+    /**
+     * Sets the maximum number of session files which are stored on disk until they can be
+     * delivered. Each file holds a batch of sessions. Once either this or
+     * {@link #setMaxStoredSessionBytes(long)} is exceeded, the oldest files are discarded.
+     * <p>
+     * This must be set before the Client is created. By default, this value is set at 128.
+     *
+     * @param maxStoredSessions the maximum number of files. Any value below 1 will default to 1.
+     */
+    public void setMaxStoredSessions(int maxStoredSessions) {
+        this.maxStoredSessions = Math.max(1, maxStoredSessions);
+    }
+
+    /**
+     * Retrieves the maximum total size in bytes of the session files stored on disk.
+     *
+     * @return the maximum size in bytes
+     */
+    public long getMaxStoredSessionBytes() {
+        return maxStoredSessionBytes;
+    }
+
+    /**
+     * Sets the maximum total size in bytes of the session files stored on disk until they can
+     * be delivered, after which the oldest files are discarded.
+     * <p>
+     * This must be set before the Client is created. By default, this value is set at 2MB.
+     *
+     * @param maxStoredSessionBytes the maximum size in bytes. Any value below 1 will default
+     *                              to 1.
+     */
+    public void setMaxStoredSessionBytes(long maxStoredSessionBytes) {
+        this.maxStoredSessionBytes = Math.max(1, maxStoredSessionBytes);
+    }
+
+    /**
+     * Retrieves the maximum number of stored error reports which are delivered at once.
+     *
+     * @return the maximum number of concurrent deliveries
+     */
+    public int getMaxConcurrentDeliveries() {
+        return maxConcurrentDeliveries;
+    }
+
+    /**
+     * Sets the maximum number of stored error reports which are delivered at once when they
+     * are flushed. Reports are read from disk no faster than they can be delivered, and no
+     * further reports are attempted once a delivery fails.
+     * <p>
+     * A value above 1 means that {@link Delivery#deliver(Report, Configuration)} is called
+     * from several threads at once, so should only be set if the delivery is thread safe.
+     * This must be set before the Client is created. By default, this value is set at 1.
+     *
+     * @param maxConcurrentDeliveries the maximum number of deliveries. Any value below 1 will
+     *                                default to 1.
+     */
+    public void setMaxConcurrentDeliveries(int maxConcurrentDeliveries) {
+        this.maxConcurrentDeliveries = Math.max(1, maxConcurrentDeliveries);
+    }
+
+    /**
+     * Retrieves the time in ms for which tracked sessions are buffered before delivery.
+     *
+     * @return the batch window in ms
+     */
+    public long getSessionBatchWindowMs() {
+        return sessionBatchWindowMs;
+    }
+
+    /**
+     * Sets the time in ms for which tracked sessions are buffered before delivery. All sessions
+     * started within the window are sent to Bugsnag in a single request, together with any
+     * sessions which were previously stored on disk.
+     * <p>
+     * Buffered sessions are sent early when the app leaves the foreground, and are stored on
+     * disk if the app terminates due to an uncaught exception.
+     * <p>
+     * By default, this value is set at 0ms, which sends sessions as soon as they are tracked.
+     *
+     * @param sessionBatchWindowMs the window in ms. Any value below 0 will default to 0.
+     */
+    public void setSessionBatchWindowMs(long sessionBatchWindowMs) {
+        if (sessionBatchWindowMs <= 0) {
+            this.sessionBatchWindowMs = 0;
+        } else {
+            this.sessionBatchWindowMs = sessionBatchWindowMs;
+        }
+    }
+
+    /**
+     * Retrieves the period in ms at which device metrics are sampled in the background.
+     *
+     * @return the sampling period in ms, or 0 if sampling is disabled
+     */
+    public long getMetricsSamplingPeriodMs() {
+        return metricsSamplingPeriodMs;
+    }
+
+    /**
+     * Sets the period in ms at which device metrics which are slow to collect, such as the
+     * battery level and network access, are sampled in the background while the app is in the
+     * foreground. Reports then use the most recent sample rather than collecting these metrics
+     * on the thread which called notify.
+     * <p>
+     * This must be set before the Client is created. If set to 0, metrics are collected when a
+     * report is created, and cached for a short period.
+     * <p>
+     * By default, this value is set at 10,000ms.
+     *
+     * @param metricsSamplingPeriodMs the period in ms. Any value below 0 will default to 0.
+     */
+    public void setMetricsSamplingPeriodMs(long metricsSamplingPeriodMs) {
+        if (metricsSamplingPeriodMs <= 0) {
+            this.metricsSamplingPeriodMs = 0;
+        } else {
+            this.metricsSamplingPeriodMs = metricsSamplingPeriodMs;
+        }
+    }
+
+    /**
+     * Get whether the time taken by each phase of Client initialization is recorded
+     *
+     * @return true if startup tracing is enabled
+     * @see Client#getStartupTimings()
+     */
+    public boolean getEnableStartupTracing() {
+        return enableStartupTracing;
+    }
+
+    /**
+     * Set whether the time taken by each phase of Client initialization is recorded. When
+     * enabled, the timings are available from {@link Client#getStartupTimings()} and each phase
+     * is emitted as a systrace section prefixed with "Bugsnag:" on API 18 and above.
+     * <p>
+     * This must be set before the Client is created. By default, this is disabled.
+     *
+     * @param enableStartupTracing whether startup tracing should be enabled
+     */
+    public void setEnableStartupTracing(boolean enableStartupTracing) {
+        this.enableStartupTracing = enableStartupTracing;
+    }
+
     /**
      * Returns whether automatic breadcrumb capture or common application events is enabled.
      * @return true if automatic capture is enabled, otherwise false.
@@ -735,35 +1003,129 @@ public class Configuration extends Observable implements Observer {
     }
 
     /**
-     * @return the threshold at which ANRs are detected, in ms
+     * @return the threshold at which the ANR watchdog detects ANRs, in ms
      * @see #setAnrThresholdMs(long)
-     *
-     * @deprecated This option has been superseded by the ANR threshold of the underlying OS
      */
-    @Deprecated
     public long getAnrThresholdMs() {
         return anrThresholdMs;
     }
 
     /**
-     * Sets the time in milliseconds at which an
-     * <a href="https://developer.android.com/topic/performance/vitals/anr">ANR</a> is detected
-     * by Bugsnag. By default, Bugsnag will record an ANR whenever the main thread has been blocked
-     * for 5000 milliseconds or longer.
+     * Sets the time in milliseconds for which the main thread must be blocked before the
+     * ANR watchdog records an
+     * <a href="https://developer.android.com/topic/performance/vitals/anr">ANR</a>. By default,
+     * the watchdog records an ANR whenever the main thread has been blocked for 5000 milliseconds
+     * or longer.
      * <p/>
-     * If you wish to enable ANR detection, you should set the {@link #setDetectAnrs(boolean)}
-     * property to true.
+     * This threshold only applies when {@link #setEnableAnrWatchdog(boolean)} is enabled,
+     * otherwise ANRs are detected at the threshold of the underlying OS.
      * <p/>
      * Attempting to set this property to any value below 1000ms will result in the anrThresholdMs
      * being set as 1000ms.
      *
      * @param anrThresholdMs the threshold in ms at which ANRs should be detected
      * @see #setDetectAnrs(boolean)
-     *
-     * @deprecated This option has been superseded by the ANR threshold of the underlying OS
      */
-    @Deprecated
     public void setAnrThresholdMs(long anrThresholdMs) {
+        this.anrThresholdMs = Math.max(anrThresholdMs, 1000);
+    }
+
+    /**
+     * @return whether the main thread is monitored by the ANR watchdog
+     * @see #setEnableAnrWatchdog(boolean)
+     */
+    public boolean getEnableAnrWatchdog() {
+        return enableAnrWatchdog;
+    }
+
+    /**
+     * Sets whether ANRs are detected by a watchdog thread which monitors the main thread, in
+     * addition to the SIGQUIT sent by the OS. The watchdog posts a heartbeat to the main thread
+     * each second, and records an ANR if it is not processed within
+     * {@link #getAnrThresholdMs()}. This detects ANRs earlier than the OS, and on devices which
+     * do not send a SIGQUIT.
+     * <p/>
+     * While the main thread is blocked its stack is sampled every
+     * {@link #getAnrSampleIntervalMs()}, and the samples are attached to the report in the
+     * "ANR" tab so that it shows where the main thread was blocked over time.
+     * <p/>
+     * This only applies when {@link #setDetectAnrs(boolean)} is enabled. By default, this is
+     * disabled.
+     *
+     * @param enableAnrWatchdog whether the ANR watchdog should be enabled
+     */
+    public void setEnableAnrWatchdog(boolean enableAnrWatchdog) {
+        this.enableAnrWatchdog = enableAnrWatchdog;
+    }
+
+    /**
+     * @return the interval at which the main thread stack is sampled while it is blocked, in ms
+     * @see #setAnrSampleIntervalMs(long)
+     */
+    public long getAnrSampleIntervalMs() {
+        return anrSampleIntervalMs;
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the ANR watchdog samples the main thread stack
+     * while the main thread is blocked. By default, this value is set at 500ms.
+     * <p/>
+     * Attempting to set this property to any value below 50ms will result in the
+     * anrSampleIntervalMs being set as 50ms.
+     *
+     * @param anrSampleIntervalMs the interval in ms at which the stack should be sampled
+     * @see #setEnableAnrWatchdog(boolean)
+     */
+    public void setAnrSampleIntervalMs(long anrSampleIntervalMs) {
+        this.anrSampleIntervalMs = Math.max(anrSampleIntervalMs, 50);
+    }
+
+    /**
+     * @return the time in ms after which the ANR watchdog profiles a blocked main thread, or 0
+     * if stalls are not profiled
+     * @see #setStallThresholdMs(long)
+     */
+    public long getStallThresholdMs() {
+        return stallThresholdMs;
+    }
+
+    /**
+     * Sets the time in milliseconds for which the main thread must be blocked before the
+     * ANR watchdog starts profiling the stall. While the stall continues the main thread stack
+     * is sampled every {@link #getStallSampleIntervalMs()}, and when it ends a handled report is
+     * sent with a call tree of the samples in the "Stall" tab, showing which methods the main
+     * thread spent the most time in.
+     * <p/>
+     * Stalls which last longer than {@link #getAnrThresholdMs()} are reported as ANRs instead.
+     * This only applies when {@link #setEnableAnrWatchdog(boolean)} is enabled. By default,
+     * this value is set at 0, which disables stall profiling.
+     *
+     * @param stallThresholdMs the threshold in ms. Any value below 0 will default to 0.
+     */
+    public void setStallThresholdMs(long stallThresholdMs) {
+        this.stallThresholdMs = Math.max(stallThresholdMs, 0);
+    }
+
+    /**
+     * @return the interval at which the main thread stack is sampled during a stall, in ms
+     * @see #setStallSampleIntervalMs(long)
+     */
+    public long getStallSampleIntervalMs() {
+        return stallSampleIntervalMs;
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the main thread stack is sampled while
+     * profiling a stall. By default, this value is set at 10ms.
+     * <p/>
+     * Attempting to set this property to any value below 1ms will result in the
+     * stallSampleIntervalMs being set as 1ms.
+     *
+     * @param stallSampleIntervalMs the interval in ms at which the stack should be sampled
+     * @see #setStallThresholdMs(long)
+     */
+    public void setStallSampleIntervalMs(long stallSampleIntervalMs) {
+        this.stallSampleIntervalMs = Math.max(stallSampleIntervalMs, 1);
     }
 
     /**
@@ -0,0 +1,260 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A preallocated, memory-mapped file into which an unhandled error is serialized as the
+ * process crashes. Writing a report needs no new file, stream or buffered writer, so it is
+ * more likely to succeed when memory or disk space is exhausted, or the stack has overflowed.
+ * A report left in the file is promoted to a regular stored report on the next launch.
+ *
+ * The file contains a header followed by the report:
+ * magic (int), filename length (int), report length (int), filename (UTF-8), report (UTF-8).
+ * The report length is written last, so a report which was only partly written is ignored.
+ */
+class CrashScratchFile {
+
+    static final String FILENAME = "crash-scratch.bin";
+    static final int DEFAULT_SIZE = 256 * 1024;
+
+    private static final int MAGIC = 0x42534e47;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int FILENAME_LENGTH_OFFSET = 4;
+    private static final int REPORT_LENGTH_OFFSET = 8;
+    private static final int HEADER_SIZE = 12;
+    private static final int ZERO_FILL_CHUNK = 8 * 1024;
+
+    private final File file;
+    private final int size;
+
+    @Nullable
+    private MappedByteBuffer buffer;
+    @Nullable
+    private JsonStream stream;
+    private boolean written;
+
+    CrashScratchFile(@NonNull File file, int size) {
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * Maps the file into memory, first filling it with zeros if it has not been created yet,
+     * so that no disk space needs to be allocated when a report is written.
+     *
+     * @return true if the file was mapped
+     */
+    synchronized boolean open() {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+
+            if (raf.length() != size) {
+                raf.setLength(0);
+                byte[] zeros = new byte[ZERO_FILL_CHUNK];
+
+                for (int offset = 0; offset < size; offset += zeros.length) {
+                    raf.write(zeros, 0, Math.min(zeros.length, size - offset));
+                }
+            }
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer = mapped;
+            stream = new JsonStream(new BufferWriter(mapped));
+            return true;
+        } catch (Exception exc) {
+            Logger.warn("Failed to map crash scratch file", exc);
+            return false;
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * Serializes a report into the mapped file. Only one report can be written per process,
+     * after which this returns false so that the caller can store the report another way.
+     * If a write fails, for example because memory is exhausted, another report may be
+     * written in its place.
+     *
+     * @param filename   the name of the stored report it is promoted to
+     * @param streamable the report
+     * @return true if the complete report was written
+     */
+    synchronized boolean write(@NonNull String filename,
+                               @NonNull JsonStream.Streamable streamable) {
+        MappedByteBuffer mapped = buffer;
+
+        if (mapped == null || written) {
+            return false;
+        }
+
+        try {
+            if (stream == null) { // a previous write failed part way through
+                stream = new JsonStream(new BufferWriter(mapped));
+            }
+            mapped.putInt(REPORT_LENGTH_OFFSET, 0);
+            mapped.position(HEADER_SIZE);
+            for (int k = 0; k < filename.length(); k++) {
+                mapped.put((byte) filename.charAt(k)); // filenames are always ASCII
+            }
+            int reportOffset = mapped.position();
+
+            stream.value(streamable);
+            stream.flush();
+
+            mapped.putInt(MAGIC_OFFSET, MAGIC);
+            mapped.putInt(FILENAME_LENGTH_OFFSET, reportOffset - HEADER_SIZE);
+            mapped.putInt(REPORT_LENGTH_OFFSET, mapped.position() - reportOffset);
+            written = true;
+            return true;
+        } catch (Exception exc) {
+            Logger.warn("Failed to write crash scratch file", exc);
+            stream = null;
+            return false;
+        }
+    }
+
+    /**
+     * Copies a report left by a previous process into a stored report file, then clears it
+     * from the mapped file
+     *
+     * @param directory the directory to store the report in
+     * @return the stored report, or null if there was none
+     */
+    @Nullable
+    synchronized File promote(@NonNull File directory) {
+        MappedByteBuffer mapped = buffer;
+
+        if (mapped == null) {
+            return null;
+        }
+        int filenameLength = mapped.getInt(FILENAME_LENGTH_OFFSET);
+        int reportLength = mapped.getInt(REPORT_LENGTH_OFFSET);
+        FileOutputStream out = null;
+        File report = null;
+
+        try {
+            if (mapped.getInt(MAGIC_OFFSET) != MAGIC || filenameLength <= 0 || reportLength <= 0
+                || (long) HEADER_SIZE + filenameLength + reportLength > size) {
+                return null;
+            }
+            byte[] name = new byte[filenameLength];
+            mapped.position(HEADER_SIZE);
+            mapped.get(name);
+            report = new File(directory, new File(new String(name, "UTF-8")).getName());
+
+            ByteBuffer contents = mapped.duplicate();
+            contents.limit(mapped.position() + reportLength);
+            out = new FileOutputStream(report);
+            FileChannel channel = out.getChannel();
+
+            while (contents.hasRemaining()) {
+                channel.write(contents);
+            }
+            Logger.info(String.format("Promoted crash report to disk (%s) ", report));
+            return report;
+        } catch (Exception exc) {
+            Logger.warn("Failed to promote crash scratch file", exc);
+            IOUtils.closeQuietly(out);
+
+            if (report != null) {
+                IOUtils.deleteFile(report);
+            }
+            return null;
+        } finally {
+            IOUtils.closeQuietly(out);
+            mapped.putInt(MAGIC_OFFSET, MAGIC);
+            mapped.putInt(FILENAME_LENGTH_OFFSET, 0);
+            mapped.putInt(REPORT_LENGTH_OFFSET, 0);
+        }
+    }
+
+    /**
+     * Encodes characters as UTF-8 directly into a byte buffer, failing once the buffer is full
+     */
+    static class BufferWriter extends Writer {
+
+        private final ByteBuffer buffer;
+        private char highSurrogate;
+
+        BufferWriter(@NonNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int ch) throws IOException {
+            try {
+                encode((char) ch);
+            } catch (BufferOverflowException exc) {
+                throw new IOException("Crash scratch file is full");
+            }
+        }
+
+        @Override
+        public void write(@NonNull char[] cbuf, int off, int len) throws IOException {
+            for (int k = off; k < off + len; k++) {
+                write(cbuf[k]);
+            }
+        }
+
+        @Override
+        public void write(@NonNull String str, int off, int len) throws IOException {
+            // avoids the copy into a new char array made by Writer
+            for (int k = off; k < off + len; k++) {
+                write(str.charAt(k));
+            }
+        }
+
+        private void encode(char ch) {
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+
+                if (Character.isLowSurrogate(ch)) {
+                    int codePoint = Character.toCodePoint(high, ch);
+                    buffer.put((byte) (0xf0 | (codePoint >> 18)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                    buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                    buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+                    return;
+                }
+                buffer.put((byte) '?'); // unpaired surrogate
+            }
+
+            if (ch < 0x80) {
+                buffer.put((byte) ch);
+            } else if (ch < 0x800) {
+                buffer.put((byte) (0xc0 | (ch >> 6)));
+                buffer.put((byte) (0x80 | (ch & 0x3f)));
+            } else if (Character.isHighSurrogate(ch)) {
+                highSurrogate = ch;
+            } else if (Character.isLowSurrogate(ch)) {
+                buffer.put((byte) '?'); // unpaired surrogate
+            } else {
+                buffer.put((byte) (0xe0 | (ch >> 12)));
+                buffer.put((byte) (0x80 | ((ch >> 6) & 0x3f)));
+                buffer.put((byte) (0x80 | (ch & 0x3f)));
+            }
+        }
+
+        @Override
+        public void flush() {
+            // the mapped pages are written back by the OS, even if the process dies
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
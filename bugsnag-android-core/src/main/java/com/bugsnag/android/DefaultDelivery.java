@@ -19,10 +19,13 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DefaultDelivery implements Delivery {
 
     private static final int HTTP_REQUEST_FAILED = 0;
+    private static final AtomicLong FILE_SEQUENCE = new AtomicLong();
+
     private final Connectivity connectivity;
     private final Context androidContext;
 
@@ -35,7 +38,8 @@ public class DefaultDelivery implements Delivery {
     public void deliver(@NonNull SessionTrackingPayload payload,
                         @NonNull Configuration config) throws DeliveryFailureException {
 //        String endpoint = config.getSessionEndpoint();
-//        int status = deliver(endpoint, payload, config.getSessionApiHeaders());
+//        int status = deliver(endpoint, payload, config.getSessionApiHeaders(),
+//            config.getPayloadCompression());
 //
 //        if (status != 202) {
 //            Logger.warn("Session API request failed with status " + status, null);
@@ -48,7 +52,8 @@ public class DefaultDelivery implements Delivery {
     public void deliver(@NonNull Report report,
                         @NonNull Configuration config) throws DeliveryFailureException {
         String endpoint = config.getEndpoint();
-        int status = deliver(endpoint, report, config.getErrorApiHeaders());
+        int status = deliver(endpoint, report, config.getErrorApiHeaders(),
+            config.getPayloadCompression());
 
         if (status / 100 != 2) {
             Logger.warn("Error API request failed with status " + status, null);
@@ -59,21 +64,33 @@ public class DefaultDelivery implements Delivery {
 
     int deliver(String urlString,
                 JsonStream.Streamable streamable,
-                Map<String, String> headers) throws DeliveryFailureException {
+                Map<String, String> headers,
+                PayloadCompression compression) throws DeliveryFailureException {
 
         File outputDir = new File(androidContext.getCacheDir().getAbsolutePath(), "crashes");
         outputDir.mkdirs();
         Log.i("Bugsnag-g4g", "overriding crash delivery, instead of upload, save to folder" + outputDir);
 
+        // several deliveries may be in flight, so the time alone does not give a unique name
+        String name = "crash_" + System.currentTimeMillis() + "_" + FILE_SEQUENCE.incrementAndGet()
+            + (compression == PayloadCompression.NONE ? ".json" : ".json.gz");
+        File outputJsonFile = new File(outputDir, name);
+        File tmpFile = new File(outputDir, name + ".tmp");
+        JsonStream stream = null;
+
         try {
-            String name = "crash_" + System.currentTimeMillis() + ".json";
-            File outputJsonFile = new File(outputDir, name);
-            OutputStream out = new FileOutputStream(outputJsonFile);
+            // written to a temporary file first so that readers never see a partial payload
+            OutputStream out = compression.compress(new FileOutputStream(tmpFile));
             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")));
-            JsonStream stream = new JsonStream(writer);
+            stream = new JsonStream(writer);
             streamable.toStream(stream);
+            stream.close();
+            stream = null;
+
+            if (!tmpFile.renameTo(outputJsonFile)) {
+                throw new IOException("Failed to rename " + tmpFile + " to " + outputJsonFile);
+            }
             Log.i("Bugsnag-g4g", "saved bugsnag crash json to file: " + outputJsonFile);
-            IOUtils.closeQuietly(stream);
 
             // saving to file succeeded
             return 200;
@@ -83,6 +100,9 @@ public class DefaultDelivery implements Delivery {
         } catch (Exception exception) {
             Logger.warn("Unexpected error delivering payload", exception);
             return HTTP_REQUEST_FAILED;
+        } finally {
+            IOUtils.closeQuietly(stream);
+            tmpFile.delete(); // only remains if the payload was not stored
         }
     }
 
@@ -0,0 +1,124 @@
+package com.bugsnag.android;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives activity lifecycle callbacks while a {@link Client} is initialized in the
+ * background, so that activities which start before initialization completes are still tracked.
+ * Callbacks are buffered until a delegate is set, then replayed in order, after which they are
+ * forwarded directly.
+ */
+class DeferredLifecycleCallbacks implements Application.ActivityLifecycleCallbacks {
+
+    /**
+     * A lifecycle callback which has been received but not yet dispatched
+     */
+    private interface Event {
+        void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks);
+    }
+
+    // guarded by this
+    private final List<Event> pendingEvents = new ArrayList<>();
+
+    // guarded by this
+    @Nullable
+    private Application.ActivityLifecycleCallbacks delegate;
+
+    /**
+     * Replays any buffered callbacks to the delegate, then forwards all future callbacks to it
+     */
+    synchronized void setDelegate(@NonNull Application.ActivityLifecycleCallbacks delegate) {
+        for (Event event : pendingEvents) {
+            event.dispatch(delegate);
+        }
+        pendingEvents.clear();
+        this.delegate = delegate;
+    }
+
+    private synchronized void dispatch(@NonNull Event event) {
+        if (delegate != null) {
+            event.dispatch(delegate);
+        } else {
+            pendingEvents.add(event);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull final Activity activity,
+                                  @Nullable final Bundle savedInstanceState) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivityCreated(activity, savedInstanceState);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull final Activity activity) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivityStarted(activity);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull final Activity activity) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivityResumed(activity);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull final Activity activity) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivityPaused(activity);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull final Activity activity) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivityStopped(activity);
+            }
+        });
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull final Activity activity,
+                                            @NonNull final Bundle outState) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivitySaveInstanceState(activity, outState);
+            }
+        });
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull final Activity activity) {
+        dispatch(new Event() {
+            @Override
+            public void dispatch(@NonNull Application.ActivityLifecycleCallbacks callbacks) {
+                callbacks.onActivityDestroyed(activity);
+            }
+        });
+    }
+}
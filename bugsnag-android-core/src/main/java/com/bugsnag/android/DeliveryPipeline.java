@@ -0,0 +1,229 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers stored payloads with a bounded number of deliveries in flight.
+ * <p>
+ * A payload is only dispatched once a delivery slot is free, so payloads are read from the
+ * store no faster than they can be delivered. Deliveries may complete in any order, but their
+ * outcomes are reported to the {@link Callback} in the order that the payloads were given.
+ * Once a delivery fails, no further payloads are dispatched, as the others are likely to fail
+ * for the same reason.
+ */
+class DeliveryPipeline {
+
+    private static final String THREAD_NAME = "Bugsnag Delivery Thread";
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    enum Outcome {
+
+        /**
+         * The payload was delivered and should be removed from the store
+         */
+        DELIVERED,
+
+        /**
+         * The payload could not be delivered now and should be retried later
+         */
+        FAILED,
+
+        /**
+         * The payload will never be delivered and should be removed from the store
+         */
+        DISCARDED
+    }
+
+    /**
+     * Delivers a single stored payload
+     */
+    interface Task {
+        @NonNull
+        Outcome deliver(@NonNull File file);
+    }
+
+    /**
+     * Receives the outcome of each delivery, in the order the payloads were given
+     */
+    interface Callback {
+        void onDeliveryCompleted(@NonNull File file, @NonNull Outcome outcome);
+    }
+
+    private final int maxInFlight;
+
+    @Nullable
+    private Executor executor;
+
+    DeliveryPipeline(int maxInFlight) {
+        this(maxInFlight, null);
+    }
+
+    @VisibleForTesting
+    DeliveryPipeline(int maxInFlight, @Nullable Executor executor) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.executor = executor;
+    }
+
+    /**
+     * Delivers payloads, blocking until every dispatched delivery has completed. Payloads are
+     * delivered on the calling thread if only one delivery may be in flight.
+     *
+     * @return the payloads which were not dispatched because a delivery failed
+     */
+    @NonNull
+    List<File> deliver(@NonNull List<File> files, @NonNull Task task,
+                       @NonNull Callback callback) {
+        Batch batch = new Batch(files, task, callback);
+        int dispatched = 0;
+
+        try {
+            while (dispatched < files.size()) {
+                batch.slots.acquire();
+
+                if (batch.hasFailed()) {
+                    break;
+                }
+                batch.dispatch(dispatched++);
+            }
+        } catch (InterruptedException exception) {
+            Logger.warn("Interrupted while delivering stored payloads");
+            Thread.currentThread().interrupt();
+        }
+        batch.awaitCompletion(dispatched);
+        return dispatched < files.size()
+            ? files.subList(dispatched, files.size()) : Collections.<File>emptyList();
+    }
+
+    @NonNull
+    private synchronized Executor getExecutor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxInFlight, maxInFlight,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(@NonNull Runnable runnable) {
+                        return new Thread(runnable, THREAD_NAME);
+                    }
+                });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    /**
+     * The deliveries of a single call to {@link #deliver(List, Task, Callback)}
+     */
+    private class Batch {
+        final List<File> files;
+        final Task task;
+        final Callback callback;
+        final Semaphore slots = new Semaphore(maxInFlight);
+
+        // outcomes of completed deliveries which have not yet been reported, guarded by this
+        final Outcome[] outcomes;
+        int reported;
+        boolean failed;
+
+        Batch(List<File> files, Task task, Callback callback) {
+            this.files = files;
+            this.task = task;
+            this.callback = callback;
+            this.outcomes = new Outcome[files.size()];
+        }
+
+        void dispatch(final int index) {
+            Runnable delivery = new Runnable() {
+                @Override
+                public void run() {
+                    complete(index, deliverQuietly(files.get(index)));
+                }
+            };
+
+            if (maxInFlight == 1) {
+                delivery.run();
+                return;
+            }
+            try {
+                getExecutor().execute(delivery);
+            } catch (RejectedExecutionException exception) {
+                delivery.run();
+            }
+        }
+
+        @NonNull
+        private Outcome deliverQuietly(@NonNull File file) {
+            try {
+                return task.deliver(file);
+            } catch (Exception exception) {
+                Logger.warn("Failed to deliver stored payload " + file.getName(), exception);
+                return Outcome.FAILED;
+            }
+        }
+
+        /**
+         * Records the outcome of a delivery, then reports the outcomes of any deliveries
+         * which are no longer waiting on an earlier delivery to complete. The delivery slot is
+         * always released, so that a failing callback cannot stall the batch.
+         */
+        private synchronized void complete(int index, @NonNull Outcome outcome) {
+            try {
+                outcomes[index] = outcome;
+
+                if (outcome == Outcome.FAILED) {
+                    failed = true;
+                }
+                while (reported < outcomes.length && outcomes[reported] != null) {
+                    File file = files.get(reported);
+                    Outcome reportedOutcome = outcomes[reported];
+                    outcomes[reported++] = null;
+                    reportQuietly(file, reportedOutcome);
+                }
+            } finally {
+                slots.release();
+                notifyAll();
+            }
+        }
+
+        private void reportQuietly(@NonNull File file, @NonNull Outcome outcome) {
+            try {
+                callback.onDeliveryCompleted(file, outcome);
+            } catch (Exception exception) {
+                Logger.warn("Failed to update store after delivering " + file.getName(),
+                    exception);
+            }
+        }
+
+        synchronized boolean hasFailed() {
+            return failed;
+        }
+
+        synchronized void awaitCompletion(int dispatched) {
+            boolean interrupted = false;
+
+            while (reported < dispatched) {
+                try {
+                    wait();
+                } catch (InterruptedException exception) {
+                    interrupted = true; // dispatched deliveries still need to be reported
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -4,5 +4,7 @@ enum DeliveryStyle {
     SAME_THREAD,
     ASYNC,
     ASYNC_WITH_CACHE,
+    CACHE_PENDING,
+    CACHE_UNHANDLED,
     NO_CACHE
 }
@@ -18,11 +18,15 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 class DeviceData {
 
@@ -44,6 +48,16 @@ class DeviceData {
 
     private static final String INSTALL_ID_KEY = "install.iud";
 
+    // the result of root detection, and the OS build it was detected on
+    private static final String ROOTED_KEY = "device.rooted";
+    private static final String ROOTED_FINGERPRINT_KEY = "device.rooted.fingerprint";
+
+    // values which change without a suitable event are collected again after these periods
+    private static final long BATTERY_TTL_MS = 30 * 1000;
+    private static final long LOCATION_STATUS_TTL_MS = 60 * 1000;
+    private static final long NETWORK_ACCESS_TTL_MS = 60 * 1000;
+    private static final long FREE_DISK_TTL_MS = 60 * 1000;
+
     private final boolean emulator;
     private final Context appContext;
     private final Connectivity connectivity;
@@ -51,7 +65,6 @@ class DeviceData {
     private final SharedPreferences sharedPrefs;
     private final DisplayMetrics displayMetrics;
     private final String id;
-    private final boolean rooted;
 
     @Nullable
     final Float screenDensity;
@@ -68,6 +81,59 @@ class DeviceData {
     @NonNull
     final String[] cpuAbi;
 
+    // fields which do not change while the process is running, collected once
+    private final Map<String, Object> summary;
+    private final Map<String, Object> staticMetaData;
+
+    private final CachedValue<Intent> batteryStatus = new CachedValue<Intent>(BATTERY_TTL_MS) {
+        @Nullable
+        @Override
+        Intent compute() {
+            return getBatteryStatus();
+        }
+    };
+
+    private final CachedValue<String> locationStatus =
+        new CachedValue<String>(LOCATION_STATUS_TTL_MS) {
+            @Nullable
+            @Override
+            String compute() {
+                return getLocationStatus();
+            }
+        };
+
+    private final CachedValue<String> networkAccess =
+        new CachedValue<String>(NETWORK_ACCESS_TTL_MS) {
+            @Nullable
+            @Override
+            String compute() {
+                return getNetworkAccess();
+            }
+        };
+
+    private final CachedValue<String> orientation = new CachedValue<String>(0) {
+        @Nullable
+        @Override
+        String compute() {
+            return calculateOrientation();
+        }
+    };
+
+    // root detection stats the filesystem, so the result is persisted until the OS is updated
+    private final CachedValue<Boolean> rooted = new CachedValue<Boolean>(0) {
+        @Override
+        Boolean compute() {
+            return loadRootStatus();
+        }
+    };
+
+    private final CachedValue<Long> freeDisk = new CachedValue<Long>(FREE_DISK_TTL_MS) {
+        @Override
+        Long compute() {
+            return calculateFreeDisk();
+        }
+    };
+
     DeviceData(Connectivity connectivity, Context appContext, Resources resources,
                SharedPreferences sharedPreferences) {
         this.connectivity = connectivity;
@@ -88,14 +154,15 @@ class DeviceData {
         cpuAbi = getCpuAbi();
         emulator = isEmulator();
         id = retrieveUniqueInstallId();
-        rooted = isRooted();
+        detectRootStatusAsync();
+        summary = Collections.unmodifiableMap(collectDeviceDataSummary());
+        staticMetaData = Collections.unmodifiableMap(collectStaticMetaData());
     }
 
-    Map<String, Object> getDeviceDataSummary() {
+    private Map<String, Object> collectDeviceDataSummary() {
         Map<String, Object> map = new HashMap<>();
         map.put("manufacturer", Build.MANUFACTURER);
         map.put("model", Build.MODEL);
-        map.put("jailbroken", rooted);
         map.put("osName", "android");
         map.put("osVersion", Build.VERSION.RELEASE);
         map.put("cpuAbi", cpuAbi);
@@ -103,7 +170,35 @@ class DeviceData {
         Map<String, Object> versions = new HashMap<>();
         versions.put("androidApiLevel", Build.VERSION.SDK_INT);
         versions.put("osBuild", Build.DISPLAY);
-        map.put("runtimeVersions", versions);
+        map.put("runtimeVersions", Collections.unmodifiableMap(versions));
+        return map;
+    }
+
+    private Map<String, Object> collectStaticMetaData() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("brand", Build.BRAND);
+        map.put("locale", locale);
+        map.put("screenDensity", screenDensity);
+        map.put("dpi", dpi);
+        map.put("emulator", emulator);
+        map.put("screenResolution", screenResolution);
+        return map;
+    }
+
+    /**
+     * Returns the unmodifiable device summary collected at startup, without copying it
+     */
+    Map<String, Object> getStaticDeviceDataSummary() {
+        return summary;
+    }
+
+    /**
+     * Returns a mutable copy of the device summary, as the map may be altered by callbacks
+     */
+    Map<String, Object> getDeviceDataSummary() {
+        Map<String, Object> map = new HashMap<>(summary);
+        map.put("jailbroken", rooted.get());
+        map.put("runtimeVersions", new HashMap<>((Map<?, ?>) summary.get("runtimeVersions")));
         return map;
     }
 
@@ -112,31 +207,101 @@ class DeviceData {
         map.put("id", id);
         map.put("freeMemory", calculateFreeMemory());
         map.put("totalMemory", calculateTotalMemory());
-        map.put("freeDisk", calculateFreeDisk());
-        map.put("orientation", calculateOrientation());
+        map.put("freeDisk", freeDisk.get());
+        map.put("orientation", orientation.get());
         return map;
     }
 
     Map<String, Object> getDeviceMetaData() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("batteryLevel", getBatteryLevel());
-        map.put("charging", isCharging());
-        map.put("locationStatus", getLocationStatus());
-        map.put("networkAccess", getNetworkAccess());
+        Map<String, Object> map = new HashMap<>(staticMetaData);
+        Intent battery = batteryStatus.get();
+        map.put("batteryLevel", getBatteryLevel(battery));
+        map.put("charging", isCharging(battery));
+        map.put("locationStatus", locationStatus.get());
+        map.put("networkAccess", networkAccess.get());
         map.put("time", getTime());
-        map.put("brand", Build.BRAND);
-        map.put("locale", locale);
-        map.put("screenDensity", screenDensity);
-        map.put("dpi", dpi);
-        map.put("emulator", emulator);
-        map.put("screenResolution", screenResolution);
         return map;
     }
 
+    /**
+     * Gets the values which change frequently and are expensive to collect, so should be
+     * refreshed by a {@link MetricsSampler}
+     */
+    List<CachedValue<?>> getSampledValues() {
+        return Arrays.<CachedValue<?>>asList(batteryStatus, locationStatus, networkAccess,
+            freeDisk);
+    }
+
+    /**
+     * Discards the cached battery status, which may have been changed by a broadcast such as
+     * {@link Intent#ACTION_POWER_CONNECTED}
+     */
+    void onBatteryChanged() {
+        batteryStatus.invalidate();
+    }
+
+    /**
+     * Discards the cached network access state after a connectivity change
+     */
+    void onNetworkChanged() {
+        networkAccess.invalidate();
+    }
+
+    /**
+     * Discards the cached free disk space after the device storage state changes
+     */
+    void onStorageChanged() {
+        freeDisk.invalidate();
+    }
+
+    /**
+     * Discards the cached orientation after the device configuration changes
+     */
+    void onOrientationChanged() {
+        orientation.invalidate();
+    }
+
     String getId() {
         return id;
     }
 
+    /**
+     * Loads the persisted root status in the background, so that the first report does not
+     * need to wait for it
+     */
+    private void detectRootStatusAsync() {
+        try {
+            Async.run(new Runnable() {
+                @Override
+                public void run() {
+                    rooted.get();
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            Logger.warn("Failed to detect root status in the background", exception);
+        }
+    }
+
+    /**
+     * Gets the root status persisted for the current OS build, detecting and persisting it if
+     * the OS has been updated since it was last detected
+     */
+    private boolean loadRootStatus() {
+        String fingerprint = Build.FINGERPRINT;
+
+        if (fingerprint != null
+            && fingerprint.equals(sharedPrefs.getString(ROOTED_FINGERPRINT_KEY, null))) {
+            return sharedPrefs.getBoolean(ROOTED_KEY, false);
+        }
+
+        boolean result = isRooted();
+        sharedPrefs.edit()
+            .putBoolean(ROOTED_KEY, result)
+            .putString(ROOTED_FINGERPRINT_KEY, fingerprint)
+            .apply();
+        return result;
+    }
+
     /**
      * Check if the current Android device is rooted
      */
@@ -298,14 +463,25 @@ class DeviceData {
     }
 
     /**
-     * Get the current battery charge level, eg 0.3
+     * Get the sticky battery status broadcast, from which the level and charging status are read
      */
     @Nullable
-    private Float getBatteryLevel() {
+    private Intent getBatteryStatus() {
         try {
             IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-            Intent batteryStatus = appContext.registerReceiver(null, ifilter);
+            return appContext.registerReceiver(null, ifilter);
+        } catch (Exception exception) {
+            Logger.warn("Could not get battery status");
+        }
+        return null;
+    }
 
+    /**
+     * Get the current battery charge level, eg 0.3
+     */
+    @Nullable
+    private Float getBatteryLevel(@Nullable Intent batteryStatus) {
+        try {
             return batteryStatus.getIntExtra("level", -1)
                 / (float) batteryStatus.getIntExtra("scale", -1);
         } catch (Exception exception) {
@@ -318,11 +494,8 @@ class DeviceData {
      * Is the device currently charging/full battery?
      */
     @Nullable
-    private Boolean isCharging() {
+    private Boolean isCharging(@Nullable Intent batteryStatus) {
         try {
-            IntentFilter ifilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
-            Intent batteryStatus = appContext.registerReceiver(null, ifilter);
-
             int status = batteryStatus.getIntExtra("status", -1);
             return (status == BatteryManager.BATTERY_STATUS_CHARGING
                 || status == BatteryManager.BATTERY_STATUS_FULL);
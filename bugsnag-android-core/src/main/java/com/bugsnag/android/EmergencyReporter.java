@@ -0,0 +1,125 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Reports unhandled errors which occur when memory is exhausted, where building a full
+ * {@link Error} would allocate too much to succeed. A reduced report containing the exception,
+ * the trace of the reporting thread, the app and device summaries collected at startup and the
+ * breadcrumbs is written instead, preferably into the crash scratch file.
+ *
+ * A ballast allocation is reserved at startup and released before the report is written,
+ * so that there is some headroom for the allocations which remain.
+ */
+class EmergencyReporter {
+
+    static final int BALLAST_SIZE = 128 * 1024;
+    private static final String THREAD_TYPE = "android";
+
+    private final Configuration config;
+    private final ErrorStore errorStore;
+    private final Breadcrumbs breadcrumbs;
+    private final Map<String, Object> appSummary;
+    private final Map<String, Object> deviceSummary;
+
+    @Nullable
+    @SuppressWarnings("unused") // only held so that it can be released
+    private volatile byte[] ballast = new byte[BALLAST_SIZE];
+
+    EmergencyReporter(@NonNull Configuration config,
+                      @NonNull AppData appData,
+                      @NonNull DeviceData deviceData,
+                      @NonNull Breadcrumbs breadcrumbs,
+                      @NonNull ErrorStore errorStore) {
+        this.config = config;
+        this.errorStore = errorStore;
+        this.breadcrumbs = breadcrumbs;
+        this.appSummary = Collections.unmodifiableMap(appData.getAppDataSummary());
+        this.deviceSummary = deviceData.getStaticDeviceDataSummary();
+    }
+
+    /**
+     * Returns true if an error was caused by memory being exhausted, in which case it should
+     * be reported by {@link #report(Throwable, Thread)}
+     */
+    static boolean isOutOfMemory(@NonNull Throwable exc) {
+        for (Throwable cause = exc; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OutOfMemoryError) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the ballast, then stores a reduced report of an unhandled error
+     *
+     * @param exc    the unhandled error
+     * @param thread the thread which threw the error
+     */
+    void report(@NonNull Throwable exc, @NonNull Thread thread) {
+        ballast = null;
+
+        try {
+            long durationMs = AppData.getDurationMs();
+            errorStore.writeEmergencyReport(new Report(exc, thread, durationMs), durationMs);
+        } catch (Throwable throwable) { // includes a further OutOfMemoryError
+            Logger.warn("Failed to store report of unhandled error", throwable);
+        }
+    }
+
+    private class Report implements JsonStream.Streamable {
+
+        private final Throwable exc;
+        private final Thread thread;
+        private final long durationMs;
+
+        Report(@NonNull Throwable exc, @NonNull Thread thread, long durationMs) {
+            this.exc = exc;
+            this.thread = thread;
+            this.durationMs = durationMs;
+        }
+
+        @Override
+        public void toStream(@NonNull JsonStream writer) throws IOException {
+            writer.beginObject();
+            writer.name("severity").value(Severity.ERROR);
+            writer.name("severityReason").beginObject()
+                .name("type").value(HandledState.REASON_UNHANDLED_EXCEPTION)
+                .endObject();
+            writer.name("unhandled").value(true);
+            writer.name("exceptions").value(new Exceptions(config, new BugsnagException(exc)));
+
+            writer.name("app").beginObject();
+            streamEntries(writer, appSummary);
+            writer.name("duration").value(durationMs);
+            writer.endObject();
+
+            writer.name("device").beginObject();
+            streamEntries(writer, deviceSummary);
+            writer.endObject();
+
+            writer.name("breadcrumbs").value(breadcrumbs);
+
+            if (config.getSendThreads()) { // only the reporting thread, with the error's trace
+                CachedThread reportingThread = new CachedThread(config, thread.getId(),
+                    thread.getName(), THREAD_TYPE, true, exc.getStackTrace());
+                writer.name("threads").value(new ThreadState(
+                    new CachedThread[]{reportingThread}));
+            }
+            writer.endObject();
+        }
+
+        private void streamEntries(@NonNull JsonStream writer,
+                                   @NonNull Map<String, Object> map) throws IOException {
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+        }
+    }
+}
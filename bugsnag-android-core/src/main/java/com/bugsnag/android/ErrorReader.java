@@ -5,8 +5,10 @@ import androidx.annotation.NonNull;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -44,7 +46,8 @@ class ErrorReader {
             List<String> projectPackages = Collections.emptyList();
             boolean unhandled = false;
 
-            reader = new JsonReader(new BufferedReader(new FileReader(errorFile)));
+            InputStream input = PayloadCompression.decompress(new FileInputStream(errorFile));
+            reader = new JsonReader(new BufferedReader(new InputStreamReader(input, "UTF-8")));
             reader.beginObject();
             while (reader.hasNext()) {
                 switch (reader.nextName()) {
@@ -2,6 +2,8 @@ package com.bugsnag.android;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -9,12 +11,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Store and flush Error reports which couldn't be sent immediately due to
@@ -23,11 +28,21 @@ import java.util.concurrent.Semaphore;
 class ErrorStore extends FileStore<Error> {
 
     private static final String STARTUP_CRASH = "_startupcrash";
-    private static final long LAUNCH_CRASH_TIMEOUT_MS = 2000;
-    private static final int LAUNCH_CRASH_POLL_MS = 50;
+    private static final String HANDLED = "_handled";
+
+    // stored reports with a lower priority are discarded first when the store is full
+    private static final int HANDLED_PRIORITY = 0;
+    private static final int UNHANDLED_PRIORITY = 1;
+    private static final int LAUNCH_CRASH_PRIORITY = 2;
 
-    volatile boolean flushOnLaunchCompleted = false;
     private final Semaphore semaphore = new Semaphore(1);
+    private final DeliveryPipeline deliveryPipeline;
+
+    // reports which are stored but held back from delivery, guarded by lock
+    private final Map<Error, File> pendingFiles = new IdentityHashMap<>();
+
+    @Nullable
+    private volatile CrashScratchFile crashScratchFile;
 
     static final Comparator<File> ERROR_REPORT_COMPARATOR = new Comparator<File>() {
         @Override
@@ -47,8 +62,34 @@ class ErrorStore extends FileStore<Error> {
         }
     };
 
+    private final DeliveryPipeline.Task deliveryTask = new DeliveryPipeline.Task() {
+        @NonNull
+        @Override
+        public DeliveryPipeline.Outcome deliver(@NonNull File file) {
+            return flushErrorReport(file);
+        }
+    };
+
+    /**
+     * Updates the store once each report has been delivered or failed, in the order that
+     * the reports were flushed
+     */
+    private final DeliveryPipeline.Callback deliveryCallback = new DeliveryPipeline.Callback() {
+        @Override
+        public void onDeliveryCompleted(@NonNull File file,
+                                        @NonNull DeliveryPipeline.Outcome outcome) {
+            if (outcome == DeliveryPipeline.Outcome.FAILED) {
+                deferQueuedFiles(Collections.singleton(file));
+            } else {
+                deleteStoredFiles(Collections.singleton(file));
+            }
+        }
+    };
+
     ErrorStore(@NonNull Configuration config, @NonNull Context appContext, Delegate delegate) {
-        super(config, appContext, "/bugsnag-errors/", 128, ERROR_REPORT_COMPARATOR, delegate);
+        super(config, appContext, "/bugsnag-errors/", config.getMaxStoredErrors(),
+            config.getMaxStoredErrorBytes(), ERROR_REPORT_COMPARATOR, delegate);
+        deliveryPipeline = new DeliveryPipeline(config.getMaxConcurrentDeliveries());
     }
 
     void flushOnLaunch() {
@@ -61,41 +102,198 @@ class ErrorStore extends FileStore<Error> {
             cancelQueuedFiles(storedFiles);
 
             if (!crashReports.isEmpty()) {
+                flushLaunchCrashReports(crashReports);
+            }
+        }
 
-                // Block the main thread for a 2 second interval as the app may crash very soon.
-                // The request itself will run in a background thread and will continue after the 2
-                // second period until the request completes, or the app crashes.
-                flushOnLaunchCompleted = false;
-                Logger.info("Attempting to send launch crash reports");
-
-                try {
-                    Async.run(new Runnable() {
-                        @Override
-                        public void run() {
-                            flushReports(crashReports);
-                            flushOnLaunchCompleted = true;
-                        }
-                    });
-                } catch (RejectedExecutionException ex) {
-                    Logger.warn("Failed to flush launch crash reports", ex);
-                    flushOnLaunchCompleted = true;
-                }
+        flushAsync(); // flush any remaining errors async that weren't delivered
+    }
 
-                long waitMs = 0;
+    /**
+     * Sends launch crash reports in the background, blocking the calling thread until they
+     * have been delivered or the launch crash flush timeout elapses, as the app may crash again
+     * very soon. The request continues in the background after the timeout until it completes,
+     * or the app crashes.
+     */
+    private void flushLaunchCrashReports(final List<File> crashReports) {
+        Logger.info("Attempting to send launch crash reports");
+        final CountDownLatch completed = new CountDownLatch(1);
 
-                while (!flushOnLaunchCompleted && waitMs < LAUNCH_CRASH_TIMEOUT_MS) {
+        try {
+            Async.run(new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        Thread.sleep(LAUNCH_CRASH_POLL_MS);
-                        waitMs += LAUNCH_CRASH_POLL_MS;
-                    } catch (InterruptedException exception) {
-                        Logger.warn("Interrupted while waiting for launch crash report request");
+                        flushReports(crashReports);
+                    } finally {
+                        completed.countDown();
                     }
                 }
-                Logger.info("Continuing with Bugsnag initialisation");
+            });
+        } catch (RejectedExecutionException ex) {
+            Logger.warn("Failed to flush launch crash reports", ex);
+            return;
+        }
+
+        long timeoutMs = getLaunchCrashFlushTimeoutMs();
+
+        if (timeoutMs > 0) {
+            try {
+                if (!completed.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    Logger.warn("Timed out waiting for launch crash reports to be sent");
+                }
+            } catch (InterruptedException exception) {
+                Logger.warn("Interrupted while waiting for launch crash report request");
+                Thread.currentThread().interrupt();
             }
         }
+        Logger.info("Continuing with Bugsnag initialisation");
+    }
 
-        flushAsync(); // flush any remaining errors async that weren't delivered
+    /**
+     * Returns how long to block for launch crash reports to be delivered. Delivery to local
+     * storage via {@link DefaultDelivery} completes before the app could crash again, so there
+     * is no need to block for it.
+     */
+    @VisibleForTesting
+    long getLaunchCrashFlushTimeoutMs() {
+        if (config.getDelivery() instanceof DefaultDelivery) {
+            return 0;
+        }
+        return config.getLaunchCrashFlushTimeoutMs();
+    }
+
+    /**
+     * Stores an error which will be completed with further details shortly, so that it is
+     * delivered on the next launch if the process is killed before the details are collected.
+     * The stored report is held back from delivery in this process until
+     * {@link #releasePendingError(Error, boolean)} is called.
+     */
+    void writePendingError(@NonNull Error error) {
+        lock.lock();
+        try {
+            String filename = write(error);
+
+            if (filename != null) {
+                File file = new File(filename);
+                queuedFiles.add(file);
+                pendingFiles.put(error, file);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases an error stored by {@link #writePendingError(Error)} for delivery, first patching
+     * the stored report in place if the error was updated after it was written. The report
+     * keeps its filename, so it can only be delivered once.
+     *
+     * @param error   the pending error
+     * @param updated whether the error was changed after it was stored
+     */
+    void releasePendingError(@NonNull Error error, boolean updated) {
+        lock.lock();
+        try {
+            File file = pendingFiles.remove(error);
+
+            if (file == null) {
+                return;
+            }
+            if (updated && !overwrite(file, error)) {
+                Logger.warn("Failed to update pending error, sending it as first stored");
+            }
+            cancelQueuedFiles(Collections.singleton(file));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Promotes any unhandled error which was written to the crash scratch file by the previous
+     * process to a stored report, then maps the scratch file so that it is ready for a crash in
+     * this process. This should be called before the stored reports are flushed on launch.
+     */
+    void prepareCrashScratchFile() {
+        if (storeDirectory == null) {
+            return;
+        }
+        File file = new File(storeDirectory, CrashScratchFile.FILENAME);
+        CrashScratchFile scratchFile = new CrashScratchFile(file, CrashScratchFile.DEFAULT_SIZE);
+
+        if (scratchFile.open()) {
+            lock.lock();
+            try {
+                File report = scratchFile.promote(new File(storeDirectory));
+
+                if (report != null) {
+                    onFileStored(report);
+                }
+            } finally {
+                lock.unlock();
+            }
+            crashScratchFile = scratchFile;
+        }
+    }
+
+    /**
+     * Stores an unhandled error as the process crashes. The error is written to the crash
+     * scratch file if possible, to be delivered on the next launch, otherwise it is stored as
+     * a regular report and delivery is attempted immediately.
+     */
+    void writeUnhandledError(@NonNull Error error) {
+        if (!writeToCrashScratchFile(getFilename(error), error)) {
+            write(error);
+            flushAsync();
+        }
+    }
+
+    /**
+     * Stores a reduced report for an unhandled error which occurred when memory was exhausted.
+     * The crash scratch file is preferred as its buffers were allocated at startup, and no
+     * delivery is attempted until the next launch.
+     *
+     * @param report     the reduced report
+     * @param durationMs how long the app had been running when it crashed
+     */
+    void writeEmergencyReport(@NonNull JsonStream.Streamable report, long durationMs) {
+        String filename = formatFilename(isStartupCrash(durationMs) ? STARTUP_CRASH : "");
+
+        if (!writeToCrashScratchFile(filename, report)) {
+            write(report, filename);
+        }
+    }
+
+    private boolean writeToCrashScratchFile(@NonNull String filename,
+                                            @NonNull JsonStream.Streamable streamable) {
+        CrashScratchFile scratchFile = crashScratchFile;
+
+        if (scratchFile != null && scratchFile.write(new File(filename).getName(), streamable)) {
+            Logger.info("Saved unhandled error to crash scratch file");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Handled errors are discarded before unhandled errors, and unhandled launch crashes are
+     * kept the longest, as they are the reports most likely to explain why the app is unusable
+     */
+    @Override
+    int getEvictionPriority(@NonNull File file) {
+        String name = file.getName();
+
+        if (name.contains(HANDLED)) {
+            return HANDLED_PRIORITY;
+        } else if (isLaunchCrashReport(file)) {
+            return LAUNCH_CRASH_PRIORITY;
+        }
+        return UNHANDLED_PRIORITY;
+    }
+
+    @Override
+    boolean isReservedFile(@NonNull File file) {
+        return CrashScratchFile.FILENAME.equals(file.getName()) || super.isReservedFile(file);
     }
 
     /**
@@ -124,8 +322,13 @@ class ErrorStore extends FileStore<Error> {
                 Logger.info(String.format(Locale.US,
                     "Sending %d saved error(s) to Bugsnag", storedReports.size()));
 
-                for (File errorFile : storedReports) {
-                    flushErrorReport(errorFile);
+                List<File> skippedReports = deliveryPipeline.deliver(
+                    new ArrayList<>(storedReports), deliveryTask, deliveryCallback);
+
+                if (!skippedReports.isEmpty()) {
+                    cancelQueuedFiles(skippedReports);
+                    Logger.info(String.format(Locale.US, "Deferring %d saved error(s) "
+                        + "until delivery succeeds", skippedReports.size()));
                 }
             } finally {
                 semaphore.release(1);
@@ -133,7 +336,8 @@ class ErrorStore extends FileStore<Error> {
         }
     }
 
-    private void flushErrorReport(File errorFile) {
+    @NonNull
+    private DeliveryPipeline.Outcome flushErrorReport(File errorFile) {
         try {
             Report report;
 
@@ -146,9 +350,8 @@ class ErrorStore extends FileStore<Error> {
                 for (BeforeSend beforeSend : config.getBeforeSendTasks()) {
                     try {
                         if (!beforeSend.run(report)) {
-                            deleteStoredFiles(Collections.singleton(errorFile));
                             Logger.info("Deleting cancelled error file " + errorFile.getName());
-                            return;
+                            return DeliveryPipeline.Outcome.DISCARDED;
                         }
                     } catch (Throwable ex) {
                         Logger.warn("BeforeSend threw an Exception", ex);
@@ -158,19 +361,20 @@ class ErrorStore extends FileStore<Error> {
 
             config.getDelivery().deliver(report, config);
 
-            deleteStoredFiles(Collections.singleton(errorFile));
             Logger.info("Deleting sent error file " + errorFile.getName());
+            return DeliveryPipeline.Outcome.DELIVERED;
         } catch (DeliveryFailureException exception) {
-            cancelQueuedFiles(Collections.singleton(errorFile));
             Logger.warn("Could not send previously saved error(s)"
                 + " to Bugsnag, will try again later", exception);
+            return DeliveryPipeline.Outcome.FAILED;
         } catch (FileNotFoundException exc) {
             Logger.warn("Ignoring empty file - oldest report on disk was deleted", exc);
+            return DeliveryPipeline.Outcome.DISCARDED;
         } catch (Exception exception) {
             if (delegate != null) {
                 delegate.onErrorIOFailure(exception, errorFile, "Crash Report Deserialization");
             }
-            deleteStoredFiles(Collections.singleton(errorFile));
+            return DeliveryPipeline.Outcome.DISCARDED;
         }
     }
 
@@ -197,17 +401,25 @@ class ErrorStore extends FileStore<Error> {
         if (object instanceof Error) {
             Error error = (Error) object;
 
+            if (!error.getHandledState().isUnhandled()) {
+                suffix = HANDLED;
+            }
             Map<String, Object> appData = error.getAppData();
             if (appData instanceof Map) {
                 Object duration = appData.get("duration");
                 if (duration instanceof Number
                     && isStartupCrash(((Number) appData.get("duration")).longValue())) {
-                    suffix = STARTUP_CRASH;
+                    suffix += STARTUP_CRASH;
                 }
             }
         } else {
             suffix = "not-jvm";
         }
+        return formatFilename(suffix);
+    }
+
+    @NonNull
+    private String formatFilename(@NonNull String suffix) {
         String uuid = UUID.randomUUID().toString();
         long timestamp = System.currentTimeMillis();
         return String.format(Locale.US, "%s%d_%s%s.json",
@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -50,6 +51,8 @@ public class EventReceiver extends BroadcastReceiver {
                 }
             }
 
+            invalidateDeviceData(fullAction);
+
             BreadcrumbType type =
                 actions.containsKey(fullAction) ? actions.get(fullAction) : BreadcrumbType.LOG;
 
@@ -62,6 +65,38 @@ public class EventReceiver extends BroadcastReceiver {
         }
     }
 
+    /**
+     * Discards any cached device data which the broadcast indicates may have changed
+     */
+    @SuppressWarnings("deprecation") // storage broadcasts are still sent on newer devices
+    private void invalidateDeviceData(@Nullable String action) {
+        DeviceData deviceData = client.deviceData;
+
+        if (action == null) {
+            return;
+        }
+        switch (action) {
+            case Intent.ACTION_POWER_CONNECTED:
+            case Intent.ACTION_POWER_DISCONNECTED:
+            case Intent.ACTION_BATTERY_LOW:
+            case Intent.ACTION_BATTERY_OKAY:
+                deviceData.onBatteryChanged();
+                break;
+            case Intent.ACTION_CONFIGURATION_CHANGED:
+                deviceData.onOrientationChanged();
+                break;
+            case Intent.ACTION_AIRPLANE_MODE_CHANGED:
+                deviceData.onNetworkChanged();
+                break;
+            case Intent.ACTION_DEVICE_STORAGE_LOW:
+            case Intent.ACTION_DEVICE_STORAGE_OK:
+                deviceData.onStorageChanged();
+                break;
+            default:
+                break;
+        }
+    }
+
     static boolean isAndroidKey(@NonNull String actionName) {
         return actionName.startsWith("android.");
     }
@@ -2,10 +2,13 @@ package com.bugsnag.android;
 
 import android.os.StrictMode;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides automatic notification hooks for unhandled exceptions.
@@ -15,24 +18,62 @@ class ExceptionHandler implements UncaughtExceptionHandler {
     private static final String STRICT_MODE_TAB = "StrictMode";
     private static final String STRICT_MODE_KEY = "Violation";
 
+    static final long STARTUP_TIMEOUT_MS = 2000;
+
     private final UncaughtExceptionHandler originalHandler;
+
+    @Nullable
+    private volatile Future<?> pendingStartup;
     private final StrictModeHandler strictModeHandler = new StrictModeHandler();
     final Map<Client, Boolean> clientMap = new WeakHashMap<>();
 
     static void enable(@NonNull Client client) {
+        // Subscribe this client to uncaught exceptions
+        install().clientMap.put(client, true);
+    }
+
+    /**
+     * Installs the handler before a client is initialized in the background. Until the
+     * startup completes, an uncaught exception waits up to {@link #STARTUP_TIMEOUT_MS} for the
+     * client so that it can be reported.
+     *
+     * @param startup completes once the client has been initialized and subscribed
+     */
+    static void enableDuringStartup(@NonNull Future<?> startup) {
+        install().pendingStartup = startup;
+    }
+
+    /**
+     * Called once a background startup has completed, whether or not it succeeded
+     */
+    static void onStartupComplete() {
+        UncaughtExceptionHandler currentHandler = Thread.getDefaultUncaughtExceptionHandler();
+
+        if (currentHandler instanceof ExceptionHandler) {
+            ExceptionHandler bugsnagHandler = (ExceptionHandler) currentHandler;
+            bugsnagHandler.pendingStartup = null;
+
+            // Remove the Bugsnag ExceptionHandler if the client was not subscribed
+            if (bugsnagHandler.clientMap.isEmpty()) {
+                Thread.setDefaultUncaughtExceptionHandler(bugsnagHandler.originalHandler);
+            }
+        }
+    }
+
+    /**
+     * Finds or creates the Bugsnag ExceptionHandler
+     */
+    @NonNull
+    private static synchronized ExceptionHandler install() {
         UncaughtExceptionHandler currentHandler = Thread.getDefaultUncaughtExceptionHandler();
 
-        // Find or create the Bugsnag ExceptionHandler
-        ExceptionHandler bugsnagHandler;
         if (currentHandler instanceof ExceptionHandler) {
-            bugsnagHandler = (ExceptionHandler) currentHandler;
+            return (ExceptionHandler) currentHandler;
         } else {
-            bugsnagHandler = new ExceptionHandler(currentHandler);
+            ExceptionHandler bugsnagHandler = new ExceptionHandler(currentHandler);
             Thread.setDefaultUncaughtExceptionHandler(bugsnagHandler);
+            return bugsnagHandler;
         }
-
-        // Subscribe this client to uncaught exceptions
-        bugsnagHandler.clientMap.put(client, true);
     }
 
     static void disable(@NonNull Client client) {
@@ -57,6 +98,7 @@ class ExceptionHandler implements UncaughtExceptionHandler {
     @Override
     public void uncaughtException(@NonNull Thread thread, @NonNull Throwable throwable) {
         boolean strictModeThrowable = strictModeHandler.isStrictModeThrowable(throwable);
+        awaitPendingStartup();
 
         // Notify any subscribed clients of the uncaught exception
         for (Client client : clientMap.keySet()) {
@@ -94,4 +136,22 @@ class ExceptionHandler implements UncaughtExceptionHandler {
             Logger.warn("Exception", throwable);
         }
     }
+
+    /**
+     * Waits for a client which is being initialized in the background, so that an exception
+     * thrown during startup is not missed
+     */
+    private void awaitPendingStartup() {
+        Future<?> startup = pendingStartup;
+
+        if (startup != null) {
+            try {
+                startup.get(STARTUP_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            } catch (Exception exception) {
+                Logger.warn("Bugsnag did not finish initializing before an uncaught exception");
+            }
+        }
+    }
 }
@@ -7,8 +7,12 @@ import androidx.annotation.Nullable;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
@@ -16,13 +20,21 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 abstract class FileStore<T extends JsonStream.Streamable> {
 
+    // payloads are written to a temporary file before replacing a stored file
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
     interface Delegate {
 
         /**
@@ -40,17 +52,30 @@ abstract class FileStore<T extends JsonStream.Streamable> {
     @Nullable
     final String storeDirectory;
     private final int maxStoreCount;
+    private final long maxStoreBytes;
     private final Comparator<File> comparator;
 
+    // the size of each file in the store directory, built by the first scan of the directory
+    // and then kept up to date as files are stored and deleted. Guarded by lock.
+    @Nullable
+    private Map<File, Long> storedSizes;
+    private long storedBytes;
+
+    // schedules the retry of files which failed to deliver. Guarded by lock.
+    @Nullable
+    private final RetryScheduler retryScheduler;
+
     final Lock lock = new ReentrantLock();
     final Collection<File> queuedFiles = new ConcurrentSkipListSet<>();
     protected final ErrorStore.Delegate delegate;
 
 
     FileStore(@NonNull Configuration config, @NonNull Context appContext, String folder,
-              int maxStoreCount, Comparator<File> comparator, Delegate delegate) {
+              int maxStoreCount, long maxStoreBytes, Comparator<File> comparator,
+              Delegate delegate) {
         this.config = config;
         this.maxStoreCount = maxStoreCount;
+        this.maxStoreBytes = maxStoreBytes;
         this.comparator = comparator;
         this.delegate = delegate;
 
@@ -69,6 +94,8 @@ abstract class FileStore<T extends JsonStream.Streamable> {
             path = null;
         }
         this.storeDirectory = path;
+        this.retryScheduler = path == null ? null
+            : new RetryScheduler(new File(path, RetryScheduler.INDEX_FILENAME));
     }
 
     void enqueueContentForDelivery(String content) {
@@ -76,13 +103,15 @@ abstract class FileStore<T extends JsonStream.Streamable> {
             return;
         }
         String filename = getFilename(content);
-        discardOldestFileIfNeeded();
         lock.lock();
         Writer out = null;
         try {
-            FileOutputStream fos = new FileOutputStream(filename);
+            OutputStream fos = compress(new FileOutputStream(filename));
             out = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));
             out.write(content);
+            out.close();
+            out = null;
+            onFileStored(new File(filename));
         } catch (Exception exc) {
             File errorFile = new File(filename);
 
@@ -109,17 +138,24 @@ abstract class FileStore<T extends JsonStream.Streamable> {
         if (storeDirectory == null) {
             return null;
         }
-        discardOldestFileIfNeeded();
-        String filename = getFilename(streamable);
+        return write(streamable, getFilename(streamable));
+    }
 
+    @Nullable
+    String write(@NonNull JsonStream.Streamable streamable, @NonNull String filename) {
+        if (storeDirectory == null) {
+            return null;
+        }
         JsonStream stream = null;
         lock.lock();
 
         try {
-            FileOutputStream fos = new FileOutputStream(filename);
+            OutputStream fos = compress(new FileOutputStream(filename));
             Writer out = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));
             stream = new JsonStream(out);
             stream.value(streamable);
+            stream.close();
+            onFileStored(new File(filename));
             Logger.info(String.format("Saved unsent payload to disk (%s) ", filename));
             return filename;
         } catch (FileNotFoundException exc) {
@@ -139,32 +175,236 @@ abstract class FileStore<T extends JsonStream.Streamable> {
         return null;
     }
 
-    void discardOldestFileIfNeeded() {
-        // Limit number of saved errors to prevent disk space issues
-        File exceptionDir = new File(storeDirectory);
-        if (exceptionDir.isDirectory()) {
-            File[] files = exceptionDir.listFiles();
-
-            if (files != null && files.length >= maxStoreCount) {
-                // Sort files then delete the first one (oldest timestamp)
-                Arrays.sort(files, comparator);
-
-                for (int k = 0; k < files.length && files.length >= maxStoreCount; k++) {
-                    File oldestFile = files[k];
-
-                    if (!queuedFiles.contains(oldestFile)) {
-                        Logger.warn(String.format("Discarding oldest error as stored "
-                            + "error limit reached (%s)", oldestFile.getPath()));
-                        deleteStoredFiles(Collections.singleton(oldestFile));
-                    }
+    /**
+     * Replaces the contents of a stored file. The payload is written to a temporary file which
+     * is then renamed over the stored file, so the stored file always holds either the
+     * original or the complete replacement payload, and keeps its name.
+     *
+     * @return true if the stored file was replaced
+     */
+    boolean overwrite(@NonNull File file, @NonNull JsonStream.Streamable streamable) {
+        File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        JsonStream stream = null;
+        lock.lock();
+
+        try {
+            OutputStream fos = compress(new FileOutputStream(tempFile));
+            Writer out = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));
+            stream = new JsonStream(out);
+            stream.value(streamable);
+            stream.close();
+            stream = null;
+
+            if (tempFile.renameTo(file)) {
+                onFileStored(file);
+                Logger.info(String.format("Updated unsent payload on disk (%s) ", file));
+                return true;
+            }
+            Logger.warn(String.format("Failed to update unsent payload (%s) ", file));
+        } catch (Exception exc) {
+            Logger.warn(String.format("Failed to update unsent payload (%s) ", file), exc);
+        } finally {
+            IOUtils.closeQuietly(stream);
+
+            if (tempFile.exists()) {
+                IOUtils.deleteFile(tempFile);
+            }
+            lock.unlock();
+        }
+        return false;
+    }
+
+    /**
+     * Moves a payload which was written outside the store into it, compressing the payload
+     * as configured. The source file is removed once the payload has been stored.
+     *
+     * @return true if the payload was stored
+     */
+    boolean moveIntoStore(@NonNull File source, @NonNull String filename) {
+        File file = new File(filename);
+        File tempFile = new File(filename + TEMP_SUFFIX);
+        InputStream in = null;
+        OutputStream out = null;
+        lock.lock();
+
+        try {
+            if (config.getPayloadCompression() == PayloadCompression.NONE) {
+                if (!source.renameTo(file)) {
+                    Logger.warn(String.format("Failed to move payload into store (%s) ", source));
+                    return false;
                 }
+            } else {
+                in = new FileInputStream(source);
+                out = compress(new FileOutputStream(tempFile));
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int count;
+
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                out.close();
+                out = null;
+
+                if (!tempFile.renameTo(file)) {
+                    Logger.warn(String.format("Failed to move payload into store (%s) ", source));
+                    return false;
+                }
+                IOUtils.closeQuietly(in);
+                in = null;
+                IOUtils.deleteFile(source);
+            }
+            onFileStored(file);
+            return true;
+        } catch (Exception exc) {
+            Logger.warn(String.format("Failed to move payload into store (%s) ", source), exc);
+        } finally {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(out);
+
+            if (tempFile.exists()) {
+                IOUtils.deleteFile(tempFile);
+            }
+            lock.unlock();
+        }
+        return false;
+    }
+
+    /**
+     * Wraps a stream for a stored payload so that it is compressed as configured
+     */
+    @NonNull
+    OutputStream compress(@NonNull FileOutputStream fos) throws IOException {
+        try {
+            return config.getPayloadCompression().compress(fos);
+        } catch (IOException exc) {
+            IOUtils.closeQuietly(fos);
+            throw exc;
+        }
+    }
+
+    /**
+     * Discards stored files if needed so that another file can be stored without exceeding
+     * the maximum number of stored files
+     */
+    void discardOldestFileIfNeeded() {
+        lock.lock();
+        try {
+            trimToQuota(maxStoreCount - 1, maxStoreBytes, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the size of a file which was written to the store directory, then discards other
+     * stored files until the store is within its quotas again
+     */
+    void onFileStored(@NonNull File file) {
+        lock.lock();
+        try {
+            Map<File, Long> sizes = getStoredSizes();
+            long size = file.length();
+            Long previousSize = sizes.put(file, size);
+            storedBytes += size - (previousSize == null ? 0 : previousSize);
+            trimToQuota(maxStoreCount, maxStoreBytes, file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how readily a stored file is discarded when the store exceeds its quotas. Files
+     * with the lowest priority are discarded first, and the oldest of those before the newest.
+     */
+    int getEvictionPriority(@NonNull File file) {
+        return 0;
+    }
+
+    /**
+     * Returns the stored file sizes, scanning the store directory the first time this is
+     * called. Must be called with the lock held.
+     */
+    @NonNull
+    private Map<File, Long> getStoredSizes() {
+        if (storedSizes == null) {
+            File[] files = storeDirectory == null ? null : new File(storeDirectory).listFiles();
+            indexStoredFiles(files == null ? Collections.<File>emptyList() : Arrays.asList(files));
+        }
+        return storedSizes;
+    }
+
+    private void indexStoredFiles(@NonNull Collection<File> files) {
+        storedSizes = new HashMap<>();
+        storedBytes = 0;
+
+        for (File file : files) {
+            if (file.isFile() && !isReservedFile(file)
+                && !file.getName().endsWith(TEMP_SUFFIX)) {
+                long size = file.length();
+                storedSizes.put(file, size);
+                storedBytes += size;
+            }
+        }
+    }
+
+    /**
+     * Discards the stored files with the lowest eviction priority until the store is within
+     * the given quotas. Files which are queued for delivery are never discarded.
+     */
+    private void trimToQuota(int maxCount, long maxBytes, @Nullable File keep) {
+        Map<File, Long> sizes = getStoredSizes();
+
+        while (sizes.size() > maxCount || storedBytes > maxBytes) {
+            File evicted = findFileToEvict(sizes.keySet(), keep);
+
+            if (evicted == null) {
+                return; // everything else is queued for delivery
             }
+            Logger.warn(String.format(Locale.US, "Discarding stored payload as the storage "
+                + "quota was reached (%s, %d files, %d bytes)",
+                evicted.getPath(), sizes.size(), storedBytes));
+            deleteStoredFiles(Collections.singleton(evicted));
         }
     }
 
+    @Nullable
+    private File findFileToEvict(@NonNull Collection<File> files, @Nullable File keep) {
+        File evicted = null;
+        int evictedPriority = 0;
+
+        for (File file : files) {
+            if (file.equals(keep) || queuedFiles.contains(file)) {
+                continue;
+            }
+            int priority = getEvictionPriority(file);
+
+            if (evicted == null || priority < evictedPriority
+                || (priority == evictedPriority && isOlder(file, evicted))) {
+                evicted = file;
+                evictedPriority = priority;
+            }
+        }
+        return evicted;
+    }
+
+    private boolean isOlder(@NonNull File file, @NonNull File other) {
+        if (comparator == null) {
+            return file.compareTo(other) < 0;
+        }
+        return comparator.compare(file, other) < 0;
+    }
+
     @NonNull
     abstract String getFilename(Object object);
 
+    /**
+     * Returns true if a file in the store directory is used by the store itself, and so is
+     * neither delivered nor discarded
+     */
+    boolean isReservedFile(@NonNull File file) {
+        return RetryScheduler.INDEX_FILENAME.equals(file.getName());
+    }
+
     List<File> findStoredFiles() {
         lock.lock();
         try {
@@ -177,9 +417,17 @@ abstract class FileStore<T extends JsonStream.Streamable> {
                     File[] values = dir.listFiles();
 
                     if (values != null) {
+                        indexStoredFiles(Arrays.asList(values));
+
                         for (File value : values) {
-                            // delete any tombstoned/empty files, as they contain no useful info
-                            if (value.length() == 0) {
+                            if (isReservedFile(value)) {
+                                continue;
+                            }
+                            // delete any tombstoned/empty files, as they contain no useful info,
+                            // and temporary files left by an interrupted overwrite
+                            if (value.length() == 0 || value.getName().endsWith(TEMP_SUFFIX)) {
+                                removeStoredSize(value);
+
                                 if (!value.delete()) {
                                     value.deleteOnExit();
                                 }
@@ -187,6 +435,7 @@ abstract class FileStore<T extends JsonStream.Streamable> {
                                 files.add(value);
                             }
                         }
+                        files = filterRetries(files);
                     }
                 }
             }
@@ -197,6 +446,48 @@ abstract class FileStore<T extends JsonStream.Streamable> {
         }
     }
 
+    /**
+     * Discards files which have failed to deliver for too long, and skips files which are
+     * waiting to be retried. Must be called with the lock held.
+     */
+    @NonNull
+    private List<File> filterRetries(@NonNull List<File> files) {
+        if (retryScheduler == null) {
+            return files;
+        }
+        retryScheduler.retainAll(getStoredSizes().keySet());
+        List<File> dueFiles = new ArrayList<>();
+        List<File> expiredFiles = new ArrayList<>();
+
+        for (File file : files) {
+            if (retryScheduler.isExpired(file)) {
+                Logger.warn("Discarding stored payload which could not be delivered "
+                    + "before it expired (" + file.getPath() + ")");
+                expiredFiles.add(file);
+            } else if (retryScheduler.isDue(file)) {
+                dueFiles.add(file);
+            }
+        }
+        deleteStoredFiles(expiredFiles);
+        return dueFiles;
+    }
+
+    /**
+     * Returns files which failed to deliver to the store, and schedules a retry of each with
+     * a backoff which increases with the number of failed attempts
+     */
+    void deferQueuedFiles(Collection<File> files) {
+        lock.lock();
+        try {
+            if (files != null && retryScheduler != null) {
+                retryScheduler.onDeliveryFailed(files);
+            }
+            cancelQueuedFiles(files);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     void cancelQueuedFiles(Collection<File> files) {
         lock.lock();
         try {
@@ -208,13 +499,29 @@ abstract class FileStore<T extends JsonStream.Streamable> {
         }
     }
 
+    private void removeStoredSize(@NonNull File file) {
+        if (storedSizes != null) {
+            Long size = storedSizes.remove(file);
+
+            if (size != null) {
+                storedBytes -= size;
+            }
+        }
+    }
+
     void deleteStoredFiles(Collection<File> storedFiles) {
         lock.lock();
         try {
             if (storedFiles != null) {
                 queuedFiles.removeAll(storedFiles);
 
+                if (retryScheduler != null) {
+                    retryScheduler.remove(storedFiles);
+                }
+
                 for (File storedFile : storedFiles) {
+                    removeStoredSize(storedFile);
+
                     if (!storedFile.delete()) {
                         storedFile.deleteOnExit();
                     }
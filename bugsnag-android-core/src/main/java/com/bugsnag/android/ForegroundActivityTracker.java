@@ -0,0 +1,136 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks which activities are started, and which was started most recently, without locking.
+ * <p>
+ * Each activity name has a reference count, so an activity which is started more than once
+ * remains in the foreground until each instance is stopped. Entries are retained once an
+ * activity stops, so that starting and stopping a known activity does not allocate.
+ */
+class ForegroundActivityTracker {
+
+    /**
+     * The number of started instances of an activity, and when it was last started
+     */
+    private static final class Entry {
+        final String name;
+        final AtomicInteger count = new AtomicInteger();
+        volatile long sequence;
+
+        Entry(String name) {
+            this.name = name;
+        }
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicReference<Entry> mostRecent = new AtomicReference<>();
+    private final AtomicInteger startedCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile boolean lifecycleObserved;
+
+    /**
+     * Records that an activity has started
+     *
+     * @param activityName the activity name
+     * @return true if no other activities were started, so the app entered the foreground
+     */
+    boolean onActivityStarted(@NonNull String activityName) {
+        lifecycleObserved = true;
+        Entry entry = getEntry(activityName);
+        entry.count.incrementAndGet();
+        entry.sequence = sequence.incrementAndGet();
+        mostRecent.set(entry);
+        return startedCount.getAndIncrement() == 0;
+    }
+
+    /**
+     * Records that an activity has stopped. A stop without a matching start, such as for an
+     * activity which started before tracking began, is ignored.
+     *
+     * @param activityName the activity name
+     * @return true if no other activities remain started, so the app left the foreground
+     */
+    boolean onActivityStopped(@NonNull String activityName) {
+        lifecycleObserved = true;
+        Entry entry = entries.get(activityName);
+
+        if (entry == null || !decrementIfStarted(entry.count)) {
+            return false;
+        }
+        if (entry.count.get() == 0 && mostRecent.get() == entry) {
+            // another activity usually starts before the previous one stops, so this is only
+            // reached when the app leaves the foreground and the search is over few entries
+            mostRecent.compareAndSet(entry, findMostRecentStarted());
+        }
+        return startedCount.decrementAndGet() == 0;
+    }
+
+    /**
+     * Returns the name of the activity which was started most recently and is still started
+     */
+    @Nullable
+    String getMostRecentActivity() {
+        Entry entry = mostRecent.get();
+        return entry != null ? entry.name : null;
+    }
+
+    boolean hasStartedActivities() {
+        return startedCount.get() > 0;
+    }
+
+    /**
+     * Returns whether any activity lifecycle callback has been received, so that the started
+     * activities reflect whether the app is in the foreground
+     */
+    boolean isLifecycleObserved() {
+        return lifecycleObserved;
+    }
+
+    @NonNull
+    private Entry getEntry(@NonNull String activityName) {
+        Entry entry = entries.get(activityName);
+
+        if (entry == null) {
+            Entry created = new Entry(activityName);
+            entry = entries.putIfAbsent(activityName, created);
+
+            if (entry == null) {
+                entry = created;
+            }
+        }
+        return entry;
+    }
+
+    private static boolean decrementIfStarted(@NonNull AtomicInteger count) {
+        int current;
+        do {
+            current = count.get();
+
+            if (current <= 0) {
+                return false;
+            }
+        } while (!count.compareAndSet(current, current - 1));
+        return true;
+    }
+
+    @Nullable
+    private Entry findMostRecentStarted() {
+        Entry result = null;
+
+        for (Entry entry : entries.values()) {
+            if (entry.count.get() > 0 && (result == null || entry.sequence > result.sequence)) {
+                result = entry;
+            }
+        }
+        return result;
+    }
+}
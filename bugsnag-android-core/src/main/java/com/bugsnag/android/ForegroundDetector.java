@@ -11,15 +11,18 @@ import java.util.List;
 class ForegroundDetector {
 
     private final ActivityManager activityManager;
+    private final ForegroundActivityTracker activityTracker;
 
-    ForegroundDetector(Context context) {
+    ForegroundDetector(Context context, ForegroundActivityTracker activityTracker) {
         this.activityManager =
             (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        this.activityTracker = activityTracker;
     }
 
     /**
-     * Determines whether or not the application is in the foreground, by using the process'
-     * importance as a proxy.
+     * Determines whether or not the application is in the foreground. Once an activity lifecycle
+     * callback has been received the application is in the foreground while any activity is
+     * started, otherwise the process' importance is used as a proxy.
      * <p/>
      * In the unlikely event that information about the process cannot be retrieved, this method
      * will return null, and the 'inForeground' and 'durationInForeground' values will not be
@@ -29,6 +32,18 @@ class ForegroundDetector {
      */
     @Nullable
     Boolean isInForeground() {
+        if (activityTracker.isLifecycleObserved()) {
+            return activityTracker.hasStartedActivities();
+        }
+        return isProcessInForeground();
+    }
+
+    /**
+     * Determines whether the process is in the foreground from its importance, which requires
+     * a binder call
+     */
+    @Nullable
+    private Boolean isProcessInForeground() {
         try {
             ActivityManager.RunningAppProcessInfo info = getProcessInfo();
 
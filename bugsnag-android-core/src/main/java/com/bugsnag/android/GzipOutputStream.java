@@ -0,0 +1,97 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes gzip data like {@link java.util.zip.GZIPOutputStream}, but reuses a cached
+ * {@link Deflater} rather than allocating the native compression state for every payload.
+ */
+class GzipOutputStream extends DeflaterOutputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final byte[] HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    // a single deflater is cached, as payloads are rarely written concurrently
+    private static final AtomicReference<Deflater> CACHED_DEFLATER = new AtomicReference<>();
+
+    private final CRC32 crc = new CRC32();
+    private boolean closed;
+
+    GzipOutputStream(@NonNull OutputStream out, int level) throws IOException {
+        super(out, obtainDeflater(level), BUFFER_SIZE);
+        out.write(HEADER);
+    }
+
+    private static Deflater obtainDeflater(int level) {
+        Deflater deflater = CACHED_DEFLATER.getAndSet(null);
+
+        if (deflater == null) {
+            return new Deflater(level, true);
+        }
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    private static void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+
+        if (!CACHED_DEFLATER.compareAndSet(null, deflater)) {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public synchronized void write(@NonNull byte[] bytes, int off, int len) throws IOException {
+        super.write(bytes, off, len);
+        crc.update(bytes, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (def.finished()) {
+            return;
+        }
+        def.finish();
+
+        while (!def.finished()) {
+            int len = def.deflate(buf, 0, buf.length);
+
+            if (len > 0) {
+                out.write(buf, 0, len);
+            }
+        }
+        writeInt((int) crc.getValue());
+        writeInt(def.getTotalIn());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            finish();
+        } finally {
+            releaseDeflater(def);
+            out.close();
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+}
@@ -7,6 +7,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Writer;
@@ -74,7 +75,7 @@ public class JsonStream extends JsonWriter {
         // Copy the file contents onto the stream
         Reader input = null;
         try {
-            FileInputStream fis = new FileInputStream(file);
+            InputStream fis = PayloadCompression.decompress(new FileInputStream(file));
             input = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
             IOUtils.copy(input, out);
         } finally {
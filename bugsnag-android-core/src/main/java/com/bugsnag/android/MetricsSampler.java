@@ -0,0 +1,115 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically refreshes device metrics which are slow to collect, such as those which require
+ * a binder call, so that creating a report only reads the most recent sample. Sampling only
+ * runs while the app is in the foreground; in the background each value is collected on
+ * demand and cached for its time-to-live instead.
+ */
+class MetricsSampler implements Runnable {
+
+    private static final String THREAD_NAME = "Bugsnag Metrics Sampler";
+
+    private final Collection<CachedValue<?>> values;
+    private final long periodMs;
+    private final ScheduledExecutorService executor;
+
+    // guarded by this
+    @Nullable
+    private ScheduledFuture<?> samplingTask;
+
+    MetricsSampler(@NonNull Collection<CachedValue<?>> values, long periodMs) {
+        this(values, periodMs, createExecutor());
+    }
+
+    @VisibleForTesting
+    MetricsSampler(@NonNull Collection<CachedValue<?>> values, long periodMs,
+                   @NonNull ScheduledExecutorService executor) {
+        this.values = values;
+        this.periodMs = periodMs;
+        this.executor = executor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Starts or suspends sampling when the app moves between the foreground and background
+     *
+     * @param inForeground whether the app is in the foreground
+     */
+    void setInForeground(boolean inForeground) {
+        if (inForeground) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    synchronized void start() {
+        if (periodMs <= 0 || samplingTask != null) {
+            return;
+        }
+        try {
+            samplingTask = executor.scheduleAtFixedRate(this, 0, periodMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException exception) {
+            Logger.warn("Failed to start sampling device metrics", exception);
+            return;
+        }
+        for (CachedValue<?> value : values) {
+            value.setSampled(true);
+        }
+    }
+
+    synchronized void stop() {
+        if (samplingTask == null) {
+            return;
+        }
+        samplingTask.cancel(false);
+        samplingTask = null;
+
+        for (CachedValue<?> value : values) {
+            value.setSampled(false);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized boolean isSampling() {
+        return samplingTask != null;
+    }
+
+    @Override
+    public void run() {
+        for (CachedValue<?> value : values) {
+            try {
+                value.refresh();
+            } catch (Exception exception) {
+                // an exception would cancel all further sampling
+                Logger.warn("Failed to sample device metric", exception);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import android.annotation.SuppressLint;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.File;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -514,14 +515,60 @@ public class NativeInterface {
                 ? null
                 : new String(releaseStageBytes, UTF8Charset);
         Client client = getClient();
-        if (releaseStage == null
-            || releaseStage.length() == 0
-            || client.getConfig().shouldNotifyForReleaseStage(releaseStage)) {
+        if (shouldNotifyForReleaseStage(releaseStage)) {
             client.getErrorStore().enqueueContentForDelivery(payload);
             client.getErrorStore().flushAsync();
         }
     }
 
+    /**
+     * Reserves a path in the error store which a native report can be written to directly,
+     * discarding the oldest stored report if the store is full.
+     *
+     * @return the path, or null if the error store is unavailable
+     */
+    @Nullable
+    public static String getErrorReportPath() {
+        ErrorStore errorStore = getClient().getErrorStore();
+        if (errorStore.storeDirectory == null) {
+            return null;
+        }
+        errorStore.discardOldestFileIfNeeded();
+        return errorStore.getFilename(null);
+    }
+
+    /**
+     * Moves a native report which was converted outside the error store to a path reserved
+     * by {@link #getErrorReportPath()}, compressing it as configured
+     *
+     * @param report the converted report, which is removed once stored
+     * @param path the reserved path
+     * @return true if the report was stored
+     */
+    public static boolean storeErrorReport(@NonNull File report, @NonNull String path) {
+        return getClient().getErrorStore().moveIntoStore(report, path);
+    }
+
+    /**
+     * Determines whether a report captured in a given release stage should be delivered,
+     * based on configured release stages
+     *
+     * @param releaseStage the release stage in which the report was captured
+     */
+    public static boolean shouldNotifyForReleaseStage(@Nullable String releaseStage) {
+        return releaseStage == null
+            || releaseStage.length() == 0
+            || getClient().getConfig().shouldNotifyForReleaseStage(releaseStage);
+    }
+
+    /**
+     * Delivers any reports in the error store, including those written by
+     * {@link #getErrorReportPath()}
+     */
+    public static void flushErrorReports() {
+        getClient().getErrorStore().flushAsync();
+    }
+
     /**
      * Notifies using the Android SDK
      *
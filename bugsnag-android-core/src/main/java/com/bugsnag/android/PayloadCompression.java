@@ -0,0 +1,70 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * How error reports are compressed when they are stored on disk or delivered to local storage.
+ *
+ * Stored reports are decompressed transparently when they are read, whichever compression
+ * was configured when they were written.
+ */
+public enum PayloadCompression {
+
+    /**
+     * Payloads are written as plain JSON
+     */
+    NONE(Deflater.NO_COMPRESSION),
+
+    /**
+     * Payloads are compressed with gzip at the default compression level
+     */
+    GZIP(Deflater.DEFAULT_COMPRESSION),
+
+    /**
+     * Payloads are compressed with gzip at the fastest compression level, which uses less CPU
+     * than {@link #GZIP} at the cost of larger payloads
+     */
+    GZIP_FAST(Deflater.BEST_SPEED);
+
+    private static final int GZIP_MAGIC_BYTES = 2;
+
+    private final int level;
+
+    PayloadCompression(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Wraps a stream so that anything written to it is compressed
+     */
+    @NonNull
+    OutputStream compress(@NonNull OutputStream out) throws IOException {
+        if (this == NONE) {
+            return out;
+        }
+        return new GzipOutputStream(out, level);
+    }
+
+    /**
+     * Wraps a stream of a stored payload so that it is decompressed if it was compressed
+     */
+    @NonNull
+    static InputStream decompress(@NonNull InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(GZIP_MAGIC_BYTES);
+        int magic = buffered.read() | (buffered.read() << 8);
+        buffered.reset();
+
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+}
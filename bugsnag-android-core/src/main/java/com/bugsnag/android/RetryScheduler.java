@@ -0,0 +1,253 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Decides when stored payloads which failed to deliver are retried. Each failure delays the
+ * next attempt exponentially, with random jitter so that clients which failed together do not
+ * retry together, and payloads which have been failing for longer than a maximum age expire.
+ * <p>
+ * The attempt count and next attempt time of each file are persisted in an index file in the
+ * store directory, so that the backoff continues in the next process. Times are recorded with
+ * the wall clock for this reason.
+ * <p>
+ * This class is not thread safe, and is guarded by the lock of the store which owns it.
+ */
+class RetryScheduler {
+
+    static final String INDEX_FILENAME = "retry-index";
+
+    static final long INITIAL_DELAY_MS = 15 * 1000;
+    static final long MAX_DELAY_MS = 60 * 60 * 1000;
+    static final long MAX_AGE_MS = 3 * 24 * 60 * 60 * 1000;
+
+    private static final int MAX_BACKOFF_SHIFT = 20;
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * The retry state of a single stored file
+     */
+    private static class Entry {
+        int attempts;
+        long firstFailureMs;
+        long nextAttemptMs;
+    }
+
+    private final File indexFile;
+    private final Clock clock;
+    private final Random random;
+
+    @Nullable
+    private Map<String, Entry> entries;
+
+    RetryScheduler(@NonNull File indexFile) {
+        this(indexFile, Clock.SYSTEM, new Random());
+    }
+
+    @VisibleForTesting
+    RetryScheduler(@NonNull File indexFile, @NonNull Clock clock, @NonNull Random random) {
+        this.indexFile = indexFile;
+        this.clock = clock;
+        this.random = random;
+    }
+
+    /**
+     * Returns how long to wait after a given number of failed attempts before retrying,
+     * doubling the delay after each failure up to a maximum. Half of the delay is random.
+     */
+    long getRetryDelayMs(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), MAX_BACKOFF_SHIFT);
+        long delayMs = Math.min(INITIAL_DELAY_MS << shift, MAX_DELAY_MS);
+        long halfDelayMs = delayMs / 2;
+        return halfDelayMs + (long) (random.nextDouble() * halfDelayMs);
+    }
+
+    /**
+     * Returns true if a file should be delivered now, because it has not failed to deliver or
+     * its retry delay has elapsed
+     */
+    boolean isDue(@NonNull File file) {
+        Entry entry = getEntries().get(file.getName());
+
+        if (entry == null) {
+            return true;
+        }
+        long now = clock.currentTimeMillis();
+
+        // the clock was set backwards if the next attempt is further away than any delay
+        return now >= entry.nextAttemptMs || entry.nextAttemptMs - now > MAX_DELAY_MS;
+    }
+
+    /**
+     * Returns true if a file has been failing to deliver for longer than the maximum age,
+     * and so should be discarded
+     */
+    boolean isExpired(@NonNull File file) {
+        Entry entry = getEntries().get(file.getName());
+        return entry != null && clock.currentTimeMillis() - entry.firstFailureMs > MAX_AGE_MS;
+    }
+
+    /**
+     * Records that files failed to deliver, scheduling their next attempt
+     */
+    void onDeliveryFailed(@NonNull Collection<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        Map<String, Entry> entries = getEntries();
+        long now = clock.currentTimeMillis();
+
+        for (File file : files) {
+            Entry entry = entries.get(file.getName());
+
+            if (entry == null) {
+                entry = new Entry();
+                entry.firstFailureMs = now;
+                entries.put(file.getName(), entry);
+            }
+            entry.attempts++;
+            entry.nextAttemptMs = now + getRetryDelayMs(entry.attempts);
+        }
+        persist();
+    }
+
+    /**
+     * Forgets the retry state of files which were delivered or deleted
+     */
+    void remove(@NonNull Collection<File> files) {
+        Map<String, Entry> entries = getEntries();
+        boolean changed = false;
+
+        for (File file : files) {
+            changed |= entries.remove(file.getName()) != null;
+        }
+        if (changed) {
+            persist();
+        }
+    }
+
+    /**
+     * Forgets the retry state of any file which is no longer stored
+     */
+    void retainAll(@NonNull Collection<File> storedFiles) {
+        Map<String, Entry> entries = getEntries();
+
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<String, Boolean> names = new HashMap<>();
+
+        for (File file : storedFiles) {
+            names.put(file.getName(), true);
+        }
+        boolean changed = false;
+        Iterator<String> iterator = entries.keySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (!names.containsKey(iterator.next())) {
+                iterator.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            persist();
+        }
+    }
+
+    @VisibleForTesting
+    int getAttempts(@NonNull File file) {
+        Entry entry = getEntries().get(file.getName());
+        return entry == null ? 0 : entry.attempts;
+    }
+
+    @NonNull
+    private Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = load();
+        }
+        return entries;
+    }
+
+    @NonNull
+    private Map<String, Entry> load() {
+        Map<String, Entry> loaded = new HashMap<>();
+        BufferedReader reader = null;
+
+        try {
+            FileInputStream fis = new FileInputStream(indexFile);
+            reader = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+
+                if (fields.length == 4) {
+                    Entry entry = new Entry();
+                    entry.attempts = Integer.parseInt(fields[1]);
+                    entry.firstFailureMs = Long.parseLong(fields[2]);
+                    entry.nextAttemptMs = Long.parseLong(fields[3]);
+                    loaded.put(fields[0], entry);
+                }
+            }
+        } catch (FileNotFoundException exc) {
+            // no file has failed to deliver yet
+        } catch (Exception exc) {
+            Logger.warn("Failed to read delivery retry index, retrying all payloads", exc);
+            loaded.clear();
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return loaded;
+    }
+
+    /**
+     * Writes the index to a temporary file which replaces the index, so that a partly written
+     * index is never read
+     */
+    private void persist() {
+        File tempFile = new File(indexFile.getPath() + FileStore.TEMP_SUFFIX);
+        Writer out = null;
+
+        try {
+            FileOutputStream fos = new FileOutputStream(tempFile);
+            out = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));
+
+            for (Map.Entry<String, Entry> mapEntry : getEntries().entrySet()) {
+                Entry entry = mapEntry.getValue();
+                out.write(mapEntry.getKey() + SEPARATOR + entry.attempts + SEPARATOR
+                    + entry.firstFailureMs + SEPARATOR + entry.nextAttemptMs + "\n");
+            }
+            out.close();
+            out = null;
+
+            if (!tempFile.renameTo(indexFile)) {
+                Logger.warn("Failed to replace delivery retry index");
+            }
+        } catch (Exception exc) {
+            Logger.warn("Failed to write delivery retry index", exc);
+        } finally {
+            IOUtils.closeQuietly(out);
+
+            if (tempFile.exists()) {
+                IOUtils.deleteFile(tempFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Buffers tracked sessions in memory so that all sessions started within
+ * {@link Configuration#getSessionBatchWindowMs()} are delivered in a single payload, along with
+ * any sessions which were previously stored on disk. Sessions are only written to the
+ * {@link SessionStore} if delivery fails, or if the process terminates while they are buffered.
+ */
+class SessionBatcher {
+
+    /**
+     * Delivers a batch of sessions to the Bugsnag API
+     */
+    interface Sender {
+
+        /**
+         * @param sessions    sessions which are buffered in memory
+         * @param storedFiles session files which were previously written to the store
+         */
+        void send(@NonNull List<Session> sessions, @NonNull List<File> storedFiles)
+            throws DeliveryFailureException;
+    }
+
+    private static final String THREAD_NAME = "Bugsnag Session Batcher";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final Configuration configuration;
+    private final SessionStore sessionStore;
+    private final Sender sender;
+    private final ScheduledExecutorService executor;
+
+    private final Queue<Session> pendingSessions = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    // stored files are only searched for on launch, and after a session is written to the store
+    private final AtomicBoolean storedSessionsPending = new AtomicBoolean(true);
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    SessionBatcher(Configuration configuration, SessionStore sessionStore, Sender sender) {
+        this(configuration, sessionStore, sender, createExecutor());
+    }
+
+    @VisibleForTesting
+    SessionBatcher(Configuration configuration, SessionStore sessionStore, Sender sender,
+                   ScheduledExecutorService executor) {
+        this.configuration = configuration;
+        this.sessionStore = sessionStore;
+        this.sender = sender;
+        this.executor = executor;
+    }
+
+    private static ScheduledExecutorService createExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull Runnable runnable) {
+                    return new Thread(runnable, THREAD_NAME);
+                }
+            });
+        executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Buffers a session, scheduling delivery once the batch window has elapsed if a delivery
+     * is not already scheduled.
+     *
+     * @param session the tracked session
+     */
+    void add(@NonNull Session session) {
+        pendingSessions.add(session);
+
+        if (flushScheduled.compareAndSet(false, true)) {
+            schedule(configuration.getSessionBatchWindowMs());
+        }
+    }
+
+    /**
+     * Schedules immediate delivery of any buffered sessions, without waiting for the batch
+     * window to elapse.
+     */
+    void flushAsync() {
+        if (!pendingSessions.isEmpty()) {
+            flushScheduled.set(true);
+            schedule(0);
+        }
+    }
+
+    private void schedule(long delayMs) {
+        try {
+            executor.schedule(flushTask, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException exception) {
+            // This is on the current thread but there isn't much else we can do
+            flushScheduled.set(false);
+            persist();
+        }
+    }
+
+    /**
+     * Delivers all buffered sessions and stored session files in a single payload.
+     */
+    @VisibleForTesting
+    synchronized void flush() {
+        flushScheduled.set(false);
+        List<Session> sessions = drainPendingSessions();
+        List<File> storedFiles = storedSessionsPending.getAndSet(false)
+            ? sessionStore.findStoredFiles() : Collections.<File>emptyList();
+
+        if (sessions.isEmpty() && storedFiles.isEmpty()) {
+            return;
+        }
+
+        try {
+            sender.send(sessions, storedFiles);
+            sessionStore.deleteStoredFiles(storedFiles);
+        } catch (DeliveryFailureException exception) { // store for later sending
+            Logger.warn("Storing session payload for future delivery", exception);
+            sessionStore.deferQueuedFiles(storedFiles);
+            writeToStore(sessions);
+        } catch (Exception exception) {
+            // drop bad data
+            Logger.warn("Dropping invalid session tracking payload", exception);
+            sessionStore.deleteStoredFiles(storedFiles);
+        }
+    }
+
+    /**
+     * Synchronously writes any buffered sessions to the store, so that they can be delivered
+     * on the next launch. This should be called when the process is about to terminate.
+     */
+    void persist() {
+        writeToStore(drainPendingSessions());
+    }
+
+    /**
+     * Synchronously delivers any buffered sessions along with all session files in the store,
+     * regardless of whether any files are known to have been written since the last flush.
+     */
+    void flushStoredSessions() {
+        storedSessionsPending.set(true);
+        flush();
+    }
+
+    private void writeToStore(List<Session> sessions) {
+        if (!sessions.isEmpty()) {
+            for (Session session : sessions) {
+                sessionStore.write(session);
+            }
+            storedSessionsPending.set(true);
+        }
+    }
+
+    private List<Session> drainPendingSessions() {
+        List<Session> sessions = new ArrayList<>();
+        Session session;
+
+        while ((session = pendingSessions.poll()) != null) {
+            sessions.add(session);
+        }
+        return sessions;
+    }
+}
@@ -0,0 +1,52 @@
+package com.bugsnag.android;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+/**
+ * Streams sessions from a log written by {@link SessionStore}, which holds one session JSON
+ * object per line.
+ */
+class SessionLogReader {
+
+    private static final int EOF = -1;
+
+    /**
+     * Writes each session in the log to the stream as an array element. A record without a
+     * trailing newline was not completely written, so is skipped.
+     *
+     * @return the number of sessions written to the stream
+     * @throws IOException if the log could not be read
+     */
+    static int streamSessions(@NonNull File log, @NonNull JsonStream stream)
+            throws IOException {
+        Reader input = null;
+
+        try {
+            FileInputStream fis = new FileInputStream(log);
+            input = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
+            StringBuilder record = new StringBuilder();
+            int count = 0;
+            int ch;
+
+            while ((ch = input.read()) != EOF) {
+                if (ch != '\n') {
+                    record.append((char) ch);
+                } else if (record.length() > 0) {
+                    stream.jsonValue(record.toString());
+                    record.setLength(0);
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+}
@@ -4,17 +4,34 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
 /**
  * Store and flush Sessions which couldn't be sent immediately due to
  * lack of network connectivity.
+ * <p>
+ * Sessions are appended to a log file as one JSON object per line, so that storing many
+ * sessions only requires a handful of file operations. The log is rotated once it reaches
+ * {@link #MAX_LOG_BYTES}, and whenever stored files are queued for delivery, so that files
+ * returned by {@link #findStoredFiles()} are never appended to afterwards.
  */
 class SessionStore extends FileStore<Session> {
 
+    static final String LOG_SUFFIX = ".jsonl";
+    static final long MAX_LOG_BYTES = 32 * 1024;
+
+    // the log which sessions are currently appended to, guarded by the lock
+    @Nullable
+    private File activeLog;
+
     static final Comparator<File> SESSION_COMPARATOR = new Comparator<File>() {
         @Override
         public int compare(File lhs, File rhs) {
@@ -35,15 +52,70 @@ class SessionStore extends FileStore<Session> {
 
     SessionStore(@NonNull Configuration config, @NonNull Context appContext,
                  @Nullable Delegate delegate) {
-        super(config, appContext, "/bugsnag-sessions/",
-            128, SESSION_COMPARATOR, delegate);
+        super(config, appContext, "/bugsnag-sessions/", config.getMaxStoredSessions(),
+            config.getMaxStoredSessionBytes(), SESSION_COMPARATOR, delegate);
     }
 
     @NonNull
     @Override
     String getFilename(Object object) {
-        return String.format(Locale.US, "%s%s%d.json",
-            storeDirectory, UUID.randomUUID().toString(), System.currentTimeMillis());
+        return String.format(Locale.US, "%s%d%s%s", storeDirectory,
+            System.currentTimeMillis(), UUID.randomUUID().toString(), LOG_SUFFIX);
+    }
+
+    /**
+     * Appends a session to the active log, rotating the log if it has reached its maximum size
+     *
+     * @return the path of the log, or null if the session could not be stored
+     */
+    @Nullable
+    @Override
+    String write(@NonNull JsonStream.Streamable streamable) {
+        if (storeDirectory == null) {
+            return null;
+        }
+        Writer out = null;
+        lock.lock();
+
+        try {
+            if (activeLog == null || !activeLog.exists() || activeLog.length() >= MAX_LOG_BYTES) {
+                activeLog = new File(getFilename(streamable));
+            }
+            FileOutputStream fos = new FileOutputStream(activeLog, true);
+            out = new BufferedWriter(new OutputStreamWriter(fos, "UTF-8"));
+            JsonStream stream = new JsonStream(out);
+            stream.value(streamable);
+            stream.flush();
+            out.write('\n');
+            out.flush();
+            onFileStored(activeLog);
+            Logger.info(String.format("Saved unsent session to disk (%s) ", activeLog));
+            return activeLog.getAbsolutePath();
+        } catch (Exception exc) {
+            // any partial record is skipped by readers, as it is not terminated by a newline.
+            // Later sessions start a new log so that they are not appended to the same line.
+            Logger.warn("Failed to append session to log", exc);
+            activeLog = null;
+        } finally {
+            IOUtils.closeQuietly(out);
+            lock.unlock();
+        }
+        return null;
+    }
+
+    @Override
+    List<File> findStoredFiles() {
+        lock.lock();
+        try {
+            activeLog = null; // the caller may delete any of the files
+            return super.findStoredFiles();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static boolean isSessionLog(@NonNull File file) {
+        return file.getName().endsWith(LOG_SUFFIX);
     }
 
 }
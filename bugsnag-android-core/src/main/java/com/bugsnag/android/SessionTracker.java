@@ -11,16 +11,12 @@ import androidx.annotation.VisibleForTesting;
 
 import java.io.File;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -29,8 +25,8 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
     private static final String KEY_LIFECYCLE_CALLBACK = "ActivityLifecycle";
     private static final int DEFAULT_TIMEOUT_MS = 30000;
 
-    private final Collection<String>
-        foregroundActivities = new ConcurrentLinkedQueue<>();
+    private final ForegroundActivityTracker foregroundActivities =
+        new ForegroundActivityTracker();
     private final long timeoutMs;
 
     final Configuration configuration;
@@ -43,8 +39,8 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
     // The first Activity in this 'session' was started at this time.
     private final AtomicLong lastEnteredForegroundMs = new AtomicLong(0);
     private final AtomicReference<Session> currentSession = new AtomicReference<>();
-    private final Semaphore flushingRequest = new Semaphore(1);
     private final ForegroundDetector foregroundDetector;
+    private final SessionBatcher sessionBatcher;
 
     SessionTracker(Configuration configuration, Client client, SessionStore sessionStore) {
         this(configuration, client, DEFAULT_TIMEOUT_MS, sessionStore);
@@ -56,7 +52,17 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
         this.client = client;
         this.timeoutMs = timeoutMs;
         this.sessionStore = sessionStore;
-        this.foregroundDetector = new ForegroundDetector(client.appContext);
+        this.foregroundDetector =
+            new ForegroundDetector(client.appContext, foregroundActivities);
+        this.sessionBatcher = new SessionBatcher(configuration, sessionStore,
+            new SessionBatcher.Sender() {
+                @Override
+                public void send(@NonNull List<Session> sessions,
+                                 @NonNull List<File> storedFiles)
+                    throws DeliveryFailureException {
+                    deliverSessions(sessions, storedFiles);
+                }
+            });
         notifyNdkInForeground();
     }
 
@@ -166,36 +172,7 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
             && session.isTracked().compareAndSet(false, true)) {
             notifySessionStartObserver(session);
 
-            try {
-                final String endpoint = configuration.getSessionEndpoint();
-                Async.run(new Runnable() {
-                    @Override
-                    public void run() {
-                        //FUTURE:SM It would be good to optimise this
-                        flushStoredSessions();
-
-                        SessionTrackingPayload payload =
-                            new SessionTrackingPayload(session, null,
-                                client.appData, client.deviceData);
-
-                        try {
-                            for (BeforeSendSession mutator : configuration.getSessionCallbacks()) {
-                                mutator.beforeSendSession(payload);
-                            }
-
-                            configuration.getDelivery().deliver(payload, configuration);
-                        } catch (DeliveryFailureException exception) { // store for later sending
-                            Logger.warn("Storing session payload for future delivery", exception);
-                            sessionStore.write(session);
-                        } catch (Exception exception) {
-                            Logger.warn("Dropping invalid session tracking payload", exception);
-                        }
-                    }
-                });
-            } catch (RejectedExecutionException exception) {
-                // This is on the current thread but there isn't much else we can do
-                sessionStore.write(session);
-            }
+            sessionBatcher.add(session);
         }
     }
 
@@ -204,7 +181,7 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
      */
     void onAutoCaptureEnabled() {
         Session session = currentSession.get();
-        if (session != null && !foregroundActivities.isEmpty()) {
+        if (session != null && foregroundActivities.hasStartedActivities()) {
             // If there is no session we will wait for one to be created
             trackSessionIfNeeded(session);
         }
@@ -256,34 +233,29 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
      * Attempts to flush session payloads stored on disk
      */
     void flushStoredSessions() {
-        if (flushingRequest.tryAcquire(1)) {
-            try {
-                List<File> storedFiles;
-
-                storedFiles = sessionStore.findStoredFiles();
-
-                if (!storedFiles.isEmpty()) {
-                    SessionTrackingPayload payload =
-                        new SessionTrackingPayload(null, storedFiles,
-                            client.appData, client.deviceData);
-
-                    //FUTURE:SM Reduce duplication here and above
-                    try {
-                        configuration.getDelivery().deliver(payload, configuration);
-                        sessionStore.deleteStoredFiles(storedFiles);
-                    } catch (DeliveryFailureException exception) {
-                        sessionStore.cancelQueuedFiles(storedFiles);
-                        Logger.warn("Leaving session payload for future delivery", exception);
-                    } catch (Exception exception) {
-                        // drop bad data
-                        Logger.warn("Deleting invalid session tracking payload", exception);
-                        sessionStore.deleteStoredFiles(storedFiles);
-                    }
-                }
-            } finally {
-                flushingRequest.release(1);
-            }
+        sessionBatcher.flushStoredSessions();
+    }
+
+    /**
+     * Writes any sessions which are waiting to be delivered to disk. This should be called
+     * before the process terminates, so that the sessions can be delivered on the next launch.
+     */
+    void persistPendingSessions() {
+        sessionBatcher.persist();
+    }
+
+    /**
+     * Delivers a batch of sessions, running any {@link BeforeSendSession} callbacks first.
+     */
+    private void deliverSessions(@NonNull List<Session> sessions, @NonNull List<File> storedFiles)
+        throws DeliveryFailureException {
+        SessionTrackingPayload payload = SessionTrackingPayload.forSessions(sessions,
+            storedFiles, client.appData, client.deviceData);
+
+        for (BeforeSendSession mutator : configuration.getSessionCallbacks()) {
+            mutator.beforeSendSession(payload);
         }
+        configuration.getDelivery().deliver(payload, configuration);
     }
 
     @Override
@@ -358,7 +330,7 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
             long nowMs = System.currentTimeMillis();
             lastEnteredForegroundMs.set(nowMs);
             startNewSession(new Date(nowMs), client.getUser(), true);
-            foregroundActivities.add(getActivityName(activity));
+            foregroundActivities.onActivityStarted(getActivityName(activity));
         }
     }
 
@@ -379,8 +351,7 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
         if (activityStarting) {
             long noActivityRunningForMs = nowMs - lastExitedForegroundMs.get();
 
-            //FUTURE:SM Race condition between isEmpty and put
-            if (foregroundActivities.isEmpty()) {
+            if (foregroundActivities.onActivityStarted(activityName)) {
                 lastEnteredForegroundMs.set(nowMs);
 
                 if (noActivityRunningForMs >= timeoutMs
@@ -388,12 +359,10 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
                     startNewSession(new Date(nowMs), client.getUser(), true);
                 }
             }
-            foregroundActivities.add(activityName);
         } else {
-            foregroundActivities.remove(activityName);
-
-            if (foregroundActivities.isEmpty()) {
+            if (foregroundActivities.onActivityStopped(activityName)) {
                 lastExitedForegroundMs.set(nowMs);
+                sessionBatcher.flushAsync(); // deliver before the process may be killed
             }
         }
         setChanged();
@@ -434,14 +403,6 @@ class SessionTracker extends Observable implements Application.ActivityLifecycle
 
     @Nullable
     String getContextActivity() {
-        if (foregroundActivities.isEmpty()) {
-            return null;
-        } else {
-            // linked hash set retains order of added activity and ensures uniqueness
-            // therefore obtain the most recently added
-            int size = foregroundActivities.size();
-            String[] activities = foregroundActivities.toArray(new String[size]);
-            return activities[size - 1];
-        }
+        return foregroundActivities.getMostRecentActivity();
     }
 }
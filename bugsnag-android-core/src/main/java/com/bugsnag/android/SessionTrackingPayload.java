@@ -4,13 +4,14 @@ import androidx.annotation.NonNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 public class SessionTrackingPayload implements JsonStream.Streamable {
 
     private final Notifier notifier;
-    private final Session session;
+    private final List<Session> sessions;
     private final Map<String, Object> deviceDataSummary;
     private final Map<String, Object> appDataSummary;
     private final List<File> files;
@@ -19,11 +20,30 @@ public class SessionTrackingPayload implements JsonStream.Streamable {
                            List<File> files,
                            AppData appData,
                            DeviceData deviceData) {
+        this(session == null
+                ? Collections.<Session>emptyList() : Collections.singletonList(session),
+            files, appData, deviceData);
+    }
+
+    private SessionTrackingPayload(List<Session> sessions,
+                                   List<File> files,
+                                   AppData appData,
+                                   DeviceData deviceData) {
         this.appDataSummary = appData.getAppDataSummary();
         this.deviceDataSummary = deviceData.getDeviceDataSummary();
         this.notifier = Notifier.getInstance();
-        this.session = session;
-        this.files = files;
+        this.sessions = sessions;
+        this.files = files == null ? Collections.<File>emptyList() : files;
+    }
+
+    /**
+     * Creates a payload which delivers a batch of sessions along with any stored session files
+     */
+    static SessionTrackingPayload forSessions(List<Session> sessions,
+                                              List<File> files,
+                                              AppData appData,
+                                              DeviceData deviceData) {
+        return new SessionTrackingPayload(sessions, files, appData, deviceData);
     }
 
     @Override
@@ -34,11 +54,14 @@ public class SessionTrackingPayload implements JsonStream.Streamable {
         writer.name("device").value(deviceDataSummary);
         writer.name("sessions").beginArray();
 
-        if (session == null) {
-            for (File file : files) {
+        for (File file : files) {
+            if (SessionStore.isSessionLog(file)) {
+                SessionLogReader.streamSessions(file, writer);
+            } else { // stored by a previous version, which wrote one session per file
                 writer.value(file);
             }
-        } else {
+        }
+        for (Session session : sessions) {
             writer.value(session);
         }
 
@@ -47,7 +70,11 @@ public class SessionTrackingPayload implements JsonStream.Streamable {
     }
 
     Session getSession() {
-        return session;
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    List<Session> getSessions() {
+        return sessions;
     }
 
     Map<String, Object> getDevice() {
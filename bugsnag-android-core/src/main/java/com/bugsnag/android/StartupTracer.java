@@ -0,0 +1,140 @@
+package com.bugsnag.android;
+
+import android.os.Build;
+import android.os.Trace;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how long each phase of {@link Client} initialization takes. Sections must be nested,
+ * and are also emitted as systrace sections so that they appear alongside the rest of app
+ * startup when captured with systrace or Perfetto.
+ * <p>
+ * Tracing is opt-in via {@link Configuration#setEnableStartupTracing(boolean)}, and once
+ * initialization has finished any further sections are ignored.
+ */
+class StartupTracer {
+
+    private static final String SECTION_PREFIX = "Bugsnag:";
+
+    // systrace truncates section names longer than this
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    /**
+     * A section which has been started, and its duration once it has ended
+     */
+    private static final class Section {
+        final String name;
+        final long startNs;
+        long durationNs = -1;
+
+        Section(String name, long startNs) {
+            this.name = name;
+            this.startNs = startNs;
+        }
+    }
+
+    private final boolean enabled;
+    private final Clock clock;
+
+    // guarded by this
+    private final List<Section> sections = new ArrayList<>();
+    private final Deque<Section> openSections = new ArrayDeque<>();
+    private boolean finished;
+
+    StartupTracer(boolean enabled) {
+        this(enabled, Clock.SYSTEM);
+    }
+
+    @VisibleForTesting
+    StartupTracer(boolean enabled, @NonNull Clock clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts a section, which must be ended by calling {@link #endSection()} on the same thread
+     *
+     * @param name the name of the initialization phase
+     */
+    synchronized void beginSection(@NonNull String name) {
+        if (!enabled || finished) {
+            return;
+        }
+        Section section = new Section(name, clock.nanoTime());
+        sections.add(section);
+        openSections.push(section);
+        beginSystraceSection(name);
+    }
+
+    /**
+     * Ends the most recently started section
+     */
+    synchronized void endSection() {
+        if (!enabled || finished || openSections.isEmpty()) {
+            return;
+        }
+        Section section = openSections.pop();
+        section.durationNs = clock.nanoTime() - section.startNs;
+        endSystraceSection();
+    }
+
+    /**
+     * Stops recording sections once initialization has completed, discarding any which were
+     * not ended
+     */
+    synchronized void finish() {
+        if (!enabled || finished) {
+            return;
+        }
+        while (!openSections.isEmpty()) {
+            sections.remove(openSections.pop());
+            endSystraceSection();
+        }
+        finished = true;
+    }
+
+    /**
+     * Returns the duration of each completed section in nanoseconds, in the order the sections
+     * were started. If a section was recorded more than once, the durations are summed.
+     */
+    @NonNull
+    synchronized Map<String, Long> getTimings() {
+        Map<String, Long> timings = new LinkedHashMap<>();
+
+        for (Section section : sections) {
+            if (section.durationNs < 0) {
+                continue;
+            }
+            Long previous = timings.get(section.name);
+            long total = previous == null ? section.durationNs : previous + section.durationNs;
+            timings.put(section.name, total);
+        }
+        return Collections.unmodifiableMap(timings);
+    }
+
+    private static void beginSystraceSection(@NonNull String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            String sectionName = SECTION_PREFIX + name;
+
+            if (sectionName.length() > MAX_SECTION_NAME_LENGTH) {
+                sectionName = sectionName.substring(0, MAX_SECTION_NAME_LENGTH);
+            }
+            Trace.beginSection(sectionName);
+        }
+    }
+
+    private static void endSystraceSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bugsnag.android
 
+import org.junit.Assert.assertEquals
 import org.junit.Assert.assertFalse
 import org.junit.Test
 
@@ -11,4 +12,19 @@ class AnrConfigTest {
     fun testDetectAnrDefault() {
         assertFalse(config.detectAnrs)
     }
+
+    @Test
+    fun testAnrWatchdogDefault() {
+        assertFalse(config.enableAnrWatchdog)
+        assertEquals(5000, config.anrThresholdMs)
+        assertEquals(500, config.anrSampleIntervalMs)
+    }
+
+    @Test
+    fun testAnrWatchdogMinimums() {
+        config.anrThresholdMs = 200
+        assertEquals(1000, config.anrThresholdMs)
+        config.anrSampleIntervalMs = 0
+        assertEquals(50, config.anrSampleIntervalMs)
+    }
 }
@@ -0,0 +1,56 @@
+package com.bugsnag.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class CachedValueTest {
+
+    private class Counter(ttlMs: Long) : CachedValue<Int>(ttlMs) {
+        var computeCount = 0
+        var onCompute: () -> Unit = {}
+
+        override fun compute(): Int {
+            onCompute()
+            return ++computeCount
+        }
+    }
+
+    @Test
+    fun valueIsCollectedOnce() {
+        val counter = Counter(0)
+        assertEquals(1, counter.get())
+        assertEquals(1, counter.get())
+        assertEquals(1, counter.computeCount)
+    }
+
+    @Test
+    fun invalidateCollectsValueAgain() {
+        val counter = Counter(0)
+        assertEquals(1, counter.get())
+        counter.invalidate()
+        assertEquals(2, counter.get())
+        assertEquals(2, counter.get())
+    }
+
+    @Test
+    fun expiredValueIsCollectedAgain() {
+        val counter = Counter(1)
+        assertEquals(1, counter.get())
+        Thread.sleep(5)
+        assertEquals(2, counter.get())
+    }
+
+    @Test
+    fun invalidateDuringCollectionIsNotLost() {
+        val counter = Counter(0)
+        counter.onCompute = {
+            counter.onCompute = {}
+            counter.invalidate()
+        }
+
+        // the first value was collected before the invalidation completed
+        assertEquals(1, counter.get())
+        assertEquals(2, counter.get())
+        assertEquals(2, counter.get())
+    }
+}
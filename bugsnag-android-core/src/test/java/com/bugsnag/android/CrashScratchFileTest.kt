@@ -0,0 +1,96 @@
+package com.bugsnag.android
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.io.File
+import java.nio.file.Files
+
+class CrashScratchFileTest {
+
+    private lateinit var dir: File
+    private lateinit var file: File
+
+    private class Payload(private val message: String) : JsonStream.Streamable {
+        override fun toStream(stream: JsonStream) {
+            stream.beginObject().name("message").value(message).endObject()
+        }
+    }
+
+    @Before
+    fun setUp() {
+        dir = Files.createTempDirectory("bugsnag").toFile()
+        file = File(dir, CrashScratchFile.FILENAME)
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    @Test
+    fun fileIsPreallocated() {
+        assertTrue(CrashScratchFile(file, 20000).open())
+        assertEquals(20000, file.length())
+    }
+
+    @Test
+    fun reportIsPromotedOnNextLaunch() {
+        val crashed = CrashScratchFile(file, 4096)
+        assertTrue(crashed.open())
+        assertTrue(crashed.write("123_report.json", Payload("Ünïcødé 🐛")))
+
+        val relaunched = CrashScratchFile(file, 4096)
+        assertTrue(relaunched.open())
+        val report = requireNotNull(relaunched.promote(dir))
+        assertEquals(File(dir, "123_report.json"), report)
+        assertEquals("{\"message\":\"Ünïcødé 🐛\"}", report.readText())
+
+        // the report is only promoted once
+        assertNull(relaunched.promote(dir))
+        assertEquals(4096, file.length())
+    }
+
+    @Test
+    fun onlyOneReportIsWritten() {
+        val scratchFile = CrashScratchFile(file, 4096)
+        assertTrue(scratchFile.open())
+        assertTrue(scratchFile.write("1_first.json", Payload("first")))
+        assertFalse(scratchFile.write("2_second.json", Payload("second")))
+    }
+
+    @Test
+    fun reportLargerThanFileIsNotPromoted() {
+        val crashed = CrashScratchFile(file, 64)
+        assertTrue(crashed.open())
+        assertFalse(crashed.write("123_report.json", Payload("x".repeat(100))))
+
+        val relaunched = CrashScratchFile(file, 64)
+        assertTrue(relaunched.open())
+        assertNull(relaunched.promote(dir))
+        assertEquals(listOf(file), dir.listFiles()!!.toList())
+    }
+
+    @Test
+    fun failedWriteCanBeRetried() {
+        val scratchFile = CrashScratchFile(file, 128)
+        assertTrue(scratchFile.open())
+        assertFalse(scratchFile.write("1_full.json", Payload("x".repeat(200))))
+        assertTrue(scratchFile.write("2_reduced.json", Payload("reduced")))
+
+        val report = requireNotNull(scratchFile.promote(dir))
+        assertEquals("2_reduced.json", report.name)
+        assertEquals("{\"message\":\"reduced\"}", report.readText())
+    }
+
+    @Test
+    fun emptyFileIsNotPromoted() {
+        val scratchFile = CrashScratchFile(file, 4096)
+        assertTrue(scratchFile.open())
+        assertNull(scratchFile.promote(dir))
+    }
+}
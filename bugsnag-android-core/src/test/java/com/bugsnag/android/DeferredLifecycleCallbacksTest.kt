@@ -0,0 +1,105 @@
+package com.bugsnag.android
+
+import android.app.Activity
+import android.app.Application
+import android.os.Bundle
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.junit.MockitoJUnitRunner
+
+@RunWith(MockitoJUnitRunner::class)
+class DeferredLifecycleCallbacksTest {
+
+    @Mock
+    lateinit var first: Activity
+
+    @Mock
+    lateinit var second: Activity
+
+    /**
+     * Records the order in which callbacks are received
+     */
+    private class RecordingCallbacks : Application.ActivityLifecycleCallbacks {
+        val events = mutableListOf<Pair<String, Activity>>()
+
+        override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {
+            events.add(Pair("created", activity))
+        }
+
+        override fun onActivityStarted(activity: Activity) {
+            events.add(Pair("started", activity))
+        }
+
+        override fun onActivityResumed(activity: Activity) {
+            events.add(Pair("resumed", activity))
+        }
+
+        override fun onActivityPaused(activity: Activity) {
+            events.add(Pair("paused", activity))
+        }
+
+        override fun onActivityStopped(activity: Activity) {
+            events.add(Pair("stopped", activity))
+        }
+
+        override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) {
+            events.add(Pair("saved", activity))
+        }
+
+        override fun onActivityDestroyed(activity: Activity) {
+            events.add(Pair("destroyed", activity))
+        }
+    }
+
+    @Test
+    fun callbacksBeforeDelegateAreReplayed() {
+        val deferred = DeferredLifecycleCallbacks()
+        deferred.onActivityCreated(first, null)
+        deferred.onActivityStarted(first)
+        deferred.onActivityResumed(first)
+
+        val delegate = RecordingCallbacks()
+        deferred.setDelegate(delegate)
+        val expected = listOf(
+            Pair("created", first),
+            Pair("started", first),
+            Pair("resumed", first)
+        )
+        assertEquals(expected, delegate.events)
+    }
+
+    @Test
+    fun callbacksAfterDelegateAreForwarded() {
+        val deferred = DeferredLifecycleCallbacks()
+        deferred.onActivityStarted(first)
+
+        val delegate = RecordingCallbacks()
+        deferred.setDelegate(delegate)
+        deferred.onActivityPaused(first)
+        deferred.onActivityStopped(first)
+        deferred.onActivityStarted(second)
+        deferred.onActivityDestroyed(first)
+
+        val expected = listOf(
+            Pair("started", first),
+            Pair("paused", first),
+            Pair("stopped", first),
+            Pair("started", second),
+            Pair("destroyed", first)
+        )
+        assertEquals(expected, delegate.events)
+    }
+
+    @Test
+    fun replayedCallbacksAreNotRepeated() {
+        val deferred = DeferredLifecycleCallbacks()
+        deferred.onActivityStarted(first)
+        deferred.setDelegate(RecordingCallbacks())
+
+        val replacement = RecordingCallbacks()
+        deferred.setDelegate(replacement)
+        assertEquals(emptyList<Pair<String, Activity>>(), replacement.events)
+    }
+}
@@ -0,0 +1,165 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+import java.util.Collections
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+@RunWith(MockitoJUnitRunner::class)
+class DeliveryPipelineTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val executor = Executors.newFixedThreadPool(8)
+    private val files = (0 until 12).map { File("report-$it.json") }
+    private val completed = Collections.synchronizedList(mutableListOf<File>())
+    private val outcomes = Collections.synchronizedList(mutableListOf<DeliveryPipeline.Outcome>())
+
+    private val callback = DeliveryPipeline.Callback { file, outcome ->
+        completed.add(file)
+        outcomes.add(outcome)
+    }
+
+    private val cacheDir = Files.createTempDirectory("bugsnag").toFile()
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        cacheDir.deleteRecursively()
+    }
+
+    /**
+     * Simulates a delivery with latency, recording how many deliveries are in flight at once.
+     * Earlier files take longer so that deliveries complete out of order.
+     */
+    private inner class LatencyTask(
+        private val failing: Set<File> = emptySet()
+    ) : DeliveryPipeline.Task {
+        val inFlight = AtomicInteger()
+        val maxInFlight = AtomicInteger()
+        val attempted = Collections.synchronizedList(mutableListOf<File>())
+
+        override fun deliver(file: File): DeliveryPipeline.Outcome {
+            attempted.add(file)
+            val count = inFlight.incrementAndGet()
+            maxInFlight.accumulateAndGet(count) { a, b -> Math.max(a, b) }
+            Thread.sleep(5L * (files.size - files.indexOf(file)))
+            inFlight.decrementAndGet()
+
+            return when (file) {
+                in failing -> DeliveryPipeline.Outcome.FAILED
+                else -> DeliveryPipeline.Outcome.DELIVERED
+            }
+        }
+    }
+
+    @Test
+    fun singleDeliveryRunsOnCallingThread() {
+        val threads = mutableSetOf<Thread>()
+        val pipeline = DeliveryPipeline(1)
+        val skipped = pipeline.deliver(files, DeliveryPipeline.Task {
+            threads.add(Thread.currentThread())
+            DeliveryPipeline.Outcome.DELIVERED
+        }, callback)
+
+        assertTrue(skipped.isEmpty())
+        assertEquals(setOf(Thread.currentThread()), threads)
+        assertEquals(files, completed)
+    }
+
+    @Test
+    fun deliveriesAreBoundedAndCompletedInOrder() {
+        val task = LatencyTask()
+        val skipped = DeliveryPipeline(4, executor).deliver(files, task, callback)
+
+        assertTrue(skipped.isEmpty())
+        assertEquals(4, task.maxInFlight.get())
+        assertEquals(files, completed)
+        assertTrue(outcomes.all { it == DeliveryPipeline.Outcome.DELIVERED })
+    }
+
+    @Test
+    fun concurrentDeliveryIsFaster() {
+        val serialStart = System.nanoTime()
+        DeliveryPipeline(1).deliver(files, LatencyTask(), callback)
+        val serialNs = System.nanoTime() - serialStart
+
+        val concurrentStart = System.nanoTime()
+        DeliveryPipeline(4, executor).deliver(files, LatencyTask(), callback)
+        val concurrentNs = System.nanoTime() - concurrentStart
+        assertTrue("serial $serialNs ns, concurrent $concurrentNs ns", concurrentNs < serialNs)
+    }
+
+    @Test
+    fun failureStopsFurtherDispatch() {
+        val task = LatencyTask(setOf(files[1]))
+        val skipped = DeliveryPipeline(2, executor).deliver(files, task, callback)
+
+        // deliveries already in flight when the failure occurs still complete
+        assertEquals(files.size, task.attempted.size + skipped.size)
+        assertEquals(task.attempted, completed)
+        assertEquals(files.takeLast(skipped.size), skipped)
+        assertTrue(skipped.size >= files.size - 3)
+        assertEquals(DeliveryPipeline.Outcome.FAILED, outcomes[1])
+    }
+
+    @Test
+    fun throwingCallbackDoesNotStallDelivery() {
+        for (pipeline in listOf(DeliveryPipeline(1), DeliveryPipeline(3, executor))) {
+            completed.clear()
+            val task = LatencyTask()
+            val skipped = pipeline.deliver(files, task, DeliveryPipeline.Callback { file, _ ->
+                completed.add(file)
+                throw IllegalStateException("Store unavailable")
+            })
+
+            assertTrue(skipped.isEmpty())
+            assertEquals(files, task.attempted.sortedBy { files.indexOf(it) })
+            assertEquals(files, completed)
+        }
+    }
+
+    @Test
+    fun concurrentDefaultDeliveriesStoreDistinctFiles() {
+        `when`(context.cacheDir).thenReturn(cacheDir)
+        val delivery = DefaultDelivery(null, context)
+        val task = DeliveryPipeline.Task { file ->
+            val payload = JsonStream.Streamable {
+                it.beginObject().name("file").value(file.name).endObject()
+            }
+            delivery.deliver("", payload, emptyMap(), PayloadCompression.NONE)
+            DeliveryPipeline.Outcome.DELIVERED
+        }
+        val skipped = DeliveryPipeline(4, executor).deliver(files, task, callback)
+        assertTrue(skipped.isEmpty())
+
+        // deliveries in the same millisecond must not overwrite one another
+        val stored = File(cacheDir, "crashes").listFiles()!!
+        assertEquals(files.size, stored.size)
+        assertTrue(stored.all { it.name.endsWith(".json") })
+        val payloads = stored.map { it.readText() }.toSet()
+        assertEquals(files.map { "{\"file\":\"${it.name}\"}" }.toSet(), payloads)
+    }
+
+    @Test
+    fun exceptionIsTreatedAsFailure() {
+        val skipped = DeliveryPipeline(1).deliver(files, DeliveryPipeline.Task {
+            throw IllegalStateException()
+        }, callback)
+
+        assertEquals(listOf(files[0]), completed)
+        assertEquals(listOf(DeliveryPipeline.Outcome.FAILED), outcomes)
+        assertEquals(files.drop(1), skipped)
+    }
+}
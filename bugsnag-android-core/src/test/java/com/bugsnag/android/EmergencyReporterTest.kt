@@ -0,0 +1,73 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+
+@RunWith(MockitoJUnitRunner::class)
+class EmergencyReporterTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private lateinit var cacheDir: File
+
+    private val report = object : JsonStream.Streamable {
+        override fun toStream(stream: JsonStream) {
+            stream.beginObject().name("unhandled").value(true).endObject()
+        }
+    }
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+    }
+
+    @Test
+    fun outOfMemoryIsDetectedInCauses() {
+        assertTrue(EmergencyReporter.isOutOfMemory(OutOfMemoryError()))
+        assertTrue(EmergencyReporter.isOutOfMemory(RuntimeException(OutOfMemoryError())))
+        assertFalse(EmergencyReporter.isOutOfMemory(RuntimeException(StackOverflowError())))
+    }
+
+    @Test
+    fun emergencyReportIsPromotedFromCrashScratchFile() {
+        val crashed = ErrorStore(config, context, null)
+        crashed.prepareCrashScratchFile()
+        crashed.writeEmergencyReport(report, 0)
+        assertTrue(crashed.findStoredFiles().isEmpty())
+
+        val relaunched = ErrorStore(config, context, null)
+        relaunched.prepareCrashScratchFile()
+        val stored = relaunched.findStoredFiles().single()
+        assertTrue(stored.name.endsWith("_startupcrash.json"))
+        assertEquals("{\"unhandled\":true}", stored.readText())
+    }
+
+    @Test
+    fun emergencyReportIsStoredWithoutCrashScratchFile() {
+        val errorStore = ErrorStore(config, context, null)
+        errorStore.writeEmergencyReport(report, 60000)
+
+        val stored = errorStore.findStoredFiles().single()
+        assertFalse(stored.name.contains("_startupcrash"))
+        assertEquals("{\"unhandled\":true}", stored.readText())
+    }
+}
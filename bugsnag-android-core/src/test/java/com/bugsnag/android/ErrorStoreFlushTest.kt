@@ -0,0 +1,122 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.atomic.AtomicInteger
+
+@RunWith(MockitoJUnitRunner::class)
+class ErrorStoreFlushTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private lateinit var cacheDir: File
+
+    /**
+     * Simulates a network request by sleeping, recording how many requests are in flight
+     */
+    private class LatencyDelivery(private val fail: Boolean = false) : Delivery {
+        val inFlight = AtomicInteger()
+        val maxInFlight = AtomicInteger()
+        val attempts = AtomicInteger()
+
+        override fun deliver(payload: SessionTrackingPayload, config: Configuration) {
+        }
+
+        override fun deliver(report: Report, config: Configuration) {
+            attempts.incrementAndGet()
+            val count = inFlight.incrementAndGet()
+            maxInFlight.accumulateAndGet(count) { a, b -> Math.max(a, b) }
+            try {
+                Thread.sleep(20)
+                if (fail) {
+                    throw DeliveryFailureException("Offline")
+                }
+            } finally {
+                inFlight.decrementAndGet()
+            }
+        }
+    }
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+    }
+
+    private fun ErrorStore.writeReports(count: Int) {
+        for (index in 0 until count) {
+            File(storeDirectory, "150425514793${index}_0000111122223333aaaabbbbcccc9999.json")
+                .writeText("{}")
+        }
+    }
+
+    private fun ErrorStore.storedReports() =
+        File(storeDirectory).listFiles()!!.filter { !isReservedFile(it) }
+
+    @Test
+    fun reportsAreDeliveredConcurrently() {
+        val delivery = LatencyDelivery()
+        config.delivery = delivery
+        config.maxConcurrentDeliveries = 4
+        val errorStore = ErrorStore(config, context, null)
+        errorStore.writeReports(8)
+
+        errorStore.flushReports(errorStore.findStoredFiles())
+        assertEquals(8, delivery.attempts.get())
+        assertTrue(delivery.maxInFlight.get() in 2..4)
+        assertTrue(errorStore.storedReports().isEmpty())
+    }
+
+    @Test
+    fun reportsAreDeliveredSeriallyByDefault() {
+        val delivery = LatencyDelivery()
+        config.delivery = delivery
+        val errorStore = ErrorStore(config, context, null)
+        errorStore.writeReports(3)
+
+        errorStore.flushReports(errorStore.findStoredFiles())
+        assertEquals(3, delivery.attempts.get())
+        assertEquals(1, delivery.maxInFlight.get())
+        assertTrue(errorStore.storedReports().isEmpty())
+    }
+
+    @Test
+    fun failedDeliveryStopsFlush() {
+        val delivery = LatencyDelivery(fail = true)
+        config.delivery = delivery
+        config.maxConcurrentDeliveries = 2
+        val errorStore = ErrorStore(config, context, null)
+        errorStore.writeReports(8)
+
+        errorStore.flushReports(errorStore.findStoredFiles())
+        assertTrue(delivery.attempts.get() <= 2)
+        assertEquals(8, errorStore.storedReports().size)
+
+        // reports which were not attempted remain available, but failed reports are deferred
+        val remaining = errorStore.findStoredFiles()
+        assertEquals(8 - delivery.attempts.get(), remaining.size)
+    }
+
+    @Test
+    fun invalidConcurrencyIsClamped() {
+        config.maxConcurrentDeliveries = 0
+        assertEquals(1, config.maxConcurrentDeliveries)
+    }
+}
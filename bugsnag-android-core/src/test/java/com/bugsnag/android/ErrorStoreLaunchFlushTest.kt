@@ -0,0 +1,98 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+@RunWith(MockitoJUnitRunner::class)
+class ErrorStoreLaunchFlushTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private val released = CountDownLatch(1)
+    private val delivered = CountDownLatch(1)
+    private lateinit var cacheDir: File
+
+    /**
+     * Delivers reports once released, or immediately if not blocking
+     */
+    private inner class BlockingDelivery(private val block: Boolean) : Delivery {
+        override fun deliver(payload: SessionTrackingPayload, config: Configuration) {
+        }
+
+        override fun deliver(report: Report, config: Configuration) {
+            if (block) {
+                released.await(10, TimeUnit.SECONDS)
+            }
+            delivered.countDown()
+        }
+    }
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+        config.launchCrashFlushTimeoutMs = 200
+    }
+
+    @After
+    fun tearDown() {
+        released.countDown()
+        cacheDir.deleteRecursively()
+    }
+
+    private fun writeLaunchCrash(errorStore: ErrorStore) {
+        val file = File(errorStore.storeDirectory, "1504255147933_30b7e350_startupcrash.json")
+        file.writeText("{}")
+    }
+
+    @Test
+    fun flushOnLaunchReturnsOnceDelivered() {
+        config.delivery = BlockingDelivery(false)
+        config.launchCrashFlushTimeoutMs = TimeUnit.MINUTES.toMillis(1)
+        val errorStore = ErrorStore(config, context, null)
+        writeLaunchCrash(errorStore)
+
+        val start = System.nanoTime()
+        errorStore.flushOnLaunch()
+        assertEquals(0, delivered.count)
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10))
+    }
+
+    @Test
+    fun flushOnLaunchStopsBlockingAfterTimeout() {
+        config.delivery = BlockingDelivery(true)
+        val errorStore = ErrorStore(config, context, null)
+        writeLaunchCrash(errorStore)
+
+        val start = System.nanoTime()
+        errorStore.flushOnLaunch()
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        assertTrue(elapsedMs >= 200)
+        assertEquals(1, delivered.count)
+
+        // the request continues in the background
+        released.countDown()
+        assertTrue(delivered.await(5, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun zeroTimeoutDoesNotBlock() {
+        config.delivery = BlockingDelivery(true)
+        config.launchCrashFlushTimeoutMs = -1
+        assertEquals(0, ErrorStore(config, context, null).launchCrashFlushTimeoutMs)
+    }
+}
@@ -0,0 +1,82 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+
+@RunWith(MockitoJUnitRunner::class)
+class ErrorStoreNativeReportTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private val payload = "{\"events\":[{\"exceptions\":[{\"errorClass\":\"SIGSEGV\"}]}]}"
+    private lateinit var cacheDir: File
+    private lateinit var report: File
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+
+        // native reports are converted outside the store, alongside the native crash report
+        report = File(cacheDir, "bugsnag-native/report.json.tmp")
+        report.parentFile!!.mkdirs()
+        report.writeText(payload)
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+    }
+
+    @Test
+    fun nativeReportIsCompressedWhenConfigured() {
+        config.payloadCompression = PayloadCompression.GZIP
+        val errorStore = ErrorStore(config, context, null)
+        val path = errorStore.getFilename(null)
+
+        assertTrue(errorStore.moveIntoStore(report, path))
+        assertFalse(report.exists())
+
+        val stored = File(path)
+        val bytes = stored.readBytes()
+        assertEquals(0x1f, bytes[0].toInt() and 0xff)
+        assertEquals(0x8b, bytes[1].toInt() and 0xff)
+        val text = PayloadCompression.decompress(stored.inputStream()).reader().readText()
+        assertEquals(payload, text)
+        assertEquals(listOf(stored), errorStore.findStoredFiles())
+    }
+
+    @Test
+    fun nativeReportIsMovedUnchangedByDefault() {
+        val errorStore = ErrorStore(config, context, null)
+        val path = errorStore.getFilename(null)
+
+        assertTrue(errorStore.moveIntoStore(report, path))
+        assertFalse(report.exists())
+        assertArrayEquals(payload.toByteArray(), File(path).readBytes())
+    }
+
+    @Test
+    fun missingNativeReportIsNotStored() {
+        config.payloadCompression = PayloadCompression.GZIP
+        val errorStore = ErrorStore(config, context, null)
+        report.delete()
+
+        assertFalse(errorStore.moveIntoStore(report, errorStore.getFilename(null)))
+        assertTrue(File(errorStore.storeDirectory).list()!!.isEmpty())
+    }
+}
@@ -0,0 +1,84 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+
+@RunWith(MockitoJUnitRunner::class)
+class ErrorStorePendingTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private lateinit var cacheDir: File
+    private lateinit var errorStore: ErrorStore
+    private lateinit var error: Error
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+        errorStore = ErrorStore(config, context, null)
+        error = Error.Builder(config, RuntimeException(), null, Thread.currentThread(), true)
+            .build()
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+    }
+
+    private fun storedFiles() = File(errorStore.storeDirectory).listFiles()!!.toList()
+
+    @Test
+    fun pendingErrorIsStoredButNotFlushed() {
+        errorStore.writePendingError(error)
+        assertEquals(1, storedFiles().size)
+        assertTrue(errorStore.findStoredFiles().isEmpty())
+
+        errorStore.releasePendingError(error, false)
+        assertEquals(storedFiles(), errorStore.findStoredFiles())
+    }
+
+    @Test
+    fun updatedPendingErrorIsPatchedInPlace() {
+        errorStore.writePendingError(error)
+        val original = storedFiles().single()
+
+        error.exceptionMessage = "Input dispatching timed out"
+        errorStore.releasePendingError(error, true)
+        val stored = storedFiles().single()
+        assertEquals(original, stored)
+        assertTrue(stored.readText().contains("Input dispatching timed out"))
+        assertEquals(listOf(stored), errorStore.findStoredFiles())
+    }
+
+    @Test
+    fun interruptedOverwriteIsDiscarded() {
+        errorStore.writePendingError(error)
+        val original = storedFiles().single()
+        val tempFile = File(original.path + FileStore.TEMP_SUFFIX)
+        tempFile.writeText("{\"incomplete\":")
+
+        errorStore.releasePendingError(error, false)
+        assertEquals(listOf(original), errorStore.findStoredFiles())
+        assertFalse(tempFile.exists())
+    }
+
+    @Test
+    fun releasingUnknownErrorIsIgnored() {
+        errorStore.releasePendingError(error, true)
+        assertTrue(storedFiles().isEmpty())
+    }
+}
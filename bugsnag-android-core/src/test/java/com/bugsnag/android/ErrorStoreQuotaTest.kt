@@ -0,0 +1,114 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+
+@RunWith(MockitoJUnitRunner::class)
+class ErrorStoreQuotaTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private lateinit var cacheDir: File
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+    }
+
+    private fun buildError(reason: String): Error {
+        return Error.Builder(config, RuntimeException(), null, Thread.currentThread(), true)
+            .severityReasonType(reason)
+            .build()
+    }
+
+    private fun ErrorStore.writeError(reason: String): File {
+        Thread.sleep(2) // filenames are ordered by timestamp
+        return File(requireNotNull(write(buildError(reason))))
+    }
+
+    private fun ErrorStore.storedNames() = File(storeDirectory).list()!!.toSet()
+
+    @Test
+    fun handledErrorsAreDiscardedFirst() {
+        config.maxStoredErrors = 2
+        val errorStore = ErrorStore(config, context, null)
+
+        val unhandled = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        val handled = errorStore.writeError(HandledState.REASON_HANDLED_EXCEPTION)
+        assertTrue(handled.name.contains("_handled"))
+        val newest = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+
+        assertEquals(setOf(unhandled.name, newest.name), errorStore.storedNames())
+    }
+
+    @Test
+    fun launchCrashesAreDiscardedLast() {
+        val dir = File(cacheDir, "bugsnag-errors").apply { mkdirs() }
+        val launchCrash = File(dir, "1_launch_startupcrash.json").apply { writeText("{}") }
+        config.maxStoredErrors = 2
+        val errorStore = ErrorStore(config, context, null)
+
+        val older = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        val newer = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+
+        assertEquals(setOf(launchCrash.name, newer.name), errorStore.storedNames())
+        assertTrue(older.name < newer.name)
+    }
+
+    @Test
+    fun byteQuotaKeepsNewestReport() {
+        config.maxStoredErrorBytes = 1
+        val errorStore = ErrorStore(config, context, null)
+
+        errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        val newest = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        assertEquals(setOf(newest.name), errorStore.storedNames())
+    }
+
+    @Test
+    fun queuedReportsAreNotDiscarded() {
+        config.maxStoredErrors = 1
+        val errorStore = ErrorStore(config, context, null)
+
+        val pending = buildError(HandledState.REASON_HANDLED_EXCEPTION)
+        errorStore.writePendingError(pending)
+        val queued = errorStore.storedNames().single()
+        val newest = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        assertEquals(setOf(queued, newest.name), errorStore.storedNames())
+
+        // the quota is enforced again once the report is no longer queued
+        errorStore.releasePendingError(pending, false)
+        val latest = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        assertEquals(setOf(latest.name), errorStore.storedNames())
+    }
+
+    @Test
+    fun quotaTracksDeliveredReports() {
+        config.maxStoredErrors = 2
+        val errorStore = ErrorStore(config, context, null)
+
+        val first = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        errorStore.deleteStoredFiles(listOf(first))
+        val second = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        val third = errorStore.writeError(HandledState.REASON_UNHANDLED_EXCEPTION)
+        assertEquals(setOf(second.name, third.name), errorStore.storedNames())
+    }
+}
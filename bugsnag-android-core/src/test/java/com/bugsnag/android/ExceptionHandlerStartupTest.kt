@@ -0,0 +1,53 @@
+package com.bugsnag.android
+
+import org.junit.After
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.FutureTask
+
+class ExceptionHandlerStartupTest {
+
+    private var previousHandler: Thread.UncaughtExceptionHandler? = null
+    private val received = mutableListOf<Throwable>()
+    private val originalHandler = Thread.UncaughtExceptionHandler { _, throwable ->
+        received.add(throwable)
+    }
+
+    @Before
+    fun setUp() {
+        previousHandler = Thread.getDefaultUncaughtExceptionHandler()
+        Thread.setDefaultUncaughtExceptionHandler(originalHandler)
+    }
+
+    @After
+    fun tearDown() {
+        Thread.setDefaultUncaughtExceptionHandler(previousHandler)
+    }
+
+    @Test
+    fun handlerIsInstalledBeforeStartupCompletes() {
+        val startup = FutureTask(Callable { Unit })
+        ExceptionHandler.enableDuringStartup(startup)
+        assertTrue(Thread.getDefaultUncaughtExceptionHandler() is ExceptionHandler)
+
+        // no client subscribed during startup, so the original handler is restored
+        startup.run()
+        ExceptionHandler.onStartupComplete()
+        assertSame(originalHandler, Thread.getDefaultUncaughtExceptionHandler())
+    }
+
+    @Test
+    fun uncaughtExceptionWaitsForStartup() {
+        val startup = FutureTask(Callable { Thread.sleep(50) })
+        ExceptionHandler.enableDuringStartup(startup)
+        Thread(startup).start()
+
+        val exc = RuntimeException("Whoops")
+        Thread.getDefaultUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), exc)
+        assertTrue(startup.isDone)
+        assertSame(exc, received.single())
+    }
+}
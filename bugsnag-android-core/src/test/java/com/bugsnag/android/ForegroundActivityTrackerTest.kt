@@ -0,0 +1,79 @@
+package com.bugsnag.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class ForegroundActivityTrackerTest {
+
+    private val tracker = ForegroundActivityTracker()
+
+    @Test
+    fun mostRecentActivityIsContext() {
+        assertNull(tracker.mostRecentActivity)
+        assertTrue(tracker.onActivityStarted("MainActivity"))
+        assertFalse(tracker.onActivityStarted("DetailActivity"))
+        assertEquals("DetailActivity", tracker.mostRecentActivity)
+
+        // navigating back restarts the previous activity before the current one stops
+        assertFalse(tracker.onActivityStarted("MainActivity"))
+        assertFalse(tracker.onActivityStopped("DetailActivity"))
+        assertEquals("MainActivity", tracker.mostRecentActivity)
+    }
+
+    @Test
+    fun previousActivityIsContextAfterStop() {
+        tracker.onActivityStarted("MainActivity")
+        tracker.onActivityStarted("DetailActivity")
+        tracker.onActivityStopped("DetailActivity")
+        assertEquals("MainActivity", tracker.mostRecentActivity)
+
+        assertTrue(tracker.onActivityStopped("MainActivity"))
+        assertNull(tracker.mostRecentActivity)
+        assertFalse(tracker.hasStartedActivities())
+    }
+
+    @Test
+    fun activityStartedTwiceIsReferenceCounted() {
+        tracker.onActivityStarted("MainActivity")
+        tracker.onActivityStarted("MainActivity")
+        assertFalse(tracker.onActivityStopped("MainActivity"))
+        assertEquals("MainActivity", tracker.mostRecentActivity)
+        assertTrue(tracker.onActivityStopped("MainActivity"))
+    }
+
+    @Test
+    fun unmatchedStopIsIgnored() {
+        assertFalse(tracker.isLifecycleObserved)
+        assertFalse(tracker.onActivityStopped("MainActivity"))
+        assertTrue(tracker.isLifecycleObserved)
+        assertFalse(tracker.hasStartedActivities())
+        assertTrue(tracker.onActivityStarted("DetailActivity"))
+    }
+
+    @Test
+    fun concurrentStartsEnterForegroundOnce() {
+        val executor = Executors.newFixedThreadPool(4)
+        val ready = CountDownLatch(1)
+        val transitions = AtomicInteger()
+
+        repeat(100) { index ->
+            executor.execute {
+                ready.await()
+                if (tracker.onActivityStarted("Activity${index % 5}")) {
+                    transitions.incrementAndGet()
+                }
+            }
+        }
+        ready.countDown()
+        executor.shutdown()
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS))
+        assertEquals(1, transitions.get())
+    }
+}
@@ -0,0 +1,54 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.junit.MockitoJUnitRunner
+
+@RunWith(MockitoJUnitRunner::class)
+class ForegroundDetectorTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val tracker = ForegroundActivityTracker()
+    private lateinit var detector: ForegroundDetector
+
+    @Before
+    fun setUp() {
+        detector = ForegroundDetector(context, tracker)
+    }
+
+    @Test
+    fun processImportanceUsedWithoutLifecycle() {
+        // the activity manager is unavailable in unit tests
+        assertNull(detector.isInForeground)
+    }
+
+    @Test
+    fun startedActivityIsInForeground() {
+        tracker.onActivityStarted("MainActivity")
+        assertEquals(true, detector.isInForeground)
+
+        tracker.onActivityStarted("MainActivity")
+        tracker.onActivityStopped("MainActivity")
+        assertEquals(true, detector.isInForeground)
+
+        tracker.onActivityStopped("MainActivity")
+        assertEquals(false, detector.isInForeground)
+    }
+
+    @Test
+    fun unmatchedStopIsInBackground() {
+        // an activity which started before the detector was created
+        tracker.onActivityStopped("MainActivity")
+        assertEquals(false, detector.isInForeground)
+
+        tracker.onActivityStarted("MainActivity")
+        assertEquals(true, detector.isInForeground)
+    }
+}
@@ -0,0 +1,96 @@
+package com.bugsnag.android
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class MetricsSamplerTest {
+
+    private val executor = ScheduledThreadPoolExecutor(1)
+
+    /**
+     * A metric which expires immediately unless sampled
+     */
+    private class Metric : CachedValue<Int>(1) {
+        val computeCount = AtomicInteger()
+        var latch = CountDownLatch(1)
+
+        override fun compute(): Int {
+            latch.countDown()
+            return computeCount.incrementAndGet()
+        }
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+    }
+
+    @Test
+    fun samplingRefreshesValuesPeriodically() {
+        val metric = Metric()
+        metric.latch = CountDownLatch(3)
+        val sampler = MetricsSampler(listOf<CachedValue<*>>(metric), 10, executor)
+        sampler.start()
+        assertTrue(sampler.isSampling)
+        assertTrue(metric.latch.await(5, TimeUnit.SECONDS))
+        sampler.stop()
+    }
+
+    @Test
+    fun sampledValueDoesNotExpire() {
+        val metric = Metric()
+        metric.refresh()
+        metric.setSampled(true)
+        Thread.sleep(5)
+        assertEquals(1, metric.get())
+
+        metric.setSampled(false)
+        assertEquals(2, metric.get())
+    }
+
+    @Test
+    fun invalidatedSampleIsCollectedAgain() {
+        val metric = Metric()
+        metric.refresh()
+        metric.setSampled(true)
+        metric.invalidate()
+        assertEquals(2, metric.get())
+    }
+
+    @Test
+    fun backgroundSuspendsSampling() {
+        val metric = Metric()
+        val sampler = MetricsSampler(listOf<CachedValue<*>>(metric), 10, executor)
+        sampler.setInForeground(true)
+        assertTrue(sampler.isSampling)
+        sampler.setInForeground(false)
+        assertFalse(sampler.isSampling)
+    }
+
+    @Test
+    fun zeroPeriodDisablesSampling() {
+        val sampler = MetricsSampler(listOf<CachedValue<*>>(Metric()), 0, executor)
+        sampler.start()
+        assertFalse(sampler.isSampling)
+    }
+
+    @Test
+    fun failedSampleDoesNotStopSampling() {
+        val metric = Metric()
+        val failing = object : CachedValue<Int>(0) {
+            override fun compute(): Int = throw IllegalStateException()
+        }
+        val sampler = MetricsSampler(listOf(failing, metric), 10, executor)
+        metric.latch = CountDownLatch(3)
+        sampler.start()
+        assertTrue(metric.latch.await(5, TimeUnit.SECONDS))
+        sampler.stop()
+    }
+}
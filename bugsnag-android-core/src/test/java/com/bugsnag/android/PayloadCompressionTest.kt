@@ -0,0 +1,108 @@
+package com.bugsnag.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.StringWriter
+import java.nio.file.Files
+import java.util.zip.GZIPInputStream
+
+class PayloadCompressionTest {
+
+    /**
+     * A report-sized payload of repetitive JSON, similar to a report with a thread dump
+     */
+    private val payload: String by lazy {
+        val builder = StringBuilder("{\"threads\":[")
+        for (thread in 0 until 200) {
+            if (thread > 0) {
+                builder.append(',')
+            }
+            builder.append("{\"id\":$thread,\"name\":\"Thread-$thread\",\"stacktrace\":[")
+            RuntimeException().stackTrace.forEachIndexed { index, frame ->
+                if (index > 0) {
+                    builder.append(',')
+                }
+                builder.append("{\"method\":\"${frame.className}.${frame.methodName}\",")
+                builder.append("\"file\":\"${frame.fileName}\",")
+                builder.append("\"lineNumber\":${frame.lineNumber}}")
+            }
+            builder.append("]}")
+        }
+        builder.append("]}").toString()
+    }
+
+    private fun compress(compression: PayloadCompression, text: String): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        compression.compress(bytes).use { it.write(text.toByteArray()) }
+        return bytes.toByteArray()
+    }
+
+    private fun decompress(bytes: ByteArray): String {
+        return PayloadCompression.decompress(ByteArrayInputStream(bytes)).reader().readText()
+    }
+
+    @Test
+    fun uncompressedPayloadIsUnchanged() {
+        val bytes = compress(PayloadCompression.NONE, payload)
+        assertEquals(payload, String(bytes))
+        assertEquals(payload, decompress(bytes))
+    }
+
+    @Test
+    fun compressedPayloadIsValidGzip() {
+        for (compression in listOf(PayloadCompression.GZIP, PayloadCompression.GZIP_FAST)) {
+            val bytes = compress(compression, payload)
+            val text = GZIPInputStream(ByteArrayInputStream(bytes)).reader().readText()
+            assertEquals(payload, text)
+            assertEquals(payload, decompress(bytes))
+        }
+    }
+
+    @Test
+    fun deflaterIsReusedBetweenPayloads() {
+        val first = compress(PayloadCompression.GZIP_FAST, payload)
+        val second = compress(PayloadCompression.GZIP, "{\"small\":true}")
+        val third = compress(PayloadCompression.GZIP_FAST, payload)
+        assertEquals(payload, decompress(first))
+        assertEquals("{\"small\":true}", decompress(second))
+        assertEquals(first.toList(), third.toList())
+    }
+
+    @Test
+    fun emptyPayloadIsDecompressed() {
+        assertEquals("", decompress(ByteArray(0)))
+        assertEquals("", decompress(compress(PayloadCompression.GZIP, "")))
+    }
+
+    /**
+     * Compares the bytes saved by each level. The fast level trades some of the savings for
+     * less CPU time, but both should shrink a repetitive report substantially.
+     */
+    @Test
+    fun compressionReducesReportSize() {
+        val plain = payload.toByteArray().size
+        val gzip = compress(PayloadCompression.GZIP, payload).size
+        val fast = compress(PayloadCompression.GZIP_FAST, payload).size
+
+        assertTrue(plain > 100000)
+        assertTrue("gzip saved ${plain - gzip} of $plain bytes", gzip * 10 < plain)
+        assertTrue("fast gzip saved ${plain - fast} of $plain bytes", fast * 5 < plain)
+        assertTrue(gzip <= fast)
+    }
+
+    @Test
+    fun storedFileIsStreamedDecompressed() {
+        val file = Files.createTempFile("bugsnag", ".json").toFile()
+        try {
+            file.writeBytes(compress(PayloadCompression.GZIP, payload))
+            val writer = StringWriter()
+            JsonStream(writer).value(file)
+            assertEquals(payload, writer.toString())
+        } finally {
+            file.delete()
+        }
+    }
+}
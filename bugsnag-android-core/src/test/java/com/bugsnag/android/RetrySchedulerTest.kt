@@ -0,0 +1,166 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+import java.util.Random
+
+@RunWith(MockitoJUnitRunner::class)
+class RetrySchedulerTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private class FakeClock : Clock {
+        var now = 1500000000000L
+
+        override fun nanoTime() = now * 1000000
+
+        override fun currentTimeMillis() = now
+    }
+
+    private class FixedRandom(private val value: Double) : Random() {
+        override fun nextDouble() = value
+    }
+
+    private val clock = FakeClock()
+    private lateinit var dir: File
+    private lateinit var indexFile: File
+    private lateinit var file: File
+
+    @Before
+    fun setUp() {
+        dir = Files.createTempDirectory("bugsnag").toFile()
+        indexFile = File(dir, RetryScheduler.INDEX_FILENAME)
+        file = File(dir, "1504255147933_0000111122223333aaaabbbbcccc9999.json")
+    }
+
+    @After
+    fun tearDown() {
+        dir.deleteRecursively()
+    }
+
+    private fun createScheduler(jitter: Double = 0.0) =
+        RetryScheduler(indexFile, clock, FixedRandom(jitter))
+
+    @Test
+    fun delayIncreasesExponentiallyUpToMaximum() {
+        val scheduler = createScheduler(1.0)
+        assertEquals(RetryScheduler.INITIAL_DELAY_MS, scheduler.getRetryDelayMs(1))
+        assertEquals(RetryScheduler.INITIAL_DELAY_MS * 2, scheduler.getRetryDelayMs(2))
+        assertEquals(RetryScheduler.INITIAL_DELAY_MS * 8, scheduler.getRetryDelayMs(4))
+        assertEquals(RetryScheduler.MAX_DELAY_MS, scheduler.getRetryDelayMs(20))
+        assertEquals(RetryScheduler.MAX_DELAY_MS, scheduler.getRetryDelayMs(Int.MAX_VALUE))
+    }
+
+    @Test
+    fun jitterRandomisesHalfOfDelay() {
+        assertEquals(RetryScheduler.INITIAL_DELAY_MS / 2, createScheduler(0.0).getRetryDelayMs(1))
+        assertEquals(RetryScheduler.INITIAL_DELAY_MS * 3 / 4,
+            createScheduler(0.5).getRetryDelayMs(1))
+    }
+
+    @Test
+    fun failedFileIsDueAfterDelay() {
+        val scheduler = createScheduler()
+        assertTrue(scheduler.isDue(file))
+
+        scheduler.onDeliveryFailed(listOf(file))
+        assertFalse(scheduler.isDue(file))
+        clock.now += RetryScheduler.INITIAL_DELAY_MS / 2
+        assertTrue(scheduler.isDue(file))
+
+        scheduler.onDeliveryFailed(listOf(file))
+        assertEquals(2, scheduler.getAttempts(file))
+        clock.now += RetryScheduler.INITIAL_DELAY_MS / 2
+        assertFalse(scheduler.isDue(file))
+        clock.now += RetryScheduler.INITIAL_DELAY_MS / 2
+        assertTrue(scheduler.isDue(file))
+    }
+
+    @Test
+    fun fileIsDueIfClockIsSetBackwards() {
+        val scheduler = createScheduler()
+        scheduler.onDeliveryFailed(listOf(file))
+        clock.now -= RetryScheduler.MAX_DELAY_MS * 2
+        assertTrue(scheduler.isDue(file))
+    }
+
+    @Test
+    fun fileExpiresAfterMaxAge() {
+        val scheduler = createScheduler()
+        scheduler.onDeliveryFailed(listOf(file))
+        clock.now += RetryScheduler.MAX_AGE_MS
+        assertFalse(scheduler.isExpired(file))
+
+        scheduler.onDeliveryFailed(listOf(file))
+        clock.now += 1
+        assertTrue(scheduler.isExpired(file))
+    }
+
+    @Test
+    fun scheduleIsPersisted() {
+        createScheduler().onDeliveryFailed(listOf(file))
+        createScheduler().onDeliveryFailed(listOf(file))
+
+        val scheduler = createScheduler()
+        assertEquals(2, scheduler.getAttempts(file))
+        assertFalse(scheduler.isDue(file))
+
+        scheduler.remove(listOf(file))
+        assertEquals(0, createScheduler().getAttempts(file))
+        assertTrue(createScheduler().isDue(file))
+    }
+
+    @Test
+    fun corruptIndexIsIgnored() {
+        indexFile.writeText("${file.name}\tnot-a-number\t0\t0\n")
+        val scheduler = createScheduler()
+        assertTrue(scheduler.isDue(file))
+        assertEquals(0, scheduler.getAttempts(file))
+    }
+
+    @Test
+    fun entriesForMissingFilesArePruned() {
+        val other = File(dir, "other.json")
+        createScheduler().onDeliveryFailed(listOf(file, other))
+        createScheduler().retainAll(listOf(other))
+
+        val scheduler = createScheduler()
+        assertEquals(0, scheduler.getAttempts(file))
+        assertEquals(1, scheduler.getAttempts(other))
+    }
+
+    @Test
+    fun deferredReportIsNotFlushedUntilDue() {
+        `when`(context.cacheDir).thenReturn(dir)
+        val config = Configuration("api-key")
+        val errorStore = ErrorStore(config, context, null)
+        val error = Error.Builder(config, RuntimeException(), null, Thread.currentThread(), true)
+            .build()
+        val report = File(requireNotNull(errorStore.write(error)))
+
+        val storedFiles = errorStore.findStoredFiles()
+        assertEquals(listOf(report), storedFiles)
+        errorStore.deferQueuedFiles(storedFiles)
+        assertTrue(errorStore.findStoredFiles().isEmpty())
+        assertTrue(File(errorStore.storeDirectory, RetryScheduler.INDEX_FILENAME).exists())
+
+        // a store created by the next launch continues the backoff
+        assertTrue(ErrorStore(config, context, null).findStoredFiles().isEmpty())
+
+        errorStore.deleteStoredFiles(storedFiles)
+        val index = File(errorStore.storeDirectory, RetryScheduler.INDEX_FILENAME)
+        assertEquals(0, RetryScheduler(index, clock, Random()).getAttempts(report))
+    }
+}
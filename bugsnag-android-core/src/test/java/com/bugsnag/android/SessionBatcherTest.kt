@@ -0,0 +1,187 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.nio.file.Files
+import java.util.Date
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+
+@RunWith(MockitoJUnitRunner::class)
+class SessionBatcherTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private val batches = mutableListOf<Pair<List<Session>, List<File>>>()
+    private val sentStoredSessions = mutableListOf<Int>()
+    private lateinit var cacheDir: File
+    private lateinit var sessionStore: SessionStore
+    private lateinit var executor: ScheduledThreadPoolExecutor
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+        sessionStore = SessionStore(config, context, null)
+        executor = ScheduledThreadPoolExecutor(1)
+
+        // sessions are flushed manually unless a test shortens the window
+        config.sessionBatchWindowMs = TimeUnit.HOURS.toMillis(1)
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        cacheDir.deleteRecursively()
+    }
+
+    private fun createBatcher(fail: Boolean = false): SessionBatcher {
+        return SessionBatcher(config, sessionStore, SessionBatcher.Sender { sessions, files ->
+            if (fail) {
+                throw DeliveryFailureException("Offline")
+            }
+            batches.add(Pair(sessions, files))
+            sentStoredSessions.add(storedSessionCount(files))
+        }, executor)
+    }
+
+    private fun storedSessionCount(files: List<File> = storedFiles()) =
+        files.sumBy { it.readLines().size }
+
+    private fun storedFiles() = File(sessionStore.storeDirectory).listFiles().toList()
+
+    private fun session(id: String) = Session(id, Date(), User(), true)
+
+    @Test
+    fun sessionsWithinWindowAreBatched() {
+        val batcher = createBatcher()
+        batcher.add(session("a"))
+        batcher.add(session("b"))
+        batcher.add(session("c"))
+        assertTrue(batches.isEmpty())
+
+        batcher.flush()
+        assertEquals(1, batches.size)
+        assertEquals(listOf("a", "b", "c"), batches[0].first.map { it.id })
+        assertTrue(batches[0].second.isEmpty())
+        assertEquals(0, storedSessionCount())
+    }
+
+    @Test
+    fun emptyBatchIsNotSent() {
+        val batcher = createBatcher()
+        batcher.flush()
+        batcher.flush()
+        assertTrue(batches.isEmpty())
+    }
+
+    @Test
+    fun failedDeliveryStoresSessions() {
+        val failing = createBatcher(fail = true)
+        failing.add(session("a"))
+        failing.add(session("b"))
+        failing.flush()
+        assertEquals(2, storedSessionCount())
+
+        // a new launch delivers the stored files along with the buffered sessions
+        val batcher = createBatcher()
+        batcher.add(session("c"))
+        batcher.flush()
+        assertEquals(1, batches.size)
+        assertEquals(listOf("c"), batches[0].first.map { it.id })
+        assertEquals(2, sentStoredSessions[0])
+        assertEquals(0, storedSessionCount())
+    }
+
+    @Test
+    fun failedStoredSessionsAreRetriedWithBackoff() {
+        sessionStore.write(session("stored"))
+        createBatcher(fail = true).flushStoredSessions()
+
+        // the stored file is not sent again until its retry delay has elapsed
+        val batcher = createBatcher()
+        batcher.add(session("a"))
+        batcher.flushStoredSessions()
+        assertEquals(1, batches.size)
+        assertTrue(batches[0].second.isEmpty())
+        assertTrue(File(sessionStore.storeDirectory, RetryScheduler.INDEX_FILENAME).exists())
+    }
+
+    @Test
+    fun storeIsOnlySearchedWhenSessionsWereWritten() {
+        val batcher = createBatcher()
+        batcher.flush()
+
+        // files written by another component are only picked up by an explicit flush
+        sessionStore.write(session("stored"))
+        batcher.add(session("a"))
+        batcher.flush()
+        assertTrue(batches[0].second.isEmpty())
+
+        batcher.flushStoredSessions()
+        assertEquals(2, batches.size)
+        assertEquals(1, sentStoredSessions[1])
+    }
+
+    @Test
+    fun persistWritesPendingSessions() {
+        val batcher = createBatcher()
+        batcher.add(session("a"))
+        batcher.add(session("b"))
+        batcher.persist()
+        assertTrue(batches.isEmpty())
+        assertEquals(2, storedSessionCount())
+
+        batcher.flush()
+        assertEquals(1, batches.size)
+        assertTrue(batches[0].first.isEmpty())
+        assertEquals(2, sentStoredSessions[0])
+    }
+
+    @Test
+    fun rejectedFlushWritesSessions() {
+        val batcher = createBatcher()
+        executor.shutdown()
+        batcher.add(session("a"))
+        assertTrue(batches.isEmpty())
+        assertEquals(1, storedSessionCount())
+    }
+
+    @Test
+    fun flushAsyncSkipsWindow() {
+        val latch = CountDownLatch(1)
+        val batcher = SessionBatcher(config, sessionStore, SessionBatcher.Sender { sessions, _ ->
+            batches.add(Pair(sessions, emptyList()))
+            latch.countDown()
+        }, executor)
+        batcher.add(session("a"))
+        batcher.flushAsync()
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+        assertEquals(listOf("a"), batches[0].first.map { it.id })
+    }
+
+    @Test
+    fun zeroWindowSendsPromptly() {
+        config.sessionBatchWindowMs = -5
+        assertEquals(0, config.sessionBatchWindowMs)
+
+        val latch = CountDownLatch(1)
+        val batcher = SessionBatcher(config, sessionStore, SessionBatcher.Sender { _, _ ->
+            latch.countDown()
+        }, executor)
+        batcher.add(session("a"))
+        assertTrue(latch.await(5, TimeUnit.SECONDS))
+    }
+}
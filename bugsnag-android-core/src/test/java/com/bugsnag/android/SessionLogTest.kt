@@ -0,0 +1,119 @@
+package com.bugsnag.android
+
+import android.content.Context
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.Mockito.`when`
+import org.mockito.junit.MockitoJUnitRunner
+import java.io.File
+import java.io.StringWriter
+import java.nio.file.Files
+import java.util.Date
+
+@RunWith(MockitoJUnitRunner::class)
+class SessionLogTest {
+
+    @Mock
+    lateinit var context: Context
+
+    private val config = Configuration("api-key")
+    private lateinit var cacheDir: File
+    private lateinit var sessionStore: SessionStore
+
+    @Before
+    fun setUp() {
+        cacheDir = Files.createTempDirectory("bugsnag").toFile()
+        `when`(context.cacheDir).thenReturn(cacheDir)
+        sessionStore = SessionStore(config, context, null)
+    }
+
+    @After
+    fun tearDown() {
+        cacheDir.deleteRecursively()
+    }
+
+    private fun session(id: String) = Session(id, Date(0), User("123", null, null), true)
+
+    private fun storedFiles() = File(sessionStore.storeDirectory).listFiles().toList()
+
+    private fun toJson(streamable: JsonStream.Streamable): String {
+        val writer = StringWriter()
+        streamable.toStream(JsonStream(writer))
+        return writer.toString()
+    }
+
+    /**
+     * Streams the stored files as a JSON array, in the same manner as SessionTrackingPayload
+     */
+    private fun streamSessions(files: List<File>): String {
+        val writer = StringWriter()
+        val stream = JsonStream(writer)
+        stream.beginArray()
+        files.forEach { SessionLogReader.streamSessions(it, stream) }
+        stream.endArray()
+        return writer.toString()
+    }
+
+    @Test
+    fun sessionsAreAppendedToOneLog() {
+        sessionStore.write(session("a"))
+        sessionStore.write(session("b"))
+        sessionStore.write(session("c"))
+
+        val log = storedFiles().single()
+        assertTrue(SessionStore.isSessionLog(log))
+        assertEquals(3, log.readLines().size)
+        assertEquals(toJson(session("b")), log.readLines()[1])
+    }
+
+    @Test
+    fun logIsRotatedBySize() {
+        val recordSize = toJson(session("a")).length + 1
+        val perLog = (SessionStore.MAX_LOG_BYTES + recordSize - 1) / recordSize
+        repeat(perLog.toInt() + 1) { sessionStore.write(session("a")) }
+
+        val logs = storedFiles().sortedWith(SessionStore.SESSION_COMPARATOR)
+        assertEquals(2, logs.size)
+        assertEquals(perLog.toInt(), logs[0].readLines().size)
+        assertEquals(1, logs[1].readLines().size)
+    }
+
+    @Test
+    fun queuedLogIsNotAppendedTo() {
+        sessionStore.write(session("a"))
+        val queued = sessionStore.findStoredFiles().single()
+        sessionStore.write(session("b"))
+
+        assertEquals(1, queued.readLines().size)
+        assertEquals(2, storedFiles().size)
+    }
+
+    @Test
+    fun sessionsAreStreamedAsArrayElements() {
+        sessionStore.write(session("a"))
+        sessionStore.write(session("b"))
+        val expected = "[${toJson(session("a"))},${toJson(session("b"))}]"
+        assertEquals(expected, streamSessions(sessionStore.findStoredFiles()))
+    }
+
+    @Test
+    fun partialRecordIsSkipped() {
+        sessionStore.write(session("a"))
+        val log = storedFiles().single()
+        log.appendText("{\"id\":\"b\",\"start")
+
+        assertEquals("[${toJson(session("a"))}]", streamSessions(listOf(log)))
+    }
+
+    @Test
+    fun emptyLogStreamsNothing() {
+        val log = File(sessionStore.storeDirectory, "1504255147933empty.jsonl")
+        log.writeText("\n")
+        assertEquals("[]", streamSessions(listOf(log)))
+    }
+}
@@ -0,0 +1,77 @@
+package com.bugsnag.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class StartupTracerTest {
+
+    /**
+     * A clock which only advances when told to
+     */
+    private class FakeClock : Clock {
+        var now = 0L
+
+        override fun nanoTime() = now
+
+        override fun currentTimeMillis() = now / 1000000
+    }
+
+    private val clock = FakeClock()
+
+    @Test
+    fun nestedSectionsAreTimed() {
+        val tracer = StartupTracer(true, clock)
+        tracer.beginSection("init")
+        clock.now += 5
+        tracer.beginSection("createDeviceData")
+        clock.now += 20
+        tracer.endSection()
+        tracer.beginSection("flushOnLaunch")
+        clock.now += 100
+        tracer.endSection()
+        tracer.endSection()
+
+        val expected = linkedMapOf(
+            Pair("init", 125L),
+            Pair("createDeviceData", 20L),
+            Pair("flushOnLaunch", 100L)
+        )
+        assertEquals(expected.toList(), tracer.timings.toList())
+    }
+
+    @Test
+    fun repeatedSectionsAreSummed() {
+        val tracer = StartupTracer(true, clock)
+        tracer.beginSection("loadPlugin")
+        clock.now += 10
+        tracer.endSection()
+        tracer.beginSection("loadPlugin")
+        clock.now += 15
+        tracer.endSection()
+        assertEquals(mapOf(Pair("loadPlugin", 25L)), tracer.timings)
+    }
+
+    @Test
+    fun sectionsAfterFinishAreIgnored() {
+        val tracer = StartupTracer(true, clock)
+        tracer.beginSection("init")
+        tracer.beginSection("unfinished")
+        clock.now += 10
+        tracer.finish()
+
+        tracer.beginSection("late")
+        clock.now += 10
+        tracer.endSection()
+        assertTrue(tracer.timings.isEmpty())
+    }
+
+    @Test
+    fun disabledTracerRecordsNothing() {
+        val tracer = StartupTracer(false, clock)
+        tracer.beginSection("init")
+        clock.now += 10
+        tracer.endSection()
+        assertTrue(tracer.timings.isEmpty())
+    }
+}
@@ -7,21 +7,43 @@ import android.os.Handler
 import android.os.HandlerThread
 import android.os.Process
 import androidx.annotation.VisibleForTesting
-import java.util.concurrent.atomic.AtomicInteger
 
 internal class AnrDetailsCollector {
 
     companion object {
-        private const val INFO_POLL_THRESHOLD_MS: Long = 100
-        private const val MAX_ATTEMPTS: Int = 300
-    }
+        private const val INITIAL_RETRY_DELAY_MS: Long = 50
+        private const val MAX_RETRY_DELAY_MS: Long = 3200
+        private const val MAX_COLLECTION_MS: Long = 30000
+        private const val MAX_BACKOFF_SHIFT = 16
 
-    private val handlerThread = HandlerThread("bugsnag-anr-collector")
+        /**
+         * Returns how long to wait before querying for the process error state again, doubling
+         * after each attempt up to a maximum, as the error state usually appears shortly
+         * before the ANR dialog is displayed
+         */
+        @VisibleForTesting
+        internal fun getRetryDelayMs(attempt: Int): Long {
+            val delay = INITIAL_RETRY_DELAY_MS shl minOf(attempt, MAX_BACKOFF_SHIFT)
+            return minOf(delay, MAX_RETRY_DELAY_MS)
+        }
+    }
 
-    init {
+    // the thread is only started once an ANR occurs
+    private val handler by lazy {
+        val handlerThread = HandlerThread("bugsnag-anr-collector")
         handlerThread.start()
+        Handler(handlerThread.looper)
     }
 
+    @Volatile
+    private var pendingRequest: DetailsRequest? = null
+
+    /**
+     * Whether an ANR report is stored and still waiting for the process error state
+     */
+    val isCollecting: Boolean
+        get() = pendingRequest?.isCompleted == false
+
     internal fun collectAnrDetails(ctx: Context): ProcessErrorStateInfo? {
         val am = ctx.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
         return captureProcessErrorState(am, Process.myPid())
@@ -51,23 +73,82 @@ internal class AnrDetailsCollector {
         }
     }
 
+    /**
+     * Stores the ANR report immediately so that it is delivered even if the process is killed,
+     * then polls for the process error state with exponential backoff. The report is delivered
+     * once the error state is attached, or without it if it does not appear in time.
+     */
     internal fun collectAnrErrorDetails(client: Client, error: Error) {
-        val handler = Handler(handlerThread.looper)
-        val attempts = AtomicInteger()
+        client.notify(error, DeliveryStyle.CACHE_PENDING, null)
+
+        val request = DetailsRequest(client, error)
+        pendingRequest?.cancel()
+        pendingRequest = request
+        handler.post(request)
+    }
+
+    /**
+     * Stops collecting details for any ANR which is in progress, delivering its report
+     * without them
+     */
+    internal fun cancel() {
+        pendingRequest?.cancel()
+        pendingRequest = null
+    }
 
-        handler.post(object : Runnable {
-            override fun run() {
+    /**
+     * Polls for the process error state of a single ANR
+     */
+    private inner class DetailsRequest(
+        private val client: Client,
+        private val error: Error
+    ) : Runnable {
+
+        private var attempts = 0
+        private var waitedMs: Long = 0
+
+        @Volatile
+        var isCompleted = false
+            private set
+
+        override fun run() {
+            synchronized(this) {
+                if (isCompleted) {
+                    return
+                }
                 val anrDetails = collectAnrDetails(client.appContext)
 
-                if (anrDetails == null) {
-                    if (attempts.getAndIncrement() < MAX_ATTEMPTS) {
-                        handler.postDelayed(this, INFO_POLL_THRESHOLD_MS)
+                when {
+                    anrDetails != null -> {
+                        addErrorStateInfo(error, anrDetails)
+                        complete(true)
+                    }
+                    waitedMs >= MAX_COLLECTION_MS -> {
+                        Logger.warn("Process error state not found, sending ANR without it")
+                        complete(false)
+                    }
+                    else -> {
+                        val delayMs = getRetryDelayMs(attempts++)
+                        waitedMs += delayMs
+                        handler.postDelayed(this, delayMs)
                     }
-                } else {
-                    addErrorStateInfo(error, anrDetails)
-                    client.notify(error, DeliveryStyle.ASYNC_WITH_CACHE, null)
                 }
             }
-        })
+        }
+
+        fun cancel() {
+            synchronized(this) {
+                if (!isCompleted) {
+                    handler.removeCallbacks(this)
+                    complete(false)
+                }
+            }
+        }
+
+        private fun complete(updated: Boolean) {
+            isCompleted = true
+            client.errorStore.releasePendingError(error, updated)
+            client.errorStore.flushAsync()
+        }
     }
 }
@@ -6,6 +6,10 @@ import android.os.Looper
 internal class AnrPlugin : BugsnagPlugin {
 
     companion object {
+        private const val ANR_TAB = "ANR"
+        private const val STALL_TAB = "Stall"
+        private const val MAX_SAMPLED_FRAMES = 20
+
         init {
             System.loadLibrary("bugsnag-plugin-android-anr")
         }
@@ -14,6 +18,7 @@ internal class AnrPlugin : BugsnagPlugin {
     override var loaded = false
     private lateinit var client: Client
     private val collector = AnrDetailsCollector()
+    private var watchdog: AnrWatchdog? = null
 
     private external fun enableAnrReporting(callPreviousSigquitHandler: Boolean)
     private external fun disableAnrReporting()
@@ -26,15 +31,110 @@ internal class AnrPlugin : BugsnagPlugin {
             enableAnrReporting(client.config.callPreviousSigquitHandler)
             Logger.warn("Initialised ANR Plugin")
         })
+        startWatchdog(client)
+    }
+
+    override fun unloadPlugin() {
+        disableAnrReporting()
+        collector.cancel()
+        watchdog?.stop()
+        watchdog = null
     }
 
-    override fun unloadPlugin() = disableAnrReporting()
+    private fun startWatchdog(client: Client) {
+        val config = client.config
+
+        if (config.enableAnrWatchdog && watchdog == null) {
+            val listener = object : AnrWatchdog.Listener {
+                override fun onAnr(durationMs: Long, samples: List<AnrWatchdog.StackSample>) {
+                    notifyWatchdogAnr(client, durationMs, samples)
+                }
+
+                override fun onStallEnded(
+                    durationMs: Long,
+                    samples: List<AnrWatchdog.StackSample>
+                ) = notifyStallProfile(client, durationMs, samples)
+            }
+            val watchdog = AnrWatchdog(
+                AnrWatchdog.MainLooper(),
+                listener,
+                config.anrThresholdMs,
+                config.anrSampleIntervalMs,
+                config.stallThresholdMs,
+                config.stallSampleIntervalMs
+            )
+            this.watchdog = watchdog
+            watchdog.start()
+        }
+    }
+
+    /**
+     * Notifies bugsnag that the watchdog detected the main thread was blocked, attaching a
+     * timeline of where the main thread was blocked
+     */
+    private fun notifyWatchdogAnr(
+        client: Client,
+        durationMs: Long,
+        samples: List<AnrWatchdog.StackSample>
+    ) {
+        val thread = Looper.getMainLooper().thread
+        val errMsg = "Main thread blocked for ${durationMs}ms"
+        val exc = BugsnagException("ANR", errMsg, samples.last().stackTrace)
+        val error = Error.Builder(client.config, exc, client.sessionTracker, thread, true)
+            .severity(Severity.ERROR)
+            .severityReasonType(HandledState.REASON_ANR)
+            .build()
+
+        val timeline = samples.map {
+            mapOf(
+                "elapsedMs" to it.elapsedMs,
+                "stacktrace" to it.stackTrace.take(MAX_SAMPLED_FRAMES).map(Any::toString)
+            )
+        }
+        error.addToTab(ANR_TAB, "durationMs", durationMs)
+        error.addToTab(ANR_TAB, "stackSamples", timeline)
+        client.notify(error, DeliveryStyle.ASYNC_WITH_CACHE, null)
+    }
+
+    /**
+     * Sends a handled report for a main thread stall which has ended, attaching a call tree of
+     * the stack samples taken during the stall
+     */
+    private fun notifyStallProfile(
+        client: Client,
+        durationMs: Long,
+        samples: List<AnrWatchdog.StackSample>
+    ) {
+        val thread = Looper.getMainLooper().thread
+        val callTree = StallCallTree()
+        samples.forEach { callTree.add(it.stackTrace) }
+
+        val errMsg = "Main thread blocked for ${durationMs}ms"
+        val error = Error.Builder(
+            client.config, "MainThreadStall", errMsg, samples.last().stackTrace,
+            client.sessionTracker, thread
+        ).severityReasonType(HandledState.REASON_HANDLED_EXCEPTION).build()
+
+        error.addToTab(STALL_TAB, "durationMs", durationMs)
+        error.addToTab(STALL_TAB, "sampleIntervalMs", client.config.stallSampleIntervalMs)
+        error.addToTab(STALL_TAB, "sampleCount", callTree.sampleCount)
+        error.addToTab(STALL_TAB, "callTree", callTree.toList())
+        client.notify(error, DeliveryStyle.ASYNC, null)
+    }
 
     /**
      * Notifies bugsnag that an ANR has occurred, by generating an Error report and populating it
      * with details of the ANR. Intended for internal use only.
      */
     private fun notifyAnrDetected() {
+        if (watchdog?.isStallReported == true) {
+            Logger.info("Ignoring SIGQUIT for ANR already reported by the watchdog")
+            return
+        }
+        if (collector.isCollecting) {
+            Logger.info("Ignoring SIGQUIT for ANR which has already been stored")
+            return
+        }
         val thread = Looper.getMainLooper().thread
 
         // generate a full report as soon as possible, then wait for extra process error info
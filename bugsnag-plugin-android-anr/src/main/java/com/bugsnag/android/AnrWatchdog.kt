@@ -0,0 +1,181 @@
+package com.bugsnag.android
+
+import android.os.Handler
+import android.os.Looper
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Detects when the main thread is blocked by posting heartbeats to its looper from a
+ * background thread. If a heartbeat is not processed within the ANR threshold, the stall is
+ * reported along with samples of the main thread stack taken while it was blocked.
+ *
+ * If stall profiling is enabled, the stack is also sampled once a heartbeat is late by the
+ * stall threshold, and shorter stalls are reported with their samples when they end.
+ *
+ * While the main thread is responsive the watchdog only posts one heartbeat per interval,
+ * and the stack is only sampled once a heartbeat is late, so the overhead is negligible.
+ */
+internal class AnrWatchdog(
+    private val looper: MonitoredLooper,
+    private val listener: Listener,
+    private val anrThresholdMs: Long,
+    private val anrSampleIntervalMs: Long,
+    private val stallThresholdMs: Long = 0,
+    private val stallSampleIntervalMs: Long = anrSampleIntervalMs,
+    private val heartbeatIntervalMs: Long = getHeartbeatIntervalMs(stallThresholdMs)
+) : Runnable {
+
+    companion object {
+        private const val THREAD_NAME = "Bugsnag ANR Watchdog"
+        private const val HEARTBEAT_INTERVAL_MS = 1000L
+        private const val MAX_SAMPLES = 256
+
+        /**
+         * Heartbeats must be posted more often than the stall threshold, otherwise a stall
+         * which starts between heartbeats is detected too late to be profiled
+         */
+        private fun getHeartbeatIntervalMs(stallThresholdMs: Long): Long {
+            return when {
+                stallThresholdMs > 0 -> minOf(HEARTBEAT_INTERVAL_MS, stallThresholdMs / 2)
+                else -> HEARTBEAT_INTERVAL_MS
+            }
+        }
+    }
+
+    /**
+     * A looper which processes heartbeats, and the thread it runs on
+     */
+    internal interface MonitoredLooper {
+        val thread: Thread
+        fun post(runnable: Runnable): Boolean
+    }
+
+    /**
+     * Posts heartbeats to the main looper
+     */
+    internal class MainLooper : MonitoredLooper {
+        private val handler = Handler(Looper.getMainLooper())
+
+        override val thread: Thread = Looper.getMainLooper().thread
+
+        override fun post(runnable: Runnable) = handler.post(runnable)
+    }
+
+    /**
+     * Receives stalls detected by the watchdog, on the watchdog thread
+     */
+    internal interface Listener {
+
+        /**
+         * Called once the looper has been blocked for the ANR threshold
+         */
+        fun onAnr(durationMs: Long, samples: List<StackSample>)
+
+        /**
+         * Called when a stall which lasted longer than the stall threshold ends, unless it
+         * was reported as an ANR
+         */
+        fun onStallEnded(durationMs: Long, samples: List<StackSample>)
+    }
+
+    /**
+     * The stack of the blocked thread, and how long after the heartbeat was posted it was taken
+     */
+    internal class StackSample(val elapsedMs: Long, val stackTrace: Array<StackTraceElement>)
+
+    private val profileStalls = stallThresholdMs > 0
+    private val pollIntervalMs = if (profileStalls) stallSampleIntervalMs else anrSampleIntervalMs
+    private val sampleAfterMs = if (profileStalls) minOf(stallThresholdMs, anrThresholdMs) else 0
+    private val samples = StackSampleBuffer(MAX_SAMPLES)
+
+    @Volatile
+    private var watchdogThread: Thread? = null
+
+    /**
+     * Whether the main thread is currently blocked and the stall has been reported as an ANR
+     */
+    @Volatile
+    var isStallReported = false
+        private set
+
+    @Synchronized
+    fun start() {
+        if (watchdogThread == null) {
+            val thread = Thread(this, THREAD_NAME)
+            thread.isDaemon = true
+            watchdogThread = thread
+            thread.start()
+        }
+    }
+
+    @Synchronized
+    fun stop() {
+        watchdogThread?.interrupt()
+        watchdogThread = null
+    }
+
+    override fun run() {
+        val thread = Thread.currentThread()
+
+        try {
+            while (watchdogThread === thread) {
+                if (!awaitHeartbeat()) {
+                    return
+                }
+                Thread.sleep(heartbeatIntervalMs)
+            }
+        } catch (exc: InterruptedException) {
+            // the watchdog was stopped
+        } finally {
+            isStallReported = false
+        }
+    }
+
+    /**
+     * Posts a heartbeat to the looper and waits until it is processed, sampling the stack of
+     * the looper thread while it is late and reporting a stall once it exceeds the threshold.
+     *
+     * @return false if the looper is no longer running
+     */
+    private fun awaitHeartbeat(): Boolean {
+        val heartbeat = CountDownLatch(1)
+        val postedAtNs = System.nanoTime()
+
+        if (!looper.post(Runnable { heartbeat.countDown() })) {
+            return false
+        }
+        samples.clear()
+
+        while (!heartbeat.await(pollIntervalMs, TimeUnit.MILLISECONDS)) {
+            if (isStallReported) {
+                continue // the stall has been reported, so wait for it to end
+            }
+            val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - postedAtNs)
+
+            if (elapsedMs >= sampleAfterMs) {
+                samples.add(elapsedMs, looper.thread.stackTrace)
+            }
+            if (elapsedMs >= anrThresholdMs) {
+                isStallReported = true
+                report { listener.onAnr(elapsedMs, samples.toList(anrSampleIntervalMs)) }
+            }
+        }
+
+        if (isStallReported) {
+            isStallReported = false
+        } else if (profileStalls && samples.size > 0) {
+            val durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - postedAtNs)
+            report { listener.onStallEnded(durationMs, samples.toList()) }
+        }
+        return true
+    }
+
+    private inline fun report(block: () -> Unit) {
+        try {
+            block()
+        } catch (exc: RuntimeException) {
+            Logger.warn("Failed to report blocked main thread", exc)
+        }
+    }
+}
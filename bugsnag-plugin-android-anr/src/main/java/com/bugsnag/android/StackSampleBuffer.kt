@@ -0,0 +1,55 @@
+package com.bugsnag.android
+
+/**
+ * A fixed-capacity ring buffer of stack samples, allocated once so that sampling a blocked
+ * thread does not allocate beyond the stack trace itself. Once full, the oldest samples are
+ * overwritten.
+ */
+internal class StackSampleBuffer(private val capacity: Int) {
+
+    private val elapsedMs = LongArray(capacity)
+    private val stackTraces = arrayOfNulls<Array<StackTraceElement>>(capacity)
+    private var start = 0
+
+    var size = 0
+        private set
+
+    fun add(elapsedMs: Long, stackTrace: Array<StackTraceElement>) {
+        val index = (start + size) % capacity
+
+        if (size == capacity) {
+            start = (start + 1) % capacity
+        } else {
+            size++
+        }
+        this.elapsedMs[index] = elapsedMs
+        this.stackTraces[index] = stackTrace
+    }
+
+    fun clear() {
+        stackTraces.fill(null)
+        start = 0
+        size = 0
+    }
+
+    /**
+     * Copies the samples from oldest to newest, skipping any taken less than minIntervalMs
+     * after the previous copied sample. The newest sample is always copied.
+     */
+    fun toList(minIntervalMs: Long = 0): List<AnrWatchdog.StackSample> {
+        val samples = mutableListOf<AnrWatchdog.StackSample>()
+        var previousMs = Long.MIN_VALUE
+
+        for (offset in 0 until size) {
+            val index = (start + offset) % capacity
+            val sampleMs = elapsedMs[index]
+            val newest = offset == size - 1
+
+            if (newest || samples.isEmpty() || sampleMs - previousMs >= minIntervalMs) {
+                samples.add(AnrWatchdog.StackSample(sampleMs, stackTraces[index]!!))
+                previousMs = sampleMs
+            }
+        }
+        return samples
+    }
+}
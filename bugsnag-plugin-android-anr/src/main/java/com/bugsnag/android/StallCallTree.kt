@@ -0,0 +1,53 @@
+package com.bugsnag.android
+
+/**
+ * Aggregates stack samples into a call tree, in the style of a flame graph. Each node is a
+ * frame, counting the samples in which it was called from the path of frames above it.
+ */
+internal class StallCallTree {
+
+    companion object {
+        // frames are added from the root of the stack, so only the deepest frames are dropped
+        private const val MAX_DEPTH = 128
+    }
+
+    private class Node(val frame: String) {
+        var samples = 0
+        val children = LinkedHashMap<String, Node>()
+    }
+
+    private val root = Node("")
+
+    val sampleCount: Int
+        get() = root.samples
+
+    fun add(stackTrace: Array<StackTraceElement>) {
+        root.samples++
+        var node = root
+        val depth = minOf(stackTrace.size, MAX_DEPTH)
+
+        for (index in stackTrace.size - 1 downTo stackTrace.size - depth) {
+            val frame = stackTrace[index].toString()
+            node = node.children.getOrPut(frame) { Node(frame) }
+            node.samples++
+        }
+    }
+
+    /**
+     * Converts the tree to nested maps which can be added to metadata, with the children of
+     * each frame ordered from the most to the least sampled
+     */
+    fun toList(): List<Map<String, Any>> = toList(root)
+
+    private fun toList(node: Node): List<Map<String, Any>> {
+        return node.children.values
+            .sortedByDescending { it.samples }
+            .map {
+                mapOf(
+                    "frame" to it.frame,
+                    "samples" to it.samples,
+                    "children" to toList(it)
+                )
+            }
+    }
+}
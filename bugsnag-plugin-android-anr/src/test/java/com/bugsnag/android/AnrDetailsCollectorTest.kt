@@ -67,6 +67,13 @@ class AnrDetailsCollectorTest {
         assertEquals(stateInfo, captureProcessErrorState)
     }
 
+    @Test
+    fun retryDelayBacksOffExponentially() {
+        val delays = (0..8).map { AnrDetailsCollector.getRetryDelayMs(it) }
+        assertEquals(listOf(50L, 100L, 200L, 400L, 800L, 1600L, 3200L, 3200L, 3200L), delays)
+        assertEquals(3200L, AnrDetailsCollector.getRetryDelayMs(Int.MAX_VALUE))
+    }
+
     @Test
     fun anrDetailsAltered() {
         collector.addErrorStateInfo(error, stateInfo)
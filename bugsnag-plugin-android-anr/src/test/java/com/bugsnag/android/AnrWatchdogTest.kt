@@ -0,0 +1,139 @@
+package com.bugsnag.android
+
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class AnrWatchdogTest {
+
+    /**
+     * A looper which processes posted runnables on its own thread, and can be blocked
+     */
+    private class SimulatedLooper : AnrWatchdog.MonitoredLooper {
+        private val queue = LinkedBlockingQueue<Runnable>()
+
+        @Volatile
+        var posted = 0
+
+        override val thread = Thread {
+            try {
+                while (true) {
+                    queue.take().run()
+                }
+            } catch (exc: InterruptedException) {
+            }
+        }
+
+        init {
+            thread.isDaemon = true
+            thread.start()
+        }
+
+        override fun post(runnable: Runnable): Boolean {
+            posted++
+            return queue.offer(runnable)
+        }
+
+        fun block(latch: CountDownLatch) {
+            post(Runnable { blockedInLooper(latch) })
+        }
+
+        private fun blockedInLooper(latch: CountDownLatch) {
+            latch.await()
+        }
+
+        fun quit() = thread.interrupt()
+    }
+
+    private val looper = SimulatedLooper()
+    private val stalls = LinkedBlockingQueue<Pair<Long, List<AnrWatchdog.StackSample>>>()
+    private val profiles = LinkedBlockingQueue<Pair<Long, List<AnrWatchdog.StackSample>>>()
+
+    private val listener = object : AnrWatchdog.Listener {
+        override fun onAnr(durationMs: Long, samples: List<AnrWatchdog.StackSample>) {
+            stalls.add(Pair(durationMs, samples))
+        }
+
+        override fun onStallEnded(durationMs: Long, samples: List<AnrWatchdog.StackSample>) {
+            profiles.add(Pair(durationMs, samples))
+        }
+    }
+    private var watchdog = AnrWatchdog(looper, listener, 200, 50, heartbeatIntervalMs = 10)
+
+    @After
+    fun tearDown() {
+        watchdog.stop()
+        looper.quit()
+    }
+
+    @Test
+    fun responsiveLooperIsNotReported() {
+        watchdog.start()
+        Thread.sleep(300)
+        assertTrue(looper.posted > 1)
+        assertTrue(stalls.isEmpty())
+    }
+
+    @Test
+    fun blockedLooperIsReportedWithSamples() {
+        val unblock = CountDownLatch(1)
+        looper.block(unblock)
+        watchdog.start()
+
+        val stall = stalls.poll(5, TimeUnit.SECONDS)
+        val (durationMs, samples) = requireNotNull(stall)
+        assertTrue(durationMs >= 200)
+        assertTrue(samples.size >= 2)
+        assertTrue(watchdog.isStallReported)
+
+        // each sample shows where the looper thread was blocked, in order
+        samples.forEach { sample ->
+            assertTrue(sample.stackTrace.any { it.methodName == "blockedInLooper" })
+        }
+        assertEquals(samples.sortedBy { it.elapsedMs }, samples)
+        unblock.countDown()
+    }
+
+    @Test
+    fun stallIsReportedOnce() {
+        val unblock = CountDownLatch(1)
+        looper.block(unblock)
+        watchdog.start()
+        requireNotNull(stalls.poll(5, TimeUnit.SECONDS))
+        Thread.sleep(300)
+        assertTrue(stalls.isEmpty())
+
+        // the watchdog resumes monitoring after the stall ends
+        unblock.countDown()
+        val posted = looper.posted
+        Thread.sleep(100)
+        assertFalse(watchdog.isStallReported)
+        assertTrue(looper.posted > posted)
+        assertTrue(profiles.isEmpty())
+    }
+
+    @Test
+    fun shortStallIsProfiledWhenItEnds() {
+        watchdog = AnrWatchdog(looper, listener, 5000, 500, 50, 5)
+        val unblock = CountDownLatch(1)
+        looper.block(unblock)
+        watchdog.start()
+        Thread.sleep(300)
+        assertTrue(profiles.isEmpty())
+        unblock.countDown()
+
+        val profile = profiles.poll(5, TimeUnit.SECONDS)
+        val (durationMs, samples) = requireNotNull(profile)
+        assertTrue(durationMs >= 300)
+        assertTrue(samples.size > 10)
+
+        // sampling starts at the stall threshold
+        assertTrue(samples.first().elapsedMs >= 50)
+        assertTrue(stalls.isEmpty())
+    }
+}
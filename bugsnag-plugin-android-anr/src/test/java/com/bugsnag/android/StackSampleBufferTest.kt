@@ -0,0 +1,31 @@
+package com.bugsnag.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class StackSampleBufferTest {
+
+    private val stackTrace = arrayOf(StackTraceElement("Example", "run", "Example.kt", 1))
+
+    @Test
+    fun oldestSamplesAreOverwritten() {
+        val buffer = StackSampleBuffer(3)
+        (1L..5L).forEach { buffer.add(it * 10, stackTrace) }
+        assertEquals(3, buffer.size)
+        assertEquals(listOf(30L, 40L, 50L), buffer.toList().map { it.elapsedMs })
+
+        buffer.clear()
+        assertEquals(0, buffer.size)
+        assertEquals(emptyList<Long>(), buffer.toList().map { it.elapsedMs })
+    }
+
+    @Test
+    fun samplesAreThinnedToInterval() {
+        val buffer = StackSampleBuffer(16)
+        (0L..10L).forEach { buffer.add(it * 10, stackTrace) }
+
+        // the newest sample is always included
+        val samples = buffer.toList(minIntervalMs = 40)
+        assertEquals(listOf(0L, 40L, 80L, 100L), samples.map { it.elapsedMs })
+    }
+}
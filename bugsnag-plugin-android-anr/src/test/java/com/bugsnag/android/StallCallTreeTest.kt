@@ -0,0 +1,44 @@
+package com.bugsnag.android
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class StallCallTreeTest {
+
+    private fun stack(vararg methods: String): Array<StackTraceElement> {
+        // stack traces are ordered from the innermost frame
+        return methods.reversed()
+            .map { StackTraceElement("Example", it, "Example.kt", 1) }
+            .toTypedArray()
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun children(node: Map<String, Any>) = node["children"] as List<Map<String, Any>>
+
+    @Test
+    fun samplesAreAggregatedByCallPath() {
+        val tree = StallCallTree()
+        tree.add(stack("loop", "dispatch", "onClick", "readFile"))
+        tree.add(stack("loop", "dispatch", "onClick", "readFile"))
+        tree.add(stack("loop", "dispatch", "onClick", "parse"))
+        tree.add(stack("loop", "dispatch", "onDraw"))
+        assertEquals(4, tree.sampleCount)
+
+        val root = tree.toList().single()
+        assertEquals("Example.loop(Example.kt:1)", root["frame"])
+        assertEquals(4, root["samples"])
+
+        val dispatch = children(root).single()
+        val (onClick, onDraw) = children(dispatch)
+        assertEquals("Example.onClick(Example.kt:1)", onClick["frame"])
+        assertEquals(3, onClick["samples"])
+        assertEquals(1, onDraw["samples"])
+
+        // the most sampled frames are first
+        val (readFile, parse) = children(onClick)
+        assertEquals("Example.readFile(Example.kt:1)", readFile["frame"])
+        assertEquals(2, readFile["samples"])
+        assertEquals(1, parse["samples"])
+        assertEquals(emptyList<Any>(), children(parse))
+    }
+}
@@ -21,7 +21,14 @@ internal class NdkPlugin : BugsnagPlugin {
         if (nativeBridge == null) {
             nativeBridge = NativeBridge()
             client.addObserver(nativeBridge)
-            client.sendNativeSetupNotification()
+
+            val tracer = client.startupTracer
+            tracer.beginSection("ndkInstall")
+            try {
+                client.sendNativeSetupNotification()
+            } finally {
+                tracer.endSection()
+            }
         }
         enableCrashReporting()
         Logger.info("Initialised NDK Plugin")
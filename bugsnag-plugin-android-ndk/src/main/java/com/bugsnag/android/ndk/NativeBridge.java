@@ -11,13 +11,18 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -31,17 +36,29 @@ public class NativeBridge implements Observer {
     private static final int METADATA_KEY = 1;
     private static final int METADATA_VALUE = 2;
     private static final String LOG_TAG = "BugsnagNDK:NativeBridge";
+    private static final String CRASH_REPORT_SUFFIX = ".crash";
+    private static final String PARTIAL_REPORT_SUFFIX = ".json.tmp";
+    private static final long CONVERSION_TIMEOUT_SECONDS = 30;
     private static final Lock lock = new ReentrantLock();
     private static final AtomicBoolean installed = new AtomicBoolean(false);
 
     public static native void install(@NonNull String reportingDirectory, boolean autoNotify,
-                                      int apiLevel, boolean is32bit);
+                                      int apiLevel, boolean is32bit, int maxBreadcrumbs);
 
     public static native void enableCrashReporting();
 
     public static native void disableCrashReporting();
 
-    public static native void deliverReportAtPath(@NonNull String filePath);
+    /**
+     * Converts a native crash report into an event JSON payload, deleting the original
+     *
+     * @return the release stage in which the crash occurred, or null if conversion failed
+     */
+    @Nullable
+    public static native byte[] convertReportAtPath(@NonNull String filePath,
+                                                    @NonNull String outputPath);
+
+    public static native void registerStateMirror(@NonNull ByteBuffer buffer);
 
     public static native void addBreadcrumb(@NonNull String name, @NonNull String type,
                                             @NonNull String timestamp, @NonNull Object metadata);
@@ -55,46 +72,17 @@ public class NativeBridge implements Observer {
     public static native void addMetadataBoolean(@NonNull String tab, @NonNull String key,
                                                  boolean value);
 
-    public static native void addHandledEvent();
-
-    public static native void addUnhandledEvent();
-
     public static native void clearBreadcrumbs();
 
     public static native void clearMetadataTab(@NonNull String tab);
 
     public static native void removeMetadata(@NonNull String tab,@NonNull  String key);
 
-    public static native void startedSession(@NonNull String sessionID, @NonNull String key,
-                                             int handledCount, int unhandledCount);
-
-    public static native void stoppedSession();
-
-    public static native void updateAppVersion(@NonNull String appVersion);
-
-    public static native void updateBuildUUID(@NonNull String uuid);
-
-    public static native void updateContext(@NonNull String context);
-
-    public static native void updateInForeground(boolean inForeground,
-                                                 @NonNull String activityName);
-
-    public static native void updateLowMemory(boolean lowMemory);
-
-    public static native void updateOrientation(int orientation);
-
-    public static native void updateMetadata(@NonNull Object metadata);
-
-    public static native void updateReleaseStage(@NonNull String releaseStage);
-
-    public static native void updateUserId(@NonNull String newValue);
-
-    public static native void updateUserEmail(@NonNull String newValue);
-
-    public static native void updateUserName(@NonNull String newValue);
+    public static native void updateMetadata(@NonNull byte[] metadata);
 
     private boolean loggingEnabled = true;
     private final String reportDirectory;
+    private final NativeStateMirror stateMirror = new NativeStateMirror();
 
     /**
      * Creates a new native bridge for interacting with native components.
@@ -144,10 +132,10 @@ public class NativeBridge implements Observer {
                 handleClearMetadataTab(arg);
                 break;
             case NOTIFY_HANDLED:
-                addHandledEvent();
+                stateMirror.addHandledEvent();
                 break;
             case NOTIFY_UNHANDLED:
-                addUnhandledEvent();
+                stateMirror.addUnhandledEvent();
                 break;
             case REMOVE_METADATA:
                 handleRemoveMetadata(arg);
@@ -156,7 +144,7 @@ public class NativeBridge implements Observer {
                 handleStartSession(arg);
                 break;
             case STOP_SESSION:
-                stoppedSession();
+                handleStopSession();
                 break;
             case UPDATE_APP_VERSION:
                 handleAppVersionChange(arg);
@@ -225,9 +213,7 @@ public class NativeBridge implements Observer {
             if (outDir.exists()) {
                 File[] fileList = outDir.listFiles();
                 if (fileList != null) {
-                    for (final File file : fileList) {
-                        deliverReportAtPath(file.getAbsolutePath());
-                    }
+                    convertReports(fileList);
                 }
             } else {
                 warn("Report directory does not exist, cannot read pending reports");
@@ -239,6 +225,73 @@ public class NativeBridge implements Observer {
         }
     }
 
+    /**
+     * Converts crash reports into event payloads in the error store, using a thread per
+     * available processor, and then flushes the store
+     */
+    private void convertReports(@NonNull File[] files) throws InterruptedException {
+        List<File> reports = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(CRASH_REPORT_SUFFIX)) {
+                reports.add(file);
+            } else if (file.getName().endsWith(PARTIAL_REPORT_SUFFIX) && !file.delete()) {
+                warn("Failed to delete partially converted report: " + file);
+            }
+        }
+        if (reports.isEmpty()) {
+            return;
+        }
+        int threadCount = Math.min(reports.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threadCount, 1));
+
+        try {
+            for (final File report : reports) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        convertReport(report);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+        if (!executor.awaitTermination(CONVERSION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            warn("Timed out converting pending reports");
+        }
+        NativeInterface.flushErrorReports();
+    }
+
+    /**
+     * Converts a crash report into a temporary file alongside it, then moves it into the
+     * error store if its release stage should be notified, compressing it as configured
+     */
+    private void convertReport(@NonNull File report) {
+        String outputPath = NativeInterface.getErrorReportPath();
+        if (outputPath == null) {
+            warn("Error store is unavailable, cannot convert report: " + report);
+            return;
+        }
+        String path = report.getAbsolutePath();
+        File partial = new File(path.substring(0, path.length() - CRASH_REPORT_SUFFIX.length())
+            + PARTIAL_REPORT_SUFFIX);
+        byte[] releaseStageBytes = convertReportAtPath(path, partial.getAbsolutePath());
+
+        if (releaseStageBytes != null) {
+            String releaseStage = new String(releaseStageBytes, Charset.forName("UTF-8"));
+
+            if (NativeInterface.shouldNotifyForReleaseStage(releaseStage)) {
+                if (NativeInterface.storeErrorReport(partial, outputPath)) {
+                    return;
+                }
+                warn("Failed to move converted report into the error store: " + partial);
+            }
+        }
+        if (partial.exists() && !partial.delete()) {
+            warn("Failed to delete partially converted report: " + partial);
+        }
+    }
+
     private void handleInstallMessage(@NonNull Object arg) {
         lock.lock();
         try {
@@ -251,7 +304,9 @@ public class NativeBridge implements Observer {
                     Configuration config = (Configuration)values.get(0);
                     String reportPath = reportDirectory + UUID.randomUUID().toString() + ".crash";
                     install(reportPath, config.getDetectNdkCrashes(), Build.VERSION.SDK_INT,
-                        is32bit());
+                        is32bit(), config.getMaxBreadcrumbs());
+                    registerStateMirror(stateMirror.getBuffer());
+                    updateMetadata(NativeMetadataEncoder.encode(NativeInterface.getMetaData()));
                     installed.set(true);
                 }
             } else {
@@ -338,7 +393,7 @@ public class NativeBridge implements Observer {
 
     private void handleAppVersionChange(Object arg) {
         if (arg instanceof String) {
-            updateAppVersion(makeSafe((String)arg));
+            stateMirror.setAppVersion((String)arg);
         } else {
             warn("UPDATE_APP_VERSION object is invalid: " + arg);
         }
@@ -370,7 +425,7 @@ public class NativeBridge implements Observer {
 
                 if (id instanceof String && startTime instanceof String
                     && handledCount instanceof Integer && unhandledCount instanceof Integer) {
-                    startedSession((String)id, (String)startTime,
+                    stateMirror.startSession((String)id, (String)startTime,
                         (Integer) handledCount, (Integer) unhandledCount);
                     return;
                 }
@@ -381,14 +436,14 @@ public class NativeBridge implements Observer {
     }
 
     private void handleStopSession() {
-        stoppedSession();
+        stateMirror.stopSession();
     }
 
     private void handleReleaseStageChange(Object arg) {
         if (arg instanceof Configuration) {
             Configuration config = (Configuration) arg;
             String releaseStage = config.getReleaseStage();
-            updateReleaseStage(makeSafe(releaseStage));
+            stateMirror.setReleaseStage(releaseStage);
             enableOrDisableReportingIfNeeded(config);
         } else {
             warn("UPDATE_RELEASE_STAGE object is invalid: " + arg);
@@ -416,7 +471,7 @@ public class NativeBridge implements Observer {
 
     private void handleOrientationChange(Object arg) {
         if (arg instanceof Integer) {
-            updateOrientation((int) arg);
+            stateMirror.setOrientation((int) arg);
         } else if (arg == null) {
             warn("UPDATE_ORIENTATION object is null");
         } else {
@@ -429,7 +484,7 @@ public class NativeBridge implements Observer {
             @SuppressWarnings("unchecked")
             List<Object> metadata = (List<Object>)arg;
             if (metadata.size() == 2) {
-                updateInForeground((boolean) metadata.get(0), makeSafe((String) metadata.get(1)));
+                stateMirror.setInForeground((boolean) metadata.get(0), (String) metadata.get(1));
                 return;
             }
         }
@@ -439,9 +494,9 @@ public class NativeBridge implements Observer {
 
     private void handleUserIdChange(Object arg) {
         if (arg == null) {
-            updateUserId("");
+            stateMirror.setUserId(null);
         } else if (arg instanceof String) {
-            updateUserId(makeSafe((String)arg));
+            stateMirror.setUserId((String)arg);
         } else {
             warn("UPDATE_USER_ID object is invalid: " + arg);
         }
@@ -449,9 +504,9 @@ public class NativeBridge implements Observer {
 
     private void handleUserNameChange(Object arg) {
         if (arg == null) {
-            updateUserName("");
+            stateMirror.setUserName(null);
         } else if (arg instanceof String) {
-            updateUserName(makeSafe((String)arg));
+            stateMirror.setUserName((String)arg);
         } else {
             warn("UPDATE_USER_NAME object is invalid: " + arg);
         }
@@ -459,9 +514,9 @@ public class NativeBridge implements Observer {
 
     private void handleUserEmailChange(Object arg) {
         if (arg == null) {
-            updateUserEmail("");
+            stateMirror.setUserEmail(null);
         } else if (arg instanceof String) {
-            updateUserEmail(makeSafe((String)arg));
+            stateMirror.setUserEmail((String)arg);
         } else {
             warn("UPDATE_USER_EMAIL object is invalid: " + arg);
         }
@@ -469,9 +524,9 @@ public class NativeBridge implements Observer {
 
     private void handleBuildUUIDChange(Object arg) {
         if (arg == null) {
-            updateBuildUUID("");
+            stateMirror.setBuildUuid(null);
         } else if (arg instanceof String) {
-            updateBuildUUID(makeSafe((String)arg));
+            stateMirror.setBuildUuid((String)arg);
         } else {
             warn("UPDATE_BUILD_UUID object is invalid: " + arg);
         }
@@ -479,9 +534,9 @@ public class NativeBridge implements Observer {
 
     private void handleContextChange(Object arg) {
         if (arg == null) {
-            updateContext("");
+            stateMirror.setContext(null);
         } else if (arg instanceof String) {
-            updateContext(makeSafe((String)arg));
+            stateMirror.setContext((String)arg);
         } else {
             warn("UPDATE_CONTEXT object is invalid: " + arg);
         }
@@ -489,7 +544,7 @@ public class NativeBridge implements Observer {
 
     private void handleLowMemoryChange(Object arg) {
         if (arg instanceof Boolean) {
-            updateLowMemory((Boolean)arg);
+            stateMirror.setLowMemory((Boolean)arg);
         } else {
             warn("UPDATE_LOW_MEMORY object is invalid: " + arg);
         }
@@ -497,7 +552,9 @@ public class NativeBridge implements Observer {
 
     private void handleUpdateMetadata(Object arg) {
         if (arg instanceof Map) {
-            updateMetadata(arg);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = (Map<String, Object>) arg;
+            updateMetadata(NativeMetadataEncoder.encode(metadata));
         } else {
             warn("UPDATE_METADATA object is invalid: " + arg);
         }
@@ -0,0 +1,121 @@
+package com.bugsnag.android.ndk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Serializes metadata into the compact binary format read by bsg_decode_metadata, so that it
+ * can be passed to the native layer with a single JNI call rather than walking the map via
+ * reflection.
+ * <p/>
+ * The encoding is a native-order 16-bit entry count followed by each entry as:
+ * a type byte, a length-prefixed section, a length-prefixed key, then either a single byte for
+ * booleans, a length-prefixed UTF-8 string, or an 8-byte double. Only string, boolean and
+ * numeric values are encoded, as these are the only types which the native layer stores.
+ */
+final class NativeMetadataEncoder {
+
+    // values match bsg_metadata_t in report.h
+    static final int TYPE_BOOL = 1;
+    static final int TYPE_STRING = 2;
+    static final int TYPE_NUMBER = 3;
+
+    // capacities include the null terminator, matching bsg_metadata_value
+    static final int SECTION_CAPACITY = 32;
+    static final int NAME_CAPACITY = 32;
+    static final int VALUE_CAPACITY = 64;
+
+    /**
+     * The maximum number of values retained natively, matching BUGSNAG_METADATA_MAX
+     */
+    static final int MAX_VALUES = 128;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private NativeMetadataEncoder() {
+    }
+
+    @NonNull
+    static byte[] encode(@Nullable Map<String, Object> metadata) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0); // entry count, filled in once known
+        out.write(0);
+        int count = 0;
+
+        if (metadata != null) {
+            for (Map.Entry<String, Object> section : metadata.entrySet()) {
+                if (!(section.getValue() instanceof Map) || section.getKey() == null) {
+                    continue;
+                }
+                @SuppressWarnings("unchecked")
+                Map<String, Object> values = (Map<String, Object>) section.getValue();
+
+                for (Map.Entry<String, Object> entry : values.entrySet()) {
+                    if (count == MAX_VALUES) {
+                        break;
+                    }
+                    if (entry.getKey() != null && writeEntry(out, section.getKey(),
+                        entry.getKey(), entry.getValue())) {
+                        count++;
+                    }
+                }
+            }
+        }
+        byte[] encoded = out.toByteArray();
+        ByteBuffer.wrap(encoded).order(ByteOrder.nativeOrder()).putShort(0, (short) count);
+        return encoded;
+    }
+
+    private static boolean writeEntry(ByteArrayOutputStream out, String section, String name,
+                                      Object value) {
+        if (value instanceof String) {
+            writeHeader(out, TYPE_STRING, section, name);
+            writeString(out, (String) value, VALUE_CAPACITY);
+        } else if (value instanceof Boolean) {
+            writeHeader(out, TYPE_BOOL, section, name);
+            out.write((Boolean) value ? 1 : 0);
+        } else if (value instanceof Number) {
+            writeHeader(out, TYPE_NUMBER, section, name);
+            byte[] bytes = new byte[8];
+            ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder())
+                .putDouble(((Number) value).doubleValue());
+            out.write(bytes, 0, bytes.length);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, int type, String section,
+                                    String name) {
+        out.write(type);
+        writeString(out, section, SECTION_CAPACITY);
+        writeString(out, name, NAME_CAPACITY);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value, int capacity) {
+        byte[] bytes = value.getBytes(UTF8);
+        int length = truncatedLength(bytes, capacity - 1);
+        out.write(length);
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Calculates the length of a UTF-8 string when truncated to a maximum number of bytes,
+     * avoiding splitting a multi-byte sequence (identified by a 10xxxxxx continuation byte)
+     */
+    static int truncatedLength(@NonNull byte[] bytes, int maxLength) {
+        int length = Math.min(bytes.length, maxLength);
+
+        while (length > 0 && length < bytes.length && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,207 @@
+package com.bugsnag.android.ndk;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Holds crash-relevant state in a direct buffer which is shared with the native layer, so that
+ * updates are plain memory writes rather than JNI calls.
+ * <p/>
+ * The layout matches bsg_state_mirror in state_mirror.h. Each update is bracketed by increments
+ * of a sequence counter so that a signal handler can detect and retry torn reads.
+ */
+final class NativeStateMirror {
+
+    private static final int OFFSET_SEQUENCE = 0;
+    private static final int OFFSET_ORIENTATION = 4;
+    private static final int OFFSET_HANDLED_EVENTS = 8;
+    private static final int OFFSET_UNHANDLED_EVENTS = 12;
+    private static final int OFFSET_FOREGROUND_START_TIME = 16;
+    private static final int OFFSET_IN_FOREGROUND = 24;
+    private static final int OFFSET_LOW_MEMORY = 25;
+    private static final int OFFSET_LEFT_FOREGROUND = 26;
+    private static final int OFFSET_CONTEXT = 32;
+    private static final int OFFSET_USER_ID = 96;
+    private static final int OFFSET_USER_NAME = 160;
+    private static final int OFFSET_USER_EMAIL = 224;
+    private static final int OFFSET_APP_VERSION = 288;
+    private static final int OFFSET_RELEASE_STAGE = 320;
+    private static final int OFFSET_BUILD_UUID = 384;
+    private static final int OFFSET_ACTIVE_SCREEN = 448;
+    private static final int OFFSET_SESSION_ID = 512;
+    private static final int OFFSET_SESSION_START = 545;
+
+    private static final int LEN_SHORT_STRING = 32;
+    private static final int LEN_STRING = 64;
+    private static final int LEN_SESSION_STRING = 33;
+
+    static final int SIZE = 584;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Stored and then loaded around each sequence update. A volatile store followed by a volatile
+     * load cannot be reordered with the plain buffer writes on either side, which keeps the field
+     * writes between the odd and even sequence values as seen by the native reader.
+     */
+    private volatile int fence;
+
+    NativeStateMirror() {
+        this(ByteBuffer.allocateDirect(SIZE));
+    }
+
+    NativeStateMirror(@NonNull ByteBuffer buffer) {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+    }
+
+    @NonNull
+    ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    synchronized void setContext(@Nullable String context) {
+        beginWrite();
+        putString(OFFSET_CONTEXT, LEN_STRING, context);
+        endWrite();
+    }
+
+    synchronized void setUserId(@Nullable String id) {
+        beginWrite();
+        putString(OFFSET_USER_ID, LEN_STRING, id);
+        endWrite();
+    }
+
+    synchronized void setUserName(@Nullable String name) {
+        beginWrite();
+        putString(OFFSET_USER_NAME, LEN_STRING, name);
+        endWrite();
+    }
+
+    synchronized void setUserEmail(@Nullable String email) {
+        beginWrite();
+        putString(OFFSET_USER_EMAIL, LEN_STRING, email);
+        endWrite();
+    }
+
+    synchronized void setAppVersion(@Nullable String appVersion) {
+        beginWrite();
+        putString(OFFSET_APP_VERSION, LEN_SHORT_STRING, appVersion);
+        endWrite();
+    }
+
+    synchronized void setReleaseStage(@Nullable String releaseStage) {
+        beginWrite();
+        putString(OFFSET_RELEASE_STAGE, LEN_STRING, releaseStage);
+        endWrite();
+    }
+
+    synchronized void setBuildUuid(@Nullable String buildUuid) {
+        beginWrite();
+        putString(OFFSET_BUILD_UUID, LEN_STRING, buildUuid);
+        endWrite();
+    }
+
+    synchronized void setLowMemory(boolean lowMemory) {
+        beginWrite();
+        buffer.put(OFFSET_LOW_MEMORY, (byte) (lowMemory ? 1 : 0));
+        endWrite();
+    }
+
+    synchronized void setOrientation(int orientation) {
+        beginWrite();
+        buffer.putInt(OFFSET_ORIENTATION, orientation);
+        endWrite();
+    }
+
+    synchronized void setInForeground(boolean inForeground, @Nullable String activityName) {
+        boolean wasInForeground = buffer.get(OFFSET_IN_FOREGROUND) != 0;
+        beginWrite();
+        buffer.put(OFFSET_IN_FOREGROUND, (byte) (inForeground ? 1 : 0));
+        putString(OFFSET_ACTIVE_SCREEN, LEN_STRING, activityName);
+
+        if (inForeground) {
+            if (!wasInForeground) {
+                buffer.putLong(OFFSET_FOREGROUND_START_TIME, System.currentTimeMillis() / 1000);
+            }
+        } else {
+            buffer.putLong(OFFSET_FOREGROUND_START_TIME, 0);
+            buffer.put(OFFSET_LEFT_FOREGROUND, (byte) 1);
+        }
+        endWrite();
+    }
+
+    synchronized void startSession(@NonNull String sessionId, @NonNull String startedAt,
+                                   int handledCount, int unhandledCount) {
+        beginWrite();
+        putString(OFFSET_SESSION_ID, LEN_SESSION_STRING, sessionId);
+        putString(OFFSET_SESSION_START, LEN_SESSION_STRING, startedAt);
+        buffer.putInt(OFFSET_HANDLED_EVENTS, handledCount);
+        buffer.putInt(OFFSET_UNHANDLED_EVENTS, unhandledCount);
+        endWrite();
+    }
+
+    synchronized void stopSession() {
+        beginWrite();
+        putString(OFFSET_SESSION_ID, LEN_SESSION_STRING, null);
+        putString(OFFSET_SESSION_START, LEN_SESSION_STRING, null);
+        buffer.putInt(OFFSET_HANDLED_EVENTS, 0);
+        buffer.putInt(OFFSET_UNHANDLED_EVENTS, 0);
+        endWrite();
+    }
+
+    synchronized void addHandledEvent() {
+        if (hasSession()) {
+            beginWrite();
+            buffer.putInt(OFFSET_HANDLED_EVENTS, buffer.getInt(OFFSET_HANDLED_EVENTS) + 1);
+            endWrite();
+        }
+    }
+
+    synchronized void addUnhandledEvent() {
+        if (hasSession()) {
+            beginWrite();
+            buffer.putInt(OFFSET_UNHANDLED_EVENTS, buffer.getInt(OFFSET_UNHANDLED_EVENTS) + 1);
+            endWrite();
+        }
+    }
+
+    private boolean hasSession() {
+        return buffer.get(OFFSET_SESSION_ID) != 0;
+    }
+
+    private void beginWrite() {
+        int sequence = buffer.getInt(OFFSET_SEQUENCE) + 1;
+        buffer.putInt(OFFSET_SEQUENCE, sequence);
+        barrier(sequence);
+    }
+
+    private void endWrite() {
+        int sequence = barrier(buffer.getInt(OFFSET_SEQUENCE) + 1);
+        buffer.putInt(OFFSET_SEQUENCE, sequence);
+    }
+
+    private int barrier(int value) {
+        fence = value;
+        return fence;
+    }
+
+    /**
+     * Writes a null-terminated UTF-8 string into a fixed-size field, truncating on a character
+     * boundary if needed
+     */
+    private void putString(int offset, int capacity, @Nullable String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(UTF8);
+        int length = NativeMetadataEncoder.truncatedLength(bytes, capacity - 1);
+
+        for (int k = 0; k < length; k++) {
+            buffer.put(offset + k, bytes[k]);
+        }
+        buffer.put(offset + length, (byte) 0);
+    }
+}
@@ -10,6 +10,7 @@
 #include "handlers/cpp_handler.h"
 #include "metadata.h"
 #include "report.h"
+#include "utils/metadata_decoder.h"
 #include "utils/serializer.h"
 #include "utils/string.h"
 
@@ -76,8 +77,11 @@ JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_disableCrashRep
 
 JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_install(
     JNIEnv *env, jobject _this, jstring _report_path, jboolean auto_notify,
-    jint _api_level, jboolean is32bit) {
+    jint _api_level, jboolean is32bit, jint max_breadcrumbs) {
   bsg_environment *bugsnag_env = calloc(1, sizeof(bsg_environment));
+  bugsnag_report_set_crumb_capacity(&bugsnag_env->next_report,
+                                    (int)max_breadcrumbs);
+  bsg_crumb_ring_init(&bugsnag_env->crumb_ring, (int)max_breadcrumbs);
   bsg_set_unwind_types((int)_api_level, (bool)is32bit,
                        &bugsnag_env->signal_unwind_style,
                        &bugsnag_env->unwind_style);
@@ -111,37 +115,21 @@ JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_install(
   BUGSNAG_LOG("Initialization complete!");
 }
 
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_deliverReportAtPath(
-    JNIEnv *env, jobject _this, jstring _report_path) {
-  static pthread_mutex_t bsg_native_delivery_mutex = PTHREAD_MUTEX_INITIALIZER;
-  pthread_mutex_lock(&bsg_native_delivery_mutex);
+JNIEXPORT jbyteArray JNICALL
+Java_com_bugsnag_android_ndk_NativeBridge_convertReportAtPath(
+    JNIEnv *env, jobject _this, jstring _report_path, jstring _output_path) {
   const char *report_path = (*env)->GetStringUTFChars(env, _report_path, 0);
+  const char *output_path = (*env)->GetStringUTFChars(env, _output_path, 0);
+  jbyteArray release_stage = NULL;
   bugsnag_report *report =
       bsg_deserialize_report_from_file((char *)report_path);
 
   if (report != NULL) {
-    char *payload = bsg_serialize_report_to_json_string(report);
-    if (payload != NULL) {
-      jclass interface_class =
-          (*env)->FindClass(env, "com/bugsnag/android/NativeInterface");
-      jmethodID jdeliver_method =
-          (*env)->GetStaticMethodID(env, interface_class, "deliverReport",
-                                    "([B[B)V");
-      size_t payload_length = bsg_strlen(payload);
-      jbyteArray jpayload = (*env)->NewByteArray(env, payload_length);
-      (*env)->SetByteArrayRegion(env, jpayload, 0, payload_length, (jbyte *)payload);
-
+    if (bsg_serialize_report_to_json_file(report, output_path)) {
       size_t stage_length = bsg_strlen(report->app.release_stage);
-      jbyteArray jstage = (*env)->NewByteArray(env, stage_length);
-      (*env)->SetByteArrayRegion(env, jstage, 0, stage_length, (jbyte *)report->app.release_stage);
-
-      (*env)->CallStaticVoidMethod(env, interface_class, jdeliver_method,
-                                   jstage, jpayload);
-      (*env)->ReleaseByteArrayElements(env, jpayload, (jbyte *)payload, 0); // <-- frees payload
-      (*env)->ReleaseByteArrayElements(env, jstage, (jbyte *)report->app.release_stage, JNI_COMMIT);
-      (*env)->DeleteLocalRef(env, jpayload);
-      (*env)->DeleteLocalRef(env, jstage);
+      release_stage = (*env)->NewByteArray(env, stage_length);
+      (*env)->SetByteArrayRegion(env, release_stage, 0, stage_length,
+                                 (jbyte *)report->app.release_stage);
     } else {
       BUGSNAG_LOG("Failed to serialize report as JSON: %s", report_path);
     }
@@ -151,65 +139,29 @@ Java_com_bugsnag_android_ndk_NativeBridge_deliverReportAtPath(
   }
   remove(report_path);
   (*env)->ReleaseStringUTFChars(env, _report_path, report_path);
-  pthread_mutex_unlock(&bsg_native_delivery_mutex);
+  (*env)->ReleaseStringUTFChars(env, _output_path, output_path);
+  return release_stage;
 }
 
 JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_addHandledEvent(JNIEnv *env,
-                                                          jobject _this) {
+Java_com_bugsnag_android_ndk_NativeBridge_registerStateMirror(JNIEnv *env,
+                                                              jobject _this,
+                                                              jobject buffer) {
   if (bsg_global_env == NULL)
     return;
-  bsg_request_env_write_lock();
-  bugsnag_report *report = &bsg_global_env->next_report;
-
-  if (bugsnag_report_has_session(report)) {
-    report->handled_events++;
-  }
-  bsg_release_env_write_lock();
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_addUnhandledEvent(JNIEnv *env,
-                                                            jobject _this) {
-    if (bsg_global_env == NULL)
-        return;
-    bsg_request_env_write_lock();
-    bugsnag_report *report = &bsg_global_env->next_report;
-
-    if (bugsnag_report_has_session(report)) {
-        report->unhandled_events++;
-    }
-    bsg_release_env_write_lock();
-}
-
-JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_startedSession(
-    JNIEnv *env, jobject _this, jstring session_id_, jstring start_date_,
-    jint handled_count, jint unhandled_count) {
-  if (bsg_global_env == NULL || session_id_ == NULL)
+  void *address = (*env)->GetDirectBufferAddress(env, buffer);
+  jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+  if (address == NULL || capacity < (jlong)sizeof(bsg_state_mirror)) {
+    BUGSNAG_LOG("Ignoring state mirror with an unexpected capacity: %lld",
+                (long long)capacity);
     return;
-  char *session_id = (char *)(*env)->GetStringUTFChars(env, session_id_, 0);
-  char *started_at = (char *)(*env)->GetStringUTFChars(env, start_date_, 0);
+  }
+  bsg_state_mirror *mirror = (bsg_state_mirror *)address;
   bsg_request_env_write_lock();
-  bugsnag_report_start_session(&bsg_global_env->next_report, session_id,
-                               started_at, handled_count, unhandled_count);
-
+  bsg_state_mirror_init(mirror, &bsg_global_env->next_report,
+                        bsg_global_env->foreground_start_time);
+  bsg_global_env->state_mirror = mirror;
   bsg_release_env_write_lock();
-  (*env)->ReleaseStringUTFChars(env, session_id_, session_id);
-  (*env)->ReleaseStringUTFChars(env, start_date_, started_at);
-}
-
-JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_stoppedSession(
-    JNIEnv *env, jobject _this) {
-    if (bsg_global_env == NULL) {
-        return;
-    }
-    bsg_request_env_write_lock();
-    bugsnag_report *report = &bsg_global_env->next_report;
-    memset(report->session_id, 0, strlen(report->session_id));
-    memset(report->session_start, 0, strlen(report->session_start));
-    report->handled_events = 0;
-    report->unhandled_events = 0;
-    bsg_release_env_write_lock();
 }
 
 JNIEXPORT void JNICALL
@@ -217,9 +169,7 @@ Java_com_bugsnag_android_ndk_NativeBridge_clearBreadcrumbs(JNIEnv *env,
                                                            jobject _this) {
   if (bsg_global_env == NULL)
     return;
-  bsg_request_env_write_lock();
-  bugsnag_report_clear_breadcrumbs(&bsg_global_env->next_report);
-  bsg_release_env_write_lock();
+  bsg_crumb_ring_clear(&bsg_global_env->crumb_ring);
 }
 
 JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_addBreadcrumb(
@@ -230,7 +180,9 @@ JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_addBreadcrumb(
   const char *name = (*env)->GetStringUTFChars(env, name_, 0);
   const char *type = (*env)->GetStringUTFChars(env, crumb_type, 0);
   const char *timestamp = (*env)->GetStringUTFChars(env, timestamp_, 0);
-  bugsnag_breadcrumb *crumb = calloc(1, sizeof(bugsnag_breadcrumb));
+  bugsnag_breadcrumb crumb_buffer;
+  bugsnag_breadcrumb *crumb = &crumb_buffer;
+  memset(crumb, 0, sizeof(bugsnag_breadcrumb));
   strncpy(crumb->name, name, sizeof(crumb->name));
   strncpy(crumb->timestamp, timestamp, sizeof(crumb->timestamp));
   if (strcmp(type, "user") == 0) {
@@ -252,174 +204,13 @@ JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_addBreadcrumb(
   }
 
   bsg_populate_crumb_metadata(env, crumb, metadata);
-  bsg_request_env_write_lock();
-  bugsnag_report_add_breadcrumb(&bsg_global_env->next_report, crumb);
-  bsg_release_env_write_lock();
+  bsg_crumb_ring_add(&bsg_global_env->crumb_ring, crumb);
 
-  free(crumb);
   (*env)->ReleaseStringUTFChars(env, name_, name);
   (*env)->ReleaseStringUTFChars(env, crumb_type, type);
   (*env)->ReleaseStringUTFChars(env, timestamp_, timestamp);
 }
 
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateAppVersion(JNIEnv *env,
-                                                           jobject _this,
-                                                           jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_app_version(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  (*env)->ReleaseStringUTFChars(env, new_value, value);
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateBuildUUID(JNIEnv *env,
-                                                          jobject _this,
-                                                          jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_build_uuid(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  (*env)->ReleaseStringUTFChars(env, new_value, value);
-}
-
-JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_updateContext(
-    JNIEnv *env, jobject _this, jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_context(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  if (new_value != NULL) {
-    (*env)->ReleaseStringUTFChars(env, new_value, value);
-  }
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateInForeground(
-    JNIEnv *env, jobject _this, jboolean new_value, jstring activity_) {
-  if (bsg_global_env == NULL)
-    return;
-  char *activity = activity_ == NULL
-                       ? NULL
-                       : (char *)(*env)->GetStringUTFChars(env, activity_, 0);
-  bsg_request_env_write_lock();
-  bool was_in_foreground = bsg_global_env->next_report.app.in_foreground;
-  bsg_global_env->next_report.app.in_foreground = (bool)new_value;
-  bsg_strncpy_safe(bsg_global_env->next_report.app.active_screen, activity,
-                   sizeof(bsg_global_env->next_report.app.active_screen));
-  if ((bool)new_value) {
-    if (!was_in_foreground) {
-      time(&bsg_global_env->foreground_start_time);
-    }
-  } else {
-    bsg_global_env->foreground_start_time = 0;
-    bsg_global_env->next_report.app.duration_in_foreground_ms_offset = 0;
-  }
-  bsg_release_env_write_lock();
-  if (activity_ != NULL) {
-    (*env)->ReleaseStringUTFChars(env, activity_, activity);
-  }
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateLowMemory(JNIEnv *env,
-                                                          jobject _this,
-                                                          jboolean new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  bsg_request_env_write_lock();
-  bsg_global_env->next_report.app.low_memory = (bool)new_value;
-  bsg_release_env_write_lock();
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateOrientation(JNIEnv *env,
-                                                            jobject _this,
-                                                            jint orientation) {
-  if (bsg_global_env == NULL)
-    return;
-
-  bsg_request_env_write_lock();
-  bugsnag_report_set_orientation(&bsg_global_env->next_report, orientation);
-  bsg_release_env_write_lock();
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateReleaseStage(
-    JNIEnv *env, jobject _this, jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_release_stage(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  if (new_value != NULL) {
-    (*env)->ReleaseStringUTFChars(env, new_value, value);
-  }
-}
-
-JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_updateUserId(
-    JNIEnv *env, jobject _this, jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_user_id(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  if (new_value != NULL) {
-    (*env)->ReleaseStringUTFChars(env, new_value, value);
-  }
-}
-
-JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_updateUserName(
-    JNIEnv *env, jobject _this, jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_user_name(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  if (new_value != NULL) {
-    (*env)->ReleaseStringUTFChars(env, new_value, value);
-  }
-}
-
-JNIEXPORT void JNICALL
-Java_com_bugsnag_android_ndk_NativeBridge_updateUserEmail(JNIEnv *env,
-                                                          jobject _this,
-                                                          jstring new_value) {
-  if (bsg_global_env == NULL)
-    return;
-  char *value = new_value == NULL
-                    ? NULL
-                    : (char *)(*env)->GetStringUTFChars(env, new_value, 0);
-  bsg_request_env_write_lock();
-  bugsnag_report_set_user_email(&bsg_global_env->next_report, value);
-  bsg_release_env_write_lock();
-  if (new_value != NULL) {
-    (*env)->ReleaseStringUTFChars(env, new_value, value);
-  }
-}
-
 JNIEXPORT void JNICALL
 Java_com_bugsnag_android_ndk_NativeBridge_addMetadataString(
     JNIEnv *env, jobject _this, jstring tab_, jstring key_, jstring value_) {
@@ -496,12 +287,20 @@ JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_removeMetadata(
 }
 
 JNIEXPORT void JNICALL Java_com_bugsnag_android_ndk_NativeBridge_updateMetadata(
-    JNIEnv *env, jobject _this, jobject metadata) {
-  if (bsg_global_env == NULL)
+    JNIEnv *env, jobject _this, jbyteArray metadata) {
+  if (bsg_global_env == NULL || metadata == NULL)
+    return;
+  jsize length = (*env)->GetArrayLength(env, metadata);
+  jbyte *buf = (*env)->GetByteArrayElements(env, metadata, NULL);
+  if (buf == NULL)
     return;
   bsg_request_env_write_lock();
-  bsg_populate_metadata(env, &bsg_global_env->next_report, metadata);
+  if (!bsg_decode_metadata((uint8_t *)buf, (size_t)length,
+                           &bsg_global_env->next_report)) {
+    BUGSNAG_LOG("Failed to decode metadata of length %d", (int)length);
+  }
   bsg_release_env_write_lock();
+  (*env)->ReleaseByteArrayElements(env, metadata, buf, JNI_ABORT);
 }
 
 #ifdef __cplusplus
@@ -8,7 +8,9 @@
 #include <stdbool.h>
 
 #include "report.h"
+#include "utils/crumb_ring.h"
 #include "utils/stack_unwinder.h"
+#include "utils/state_mirror.h"
 
 #ifndef BUGSNAG_LOG
 #define BUGSNAG_LOG(fmt, ...)                                                  \
@@ -37,6 +39,16 @@ typedef struct {
      * Cache of static metadata and report info. Exception/time information is populated at crash time.
      */
     bugsnag_report next_report;
+    /**
+     * Crash-relevant state written directly by the Java layer, applied to
+     * next_report at crash time. NULL until a buffer is registered.
+     */
+    bsg_state_mirror *state_mirror;
+    /**
+     * Breadcrumbs added without taking the write lock, copied into
+     * next_report at crash time
+     */
+    bsg_crumb_ring crumb_ring;
     /**
      * Time when installed
      */
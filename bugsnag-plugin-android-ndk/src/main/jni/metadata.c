@@ -355,63 +355,3 @@ void bsg_populate_report(JNIEnv *env, bugsnag_report *report) {
   bsg_populate_user_data(env, jni_cache, report);
   free(jni_cache);
 }
-void bsg_populate_metadata(JNIEnv *env, bugsnag_report *report,
-                           jobject metadata) {
-  bsg_jni_cache *jni_cache = bsg_populate_jni_cache(env);
-  if (metadata == NULL) {
-    metadata = (*env)->CallStaticObjectMethod(env, jni_cache->native_interface,
-                                              jni_cache->get_metadata);
-  }
-  if (metadata != NULL) {
-    int size = (int)(*env)->CallIntMethod(env, metadata, jni_cache->map_size);
-    jobject keyset =
-        (*env)->CallObjectMethod(env, metadata, jni_cache->map_key_set);
-    jobject keylist = (*env)->NewObject(
-        env, jni_cache->arraylist, jni_cache->arraylist_init_with_obj, keyset);
-    for (int i = 0; i < size; i++) {
-      jstring _key = (*env)->CallObjectMethod(
-          env, keylist, jni_cache->arraylist_get, (jint)i);
-      char *section = (char *)(*env)->GetStringUTFChars(env, _key, 0);
-      jobject _section =
-          (*env)->CallObjectMethod(env, metadata, jni_cache->map_get, _key);
-      int section_size =
-          (int)(*env)->CallIntMethod(env, _section, jni_cache->map_size);
-      jobject section_keyset =
-          (*env)->CallObjectMethod(env, _section, jni_cache->map_key_set);
-      jobject section_keylist =
-          (*env)->NewObject(env, jni_cache->arraylist,
-                            jni_cache->arraylist_init_with_obj, section_keyset);
-      for (int j = 0; j < section_size; j++) {
-        jstring section_key = (*env)->CallObjectMethod(
-            env, section_keylist, jni_cache->arraylist_get, (jint)j);
-        char *name = (char *)(*env)->GetStringUTFChars(env, section_key, 0);
-        jobject _value = (*env)->CallObjectMethod(
-            env, section, jni_cache->map_get, section_key);
-        if ((*env)->IsInstanceOf(env, _value, jni_cache->number)) {
-          double value = (*env)->CallDoubleMethod(
-              env, _value, jni_cache->number_double_value);
-          bugsnag_report_add_metadata_double(report, section, name, value);
-        } else if ((*env)->IsInstanceOf(env, _value, jni_cache->boolean)) {
-          bool value = (*env)->CallBooleanMethod(env, _value,
-                                                 jni_cache->boolean_bool_value);
-          bugsnag_report_add_metadata_bool(report, section, name, value);
-        } else if ((*env)->IsInstanceOf(env, _value, jni_cache->string)) {
-          char *value = (char *)(*env)->GetStringUTFChars(env, _value, 0);
-          bugsnag_report_add_metadata_string(report, section, name, value);
-          free(value);
-        }
-        (*env)->ReleaseStringUTFChars(env, section_key, name);
-        (*env)->DeleteLocalRef(env, _value);
-      }
-      (*env)->ReleaseStringUTFChars(env, _key, section);
-      (*env)->DeleteLocalRef(env, section_keyset);
-      (*env)->DeleteLocalRef(env, section_keylist);
-      (*env)->DeleteLocalRef(env, _section);
-    }
-    (*env)->DeleteLocalRef(env, keyset);
-    (*env)->DeleteLocalRef(env, keylist);
-  } else {
-    report->metadata.value_count = 0;
-  }
-  free(jni_cache);
-}
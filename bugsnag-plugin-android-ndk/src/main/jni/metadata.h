@@ -8,11 +8,6 @@
  * Load all app, device, user, and custom metadata from NativeInterface into a report
  */
 void bsg_populate_report(JNIEnv *env, bugsnag_report *report);
-/**
- * Load custom metadata from NativeInterface into a report, optionally from an object.
- * If metadata is not provided, load from NativeInterface
- */
-void bsg_populate_metadata(JNIEnv *env, bugsnag_report *report, jobject metadata);
 
 /**
  * Parse as java.util.Map<String, String> to populate crumb metadata
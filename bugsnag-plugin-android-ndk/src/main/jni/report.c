@@ -144,13 +144,15 @@ void bugsnag_report_set_app_version(bugsnag_report *report, char *value) {
 void bugsnag_report_add_breadcrumb(bugsnag_report *report,
                                    bugsnag_breadcrumb *crumb) {
   int crumb_index;
-  if (report->crumb_count < BUGSNAG_CRUMBS_MAX) {
+  if (report->crumb_capacity <= 0) {
+    return;
+  } else if (report->crumb_count < report->crumb_capacity) {
     crumb_index = report->crumb_count;
     report->crumb_count++;
   } else {
     crumb_index = report->crumb_first_index;
     report->crumb_first_index =
-        (report->crumb_first_index + 1) % BUGSNAG_CRUMBS_MAX;
+        (report->crumb_first_index + 1) % report->crumb_capacity;
   }
   memcpy(&report->breadcrumbs[crumb_index], crumb, sizeof(bugsnag_breadcrumb));
 }
@@ -160,6 +162,19 @@ void bugsnag_report_clear_breadcrumbs(bugsnag_report *report) {
   report->crumb_first_index = 0;
 }
 
+void bugsnag_report_set_crumb_capacity(bugsnag_report *report, int capacity) {
+  if (capacity < 0) {
+    capacity = 0;
+  } else if (capacity > BUGSNAG_CRUMBS_MAX) {
+    capacity = BUGSNAG_CRUMBS_MAX;
+  }
+  if (capacity != report->crumb_capacity) {
+    // the ring order depends on the capacity, so existing crumbs are dropped
+    bugsnag_report_clear_breadcrumbs(report);
+    report->crumb_capacity = capacity;
+  }
+}
+
 bool bugsnag_report_has_session(bugsnag_report *report) {
     return strlen(report->session_id) > 0;
 }
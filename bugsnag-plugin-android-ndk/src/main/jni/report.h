@@ -18,7 +18,10 @@
 #endif
 #ifndef BUGSNAG_CRUMBS_MAX
 /**
- *  Max number of breadcrumbs in a report. Configures a default if not defined.
+ *  Upper bound on the number of breadcrumbs in a report, which sizes the
+ *  preallocated report and breadcrumb ring. The capacity in use is set from
+ *  Configuration.getMaxBreadcrumbs() on install, clamped to this bound.
+ *  Configures a default if not defined.
  */
 #define BUGSNAG_CRUMBS_MAX 30
 #endif
@@ -31,7 +34,7 @@
 /**
  * Version of the bugsnag_report struct. Serialized to report header.
  */
-#define BUGSNAG_REPORT_VERSION 2
+#define BUGSNAG_REPORT_VERSION 3
 
 #define BUGSNAG_USER_INFO_LEN 64
 #ifdef __cplusplus
@@ -293,6 +296,11 @@ typedef struct {
   char session_start[33];
   int handled_events;
   int unhandled_events;
+  /**
+   * The number of breadcrumbs retained before the oldest is replaced. Must
+   * not exceed BUGSNAG_CRUMBS_MAX.
+   */
+  int crumb_capacity;
 } bugsnag_report;
 
 void bugsnag_report_add_metadata_double(bugsnag_report *report, char *section,
@@ -304,11 +312,13 @@ void bugsnag_report_add_metadata_bool(bugsnag_report *report, char *section,
 void bugsnag_report_add_breadcrumb(bugsnag_report *report,
                                    bugsnag_breadcrumb *crumb);
 void bugsnag_report_clear_breadcrumbs(bugsnag_report *report);
+void bugsnag_report_set_crumb_capacity(bugsnag_report *report, int capacity);
 void bugsnag_report_remove_metadata(bugsnag_report *report, char *section,
                                     char *name);
 void bugsnag_report_remove_metadata_tab(bugsnag_report *report, char *section);
 void bugsnag_report_set_context(bugsnag_report *report, char *value);
 void bugsnag_report_set_orientation(bugsnag_report *report, int value);
+const char *bsg_orientation_from_degrees(int orientation);
 void bugsnag_report_set_app_version(bugsnag_report *report, char *value);
 void bugsnag_report_set_build_uuid(bugsnag_report *report, char *value);
 void bugsnag_report_set_release_stage(bugsnag_report *report, char *value);
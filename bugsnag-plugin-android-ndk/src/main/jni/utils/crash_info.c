@@ -7,6 +7,14 @@ extern "C" {
 
 void bsg_populate_report_as(bsg_environment *env) {
   static time_t now;
+  static bsg_state_mirror snapshot;
+
+  if (env->state_mirror != NULL) {
+    bsg_state_mirror_read(env->state_mirror, &snapshot);
+    bsg_state_mirror_apply(&snapshot, &env->next_report,
+                           &env->foreground_start_time);
+  }
+  bsg_crumb_ring_snapshot(&env->crumb_ring, &env->next_report);
 
   env->next_report.device.time = time(&now);
   // Convert to milliseconds:
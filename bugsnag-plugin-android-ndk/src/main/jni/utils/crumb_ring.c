@@ -0,0 +1,96 @@
+#include "crumb_ring.h"
+
+#include <string.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+// The ring is used from a signal handler, so its atomics must never fall back
+// to the locks used by libatomic
+_Static_assert(__atomic_always_lock_free(sizeof(uint32_t), 0),
+               "crumb ring counters must be lock-free");
+
+/**
+ * Whether counter a is ahead of b, allowing for either having wrapped
+ */
+static inline bool bsg_crumb_seq_after(uint32_t a, uint32_t b) {
+  return (int32_t)(a - b) > 0;
+}
+
+void bsg_crumb_ring_init(bsg_crumb_ring *ring, int capacity) {
+  if (capacity < 0) {
+    capacity = 0;
+  } else if (capacity > BUGSNAG_CRUMBS_MAX) {
+    capacity = BUGSNAG_CRUMBS_MAX;
+  }
+  for (int i = 0; i < BUGSNAG_CRUMBS_MAX; i++) {
+    ring->slots[i].sequence = 0;
+  }
+  ring->capacity = capacity;
+  ring->clear_index = 0;
+  __atomic_store_n(&ring->head, 0, __ATOMIC_RELEASE);
+}
+
+bool bsg_crumb_ring_add(bsg_crumb_ring *ring, bugsnag_breadcrumb *crumb) {
+  if (ring->capacity <= 0) {
+    return false;
+  }
+  uint32_t index = __atomic_fetch_add(&ring->head, 1, __ATOMIC_ACQ_REL);
+  bsg_crumb_slot *slot = &ring->slots[index % ring->capacity];
+  uint32_t writing = index * 2 + 1;
+  uint32_t current = __atomic_load_n(&slot->sequence, __ATOMIC_ACQUIRE);
+
+  do {
+    // Another writer is using the slot, or a newer crumb has already
+    // replaced this one. Dropping the crumb avoids waiting on the other
+    // writer, which may be the thread a crash handler interrupted.
+    if ((current & 1) != 0 || bsg_crumb_seq_after(current, writing)) {
+      return false;
+    }
+  } while (!__atomic_compare_exchange_n(&slot->sequence, &current, writing,
+                                        false, __ATOMIC_ACQUIRE,
+                                        __ATOMIC_ACQUIRE));
+
+  memcpy(&slot->crumb, crumb, sizeof(bugsnag_breadcrumb));
+  __atomic_store_n(&slot->sequence, writing + 1, __ATOMIC_RELEASE);
+  return true;
+}
+
+void bsg_crumb_ring_clear(bsg_crumb_ring *ring) {
+  uint32_t head = __atomic_load_n(&ring->head, __ATOMIC_ACQUIRE);
+  __atomic_store_n(&ring->clear_index, head, __ATOMIC_RELEASE);
+}
+
+void bsg_crumb_ring_snapshot(bsg_crumb_ring *ring, bugsnag_report *report) {
+  uint32_t head = __atomic_load_n(&ring->head, __ATOMIC_ACQUIRE);
+  uint32_t start = __atomic_load_n(&ring->clear_index, __ATOMIC_ACQUIRE);
+  uint32_t capacity = (uint32_t)ring->capacity;
+  if (head - start > capacity) {
+    start = head - capacity;
+  }
+  report->crumb_capacity = ring->capacity;
+  report->crumb_first_index = 0;
+  int count = 0;
+
+  for (uint32_t index = start; index != head; index++) {
+    bsg_crumb_slot *slot = &ring->slots[index % capacity];
+    uint32_t expected = index * 2 + 2;
+
+    if (__atomic_load_n(&slot->sequence, __ATOMIC_ACQUIRE) != expected) {
+      continue; // mid-write, or the writer gave up the slot
+    }
+    memcpy(&report->breadcrumbs[count], &slot->crumb,
+           sizeof(bugsnag_breadcrumb));
+    __atomic_thread_fence(__ATOMIC_ACQUIRE);
+
+    if (__atomic_load_n(&slot->sequence, __ATOMIC_RELAXED) == expected) {
+      count++; // otherwise the copy was torn by a newer writer
+    }
+  }
+  report->crumb_count = count;
+}
+
+#ifdef __cplusplus
+}
+#endif
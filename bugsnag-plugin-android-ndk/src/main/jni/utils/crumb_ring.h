@@ -0,0 +1,86 @@
+/**
+ * Lock-free storage for breadcrumbs which is safe to read from a signal handler
+ */
+#ifndef BUGSNAG_UTILS_CRUMB_RING_H
+#define BUGSNAG_UTILS_CRUMB_RING_H
+
+#include <stdint.h>
+
+#include "../report.h"
+#include "build.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * A breadcrumb slot, guarded by its own sequence counter. While the crumb at
+ * ring index n is being written the sequence is 2n + 1, and once complete it
+ * is 2n + 2, so a reader can tell both whether a slot is stable and which
+ * crumb it holds.
+ *
+ * Counters are 32 bits wide so that they are lock-free on every supported ABI,
+ * including armeabi and x86. They are compared in a way which allows for
+ * wrapping, although crumbs may be dropped from the snapshot once when the
+ * ring index wraps if the capacity is not a power of two.
+ */
+typedef struct {
+  uint32_t sequence;
+  bugsnag_breadcrumb crumb;
+} bsg_crumb_slot;
+
+/**
+ * A ring of breadcrumbs which any number of threads can add to without
+ * locking. Each writer claims the next ring index with an atomic increment,
+ * so producers never wait on one another. The oldest crumbs are overwritten
+ * once the capacity is reached.
+ */
+typedef struct {
+  /**
+   * The number of ring indices claimed by writers
+   */
+  uint32_t head;
+  /**
+   * Ring indices below this value were removed by a call to clear
+   */
+  uint32_t clear_index;
+  /**
+   * The number of slots in use. Must not exceed BUGSNAG_CRUMBS_MAX.
+   */
+  int capacity;
+  bsg_crumb_slot slots[BUGSNAG_CRUMBS_MAX];
+} bsg_crumb_ring;
+
+/**
+ * Reset a ring to hold up to capacity breadcrumbs. Must not be called while
+ * other threads are using the ring.
+ */
+void bsg_crumb_ring_init(bsg_crumb_ring *ring, int capacity);
+
+/**
+ * Add a breadcrumb, replacing the oldest if the ring is full.
+ *
+ * @return false if the crumb was dropped, either because the ring has no
+ * capacity or because a concurrent writer holds its slot
+ */
+bool bsg_crumb_ring_add(bsg_crumb_ring *ring,
+                        bugsnag_breadcrumb *crumb) __asyncsafe;
+
+/**
+ * Remove all breadcrumbs. Writes in progress may still appear afterwards if
+ * they claimed a ring index before the clear.
+ */
+void bsg_crumb_ring_clear(bsg_crumb_ring *ring) __asyncsafe;
+
+/**
+ * Copy the breadcrumbs in the ring to a report, oldest first. Slots which are
+ * mid-write are skipped rather than waited on, so this is safe to call from a
+ * crash handler which interrupted a writer.
+ */
+void bsg_crumb_ring_snapshot(bsg_crumb_ring *ring,
+                             bugsnag_report *report) __asyncsafe;
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,100 @@
+#include "metadata_decoder.h"
+
+#include <string.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+typedef struct {
+  const uint8_t *buf;
+  size_t len;
+  size_t pos;
+} bsg_metadata_reader;
+
+static bool bsg_read_bytes(bsg_metadata_reader *reader, void *dst,
+                           size_t count) {
+  if (reader->len - reader->pos < count) {
+    return false;
+  }
+  memcpy(dst, reader->buf + reader->pos, count);
+  reader->pos += count;
+  return true;
+}
+
+/**
+ * Read a length-prefixed string into dst, which is always null-terminated
+ */
+static bool bsg_read_string(bsg_metadata_reader *reader, char *dst,
+                            size_t dst_size) {
+  uint8_t length;
+  if (!bsg_read_bytes(reader, &length, sizeof(length)) ||
+      length >= dst_size) {
+    return false;
+  }
+  dst[length] = '\0';
+  return bsg_read_bytes(reader, dst, length);
+}
+
+static bool bsg_read_value(bsg_metadata_reader *reader,
+                           bsg_metadata_value *value) {
+  uint8_t type;
+  if (!bsg_read_bytes(reader, &type, sizeof(type)) ||
+      !bsg_read_string(reader, value->section, sizeof(value->section)) ||
+      !bsg_read_string(reader, value->name, sizeof(value->name))) {
+    return false;
+  }
+  switch (type) {
+  case BSG_BOOL_VALUE: {
+    uint8_t bool_value;
+    if (!bsg_read_bytes(reader, &bool_value, sizeof(bool_value))) {
+      return false;
+    }
+    value->bool_value = bool_value != 0;
+    break;
+  }
+  case BSG_CHAR_VALUE:
+    if (!bsg_read_string(reader, value->char_value,
+                         sizeof(value->char_value))) {
+      return false;
+    }
+    break;
+  case BSG_NUMBER_VALUE:
+    if (!bsg_read_bytes(reader, &value->double_value,
+                        sizeof(value->double_value))) {
+      return false;
+    }
+    break;
+  default:
+    return false;
+  }
+  value->type = (bsg_metadata_t)type;
+  return true;
+}
+
+bool bsg_decode_metadata(const uint8_t *buf, size_t len,
+                         bugsnag_report *report) {
+  bsg_metadata_reader reader = {.buf = buf, .len = len, .pos = 0};
+  uint16_t count;
+  report->metadata.value_count = 0;
+
+  if (buf == NULL || !bsg_read_bytes(&reader, &count, sizeof(count))) {
+    return false;
+  }
+  if (count > BUGSNAG_METADATA_MAX) {
+    count = BUGSNAG_METADATA_MAX;
+  }
+  for (int i = 0; i < count; i++) {
+    bsg_metadata_value *value = &report->metadata.values[i];
+    if (!bsg_read_value(&reader, value)) {
+      value->type = BSG_NONE_VALUE;
+      return false;
+    }
+    report->metadata.value_count = i + 1;
+  }
+  return true;
+}
+
+#ifdef __cplusplus
+}
+#endif
@@ -0,0 +1,29 @@
+/**
+ * Decoding of metadata serialized by NativeMetadataEncoder.java
+ */
+#ifndef BUGSNAG_UTILS_METADATA_DECODER_H
+#define BUGSNAG_UTILS_METADATA_DECODER_H
+
+#include <stddef.h>
+#include <stdint.h>
+
+#include "../report.h"
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * Replace the metadata of a report with the contents of an encoded buffer.
+ * Decoding stops at the first malformed entry, retaining any values read up to
+ * that point.
+ *
+ * @return true if the buffer was decoded in full
+ */
+bool bsg_decode_metadata(const uint8_t *buf, size_t len,
+                         bugsnag_report *report);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -7,6 +7,11 @@
 extern "C" {
 #endif
 
+/**
+ * The fixed number of breadcrumbs stored by v1 and v2 reports
+ */
+#define BUGSNAG_CRUMBS_MAX_V2 30
+
 typedef struct {
     bsg_library notifier;
     bsg_app_info app;
@@ -19,7 +24,7 @@ typedef struct {
     // Breadcrumbs are a ring; the first index moves as the
     // structure is filled and replaced.
     int crumb_first_index;
-    bugsnag_breadcrumb breadcrumbs[BUGSNAG_CRUMBS_MAX];
+    bugsnag_breadcrumb breadcrumbs[BUGSNAG_CRUMBS_MAX_V2];
 
     char context[64];
     bsg_severity_t severity;
@@ -29,6 +34,29 @@ typedef struct {
     int handled_events;
 } bugsnag_report_v1;
 
+typedef struct {
+    bsg_library notifier;
+    bsg_app_info app;
+    bsg_device_info device;
+    bsg_user user;
+    bsg_exception exception;
+    bugsnag_metadata metadata;
+
+    int crumb_count;
+    // Breadcrumbs are a ring; the first index moves as the
+    // structure is filled and replaced.
+    int crumb_first_index;
+    bugsnag_breadcrumb breadcrumbs[BUGSNAG_CRUMBS_MAX_V2];
+
+    char context[64];
+    bsg_severity_t severity;
+
+    char session_id[33];
+    char session_start[33];
+    int handled_events;
+    int unhandled_events;
+} bugsnag_report_v2;
+
 #ifdef __cplusplus
 }
 #endif
@@ -1,6 +1,7 @@
 #include "serializer.h"
 
 #include <fcntl.h>
+#include <stddef.h>
 #include <parson/parson.h>
 #include <report.h>
 #include <stdio.h>
@@ -53,9 +54,9 @@ bugsnag_report_v1 *bsg_report_v1_read(int fd) {
     return report;
 }
 
-bugsnag_report *bsg_report_v2_read(int fd) {
-    size_t report_size = sizeof(bugsnag_report);
-    bugsnag_report *report = malloc(report_size);
+bugsnag_report_v2 *bsg_report_v2_read(int fd) {
+    size_t report_size = sizeof(bugsnag_report_v2);
+    bugsnag_report_v2 *report = malloc(report_size);
 
     ssize_t len = read(fd, report, report_size);
     if (len != report_size) {
@@ -65,6 +66,111 @@ bugsnag_report *bsg_report_v2_read(int fd) {
     return report;
 }
 
+/**
+ * Reads or writes a region of a report between two offsets
+ */
+static bool bsg_report_read_range(int fd, bugsnag_report *report,
+                                  size_t start, size_t end) {
+  size_t length = end - start;
+  ssize_t len = read(fd, (char *)report + start, length);
+  return len == length;
+}
+
+static bool bsg_report_write_range(int fd, bugsnag_report *report,
+                                   size_t start, size_t end) {
+  size_t length = end - start;
+  ssize_t len = write(fd, (char *)report + start, length);
+  return len == length;
+}
+
+#define BSG_OFFSET_END(type, member)                                           \
+  (offsetof(type, member) + sizeof(((type *)0)->member))
+
+/**
+ * Reads a v3 report, which contains the report struct with unused stackframes,
+ * metadata values and breadcrumbs omitted. Counts are validated before being
+ * used to size the following reads, so a corrupted file cannot overflow the
+ * report.
+ */
+bugsnag_report *bsg_report_v3_read(int fd) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  if (report == NULL) {
+    return NULL;
+  }
+  size_t frames_start = offsetof(bugsnag_report, exception.stacktrace);
+  if (!bsg_report_read_range(fd, report, 0, frames_start) ||
+      report->exception.frame_count < 0 ||
+      report->exception.frame_count > BUGSNAG_FRAMES_MAX ||
+      !bsg_report_read_range(
+          fd, report, frames_start,
+          frames_start + sizeof(bsg_stackframe) * report->exception.frame_count)) {
+    free(report);
+    return NULL;
+  }
+
+  size_t values_start = offsetof(bugsnag_report, metadata.values);
+  if (!bsg_report_read_range(fd, report,
+                             BSG_OFFSET_END(bugsnag_report, exception),
+                             values_start) ||
+      report->metadata.value_count < 0 ||
+      report->metadata.value_count > BUGSNAG_METADATA_MAX ||
+      !bsg_report_read_range(
+          fd, report, values_start,
+          values_start +
+              sizeof(bsg_metadata_value) * report->metadata.value_count)) {
+    free(report);
+    return NULL;
+  }
+
+  size_t crumbs_start = offsetof(bugsnag_report, breadcrumbs);
+  if (!bsg_report_read_range(fd, report,
+                             BSG_OFFSET_END(bugsnag_report, metadata),
+                             crumbs_start) ||
+      report->crumb_count < 0 || report->crumb_count > BUGSNAG_CRUMBS_MAX ||
+      !bsg_report_read_range(
+          fd, report, crumbs_start,
+          crumbs_start + sizeof(bugsnag_breadcrumb) * report->crumb_count) ||
+      !bsg_report_read_range(fd, report,
+                             BSG_OFFSET_END(bugsnag_report, breadcrumbs),
+                             sizeof(bugsnag_report))) {
+    free(report);
+    return NULL;
+  }
+
+  if (report->crumb_capacity < report->crumb_count ||
+      report->crumb_capacity > BUGSNAG_CRUMBS_MAX ||
+      report->crumb_first_index < 0 ||
+      (report->crumb_count > 0 &&
+       report->crumb_first_index >= report->crumb_count)) {
+    free(report);
+    return NULL;
+  }
+  return report;
+}
+
+/**
+ * Copies the fields common to all report versions from an older report
+ */
+#define BSG_MIGRATE_REPORT(report, old_report)                                 \
+  do {                                                                         \
+    (report)->notifier = (old_report)->notifier;                               \
+    (report)->app = (old_report)->app;                                         \
+    (report)->device = (old_report)->device;                                   \
+    (report)->user = (old_report)->user;                                       \
+    (report)->exception = (old_report)->exception;                             \
+    (report)->metadata = (old_report)->metadata;                               \
+    (report)->crumb_count = (old_report)->crumb_count;                         \
+    (report)->crumb_first_index = (old_report)->crumb_first_index;             \
+    (report)->crumb_capacity = BUGSNAG_CRUMBS_MAX_V2;                          \
+    memcpy(&(report)->breadcrumbs, (old_report)->breadcrumbs,                  \
+           sizeof(bugsnag_breadcrumb) * BUGSNAG_CRUMBS_MAX_V2);                \
+    strcpy((report)->context, (old_report)->context);                          \
+    (report)->severity = (old_report)->severity;                               \
+    strcpy((report)->session_id, (old_report)->session_id);                    \
+    strcpy((report)->session_start, (old_report)->session_start);              \
+    (report)->handled_events = (old_report)->handled_events;                   \
+  } while (0)
+
 bugsnag_report *bsg_report_read(int fd) {
   bsg_report_header *header = bsg_report_header_read(fd);
   if (header == NULL) {
@@ -80,31 +186,22 @@ bugsnag_report *bsg_report_read(int fd) {
       bugsnag_report_v1 *report_v1 = bsg_report_v1_read(fd);
 
       if (report_v1 != NULL) {
-          report = malloc(sizeof(bugsnag_report));
-
-          report->notifier = report_v1->notifier;
-          report->app = report_v1->app;
-          report->device = report_v1->device;
-          report->user = report_v1->user;
-          report->exception = report_v1->exception;
-          report->metadata = report_v1->metadata;
-          report->crumb_count = report_v1->crumb_count;
-          report->crumb_first_index = report_v1->crumb_first_index;
-
-          size_t breadcrumb_size = sizeof(bugsnag_breadcrumb) * BUGSNAG_CRUMBS_MAX;
-          memcpy(&report->breadcrumbs, report_v1->breadcrumbs, breadcrumb_size);
-
-          strcpy(report->context, report_v1->context);
-          report->severity = report_v1->severity;
-          strcpy(report->session_id, report_v1->session_id);
-          strcpy(report->session_start, report_v1->session_start);
-          report->handled_events = report_v1->handled_events;
+          report = calloc(1, sizeof(bugsnag_report));
+          BSG_MIGRATE_REPORT(report, report_v1);
           report->unhandled_events = 1;
-
           free(report_v1);
       }
+  } else if (report_version == 2) { // v2 wrote a fixed number of crumbs
+      bugsnag_report_v2 *report_v2 = bsg_report_v2_read(fd);
+
+      if (report_v2 != NULL) {
+          report = calloc(1, sizeof(bugsnag_report));
+          BSG_MIGRATE_REPORT(report, report_v2);
+          report->unhandled_events = report_v2->unhandled_events;
+          free(report_v2);
+      }
   } else {
-      report = bsg_report_v2_read(fd);
+      report = bsg_report_v3_read(fd);
   }
   return report;
 }
@@ -126,14 +223,57 @@ bool bsg_report_header_write(bsg_report_header *header, int fd) {
   return len == sizeof(bsg_report_header);
 }
 
+/**
+ * Writes the report struct, skipping stackframes, metadata values and
+ * breadcrumbs beyond the number in use. For a typical crash this is a small
+ * fraction of sizeof(bugsnag_report).
+ */
 bool bsg_report_write(bsg_report_header *header, bugsnag_report *report,
                       int fd) {
   if (!bsg_report_header_write(header, fd)) {
     return false;
   }
 
-  ssize_t len = write(fd, report, sizeof(bugsnag_report));
-  return len == sizeof(bugsnag_report);
+  ssize_t frame_count = report->exception.frame_count;
+  if (frame_count < 0) {
+    frame_count = 0;
+  } else if (frame_count > BUGSNAG_FRAMES_MAX) {
+    frame_count = BUGSNAG_FRAMES_MAX;
+  }
+  report->exception.frame_count = frame_count;
+  int value_count = report->metadata.value_count;
+  if (value_count < 0) {
+    value_count = 0;
+  } else if (value_count > BUGSNAG_METADATA_MAX) {
+    value_count = BUGSNAG_METADATA_MAX;
+  }
+  report->metadata.value_count = value_count;
+  if (report->crumb_count < 0 || report->crumb_count > report->crumb_capacity) {
+    bugsnag_report_clear_breadcrumbs(report);
+  }
+
+  size_t frames_start = offsetof(bugsnag_report, exception.stacktrace);
+  size_t values_start = offsetof(bugsnag_report, metadata.values);
+  size_t crumbs_start = offsetof(bugsnag_report, breadcrumbs);
+  return bsg_report_write_range(fd, report, 0, frames_start) &&
+         bsg_report_write_range(
+             fd, report, frames_start,
+             frames_start + sizeof(bsg_stackframe) * frame_count) &&
+         bsg_report_write_range(fd, report,
+                                BSG_OFFSET_END(bugsnag_report, exception),
+                                values_start) &&
+         bsg_report_write_range(
+             fd, report, values_start,
+             values_start + sizeof(bsg_metadata_value) * value_count) &&
+         bsg_report_write_range(fd, report,
+                                BSG_OFFSET_END(bugsnag_report, metadata),
+                                crumbs_start) &&
+         bsg_report_write_range(
+             fd, report, crumbs_start,
+             crumbs_start + sizeof(bugsnag_breadcrumb) * report->crumb_count) &&
+         bsg_report_write_range(fd, report,
+                                BSG_OFFSET_END(bugsnag_report, breadcrumbs),
+                                sizeof(bugsnag_report));
 }
 
 const char *bsg_crumb_type_string(bsg_breadcrumb_t type) {
@@ -350,7 +490,7 @@ void bsg_serialize_breadcrumbs(const bugsnag_report *report, JSON_Array *crumbs)
       }
 
       current_index++;
-      if (current_index == BUGSNAG_CRUMBS_MAX) {
+      if (current_index >= report->crumb_capacity) {
         current_index = 0;
       }
     }
@@ -391,3 +531,27 @@ char *bsg_serialize_report_to_json_string(bugsnag_report *report) {
   }
   return serialized_string;
 }
+
+bool bsg_serialize_report_to_json_file(bugsnag_report *report,
+                                       const char *filepath) {
+  char *payload = bsg_serialize_report_to_json_string(report);
+  if (payload == NULL) {
+    return false;
+  }
+  bool success = false;
+  int fd = open(filepath, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+  if (fd != -1) {
+    size_t length = strlen(payload);
+    size_t written = 0;
+    while (written < length) {
+      ssize_t len = write(fd, payload + written, length - written);
+      if (len <= 0) {
+        break;
+      }
+      written += len;
+    }
+    success = close(fd) == 0 && written == length;
+  }
+  json_free_serialized_string(payload);
+  return success;
+}
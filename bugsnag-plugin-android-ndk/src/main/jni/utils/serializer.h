@@ -17,6 +17,14 @@ bool bsg_serialize_report_to_file(bsg_environment *env) __asyncsafe;
 
 bugsnag_report *bsg_deserialize_report_from_file(char *filepath);
 
+/**
+ * Write a report as an event JSON payload, replacing any existing file
+ *
+ * @return true if the complete payload was written
+ */
+bool bsg_serialize_report_to_json_file(bugsnag_report *report,
+                                       const char *filepath);
+
 void bsg_serialize_context(const bugsnag_report *report, JSON_Object *event);
 void bsg_serialize_handled_state(const bugsnag_report *report, JSON_Object *event);
 void bsg_serialize_app(const bsg_app_info app, JSON_Object *event);
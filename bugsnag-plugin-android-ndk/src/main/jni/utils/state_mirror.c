@@ -0,0 +1,113 @@
+#include "state_mirror.h"
+
+#include <string.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * Copy a string of at most dst_size - 1 bytes, always null-terminating dst.
+ * The source may be mid-write so its terminator is not relied upon.
+ */
+static void bsg_state_mirror_copy_str(char *dst, const char *src,
+                                      size_t dst_size) {
+  size_t i = 0;
+  for (; i < dst_size - 1 && src[i] != '\0'; i++) {
+    dst[i] = src[i];
+  }
+  dst[i] = '\0';
+}
+
+void bsg_state_mirror_init(bsg_state_mirror *mirror, bugsnag_report *report,
+                           time_t foreground_start_time) {
+  __atomic_store_n(&mirror->sequence, 1, __ATOMIC_RELEASE);
+  mirror->orientation = BSG_STATE_MIRROR_ORIENTATION_UNSET;
+  mirror->handled_events = report->handled_events;
+  mirror->unhandled_events = report->unhandled_events;
+  mirror->foreground_start_time = (int64_t)foreground_start_time;
+  mirror->in_foreground = (int8_t)report->app.in_foreground;
+  mirror->low_memory = (int8_t)report->app.low_memory;
+  mirror->left_foreground = 0;
+  bsg_state_mirror_copy_str(mirror->context, report->context,
+                            sizeof(mirror->context));
+  bsg_state_mirror_copy_str(mirror->user_id, report->user.id,
+                            sizeof(mirror->user_id));
+  bsg_state_mirror_copy_str(mirror->user_name, report->user.name,
+                            sizeof(mirror->user_name));
+  bsg_state_mirror_copy_str(mirror->user_email, report->user.email,
+                            sizeof(mirror->user_email));
+  bsg_state_mirror_copy_str(mirror->app_version, report->app.version,
+                            sizeof(mirror->app_version));
+  bsg_state_mirror_copy_str(mirror->release_stage, report->app.release_stage,
+                            sizeof(mirror->release_stage));
+  bsg_state_mirror_copy_str(mirror->build_uuid, report->app.build_uuid,
+                            sizeof(mirror->build_uuid));
+  bsg_state_mirror_copy_str(mirror->active_screen, report->app.active_screen,
+                            sizeof(mirror->active_screen));
+  bsg_state_mirror_copy_str(mirror->session_id, report->session_id,
+                            sizeof(mirror->session_id));
+  bsg_state_mirror_copy_str(mirror->session_start, report->session_start,
+                            sizeof(mirror->session_start));
+  __atomic_store_n(&mirror->sequence, 2, __ATOMIC_RELEASE);
+}
+
+bool bsg_state_mirror_read(bsg_state_mirror *mirror,
+                           bsg_state_mirror *snapshot) {
+  for (int attempt = 0; attempt < BSG_STATE_MIRROR_READ_ATTEMPTS; attempt++) {
+    int32_t start = __atomic_load_n(&mirror->sequence, __ATOMIC_ACQUIRE);
+    memcpy(snapshot, mirror, sizeof(bsg_state_mirror));
+    __atomic_thread_fence(__ATOMIC_ACQUIRE);
+    int32_t end = __atomic_load_n(&mirror->sequence, __ATOMIC_RELAXED);
+
+    if ((start & 1) == 0 && start == end) {
+      return true;
+    }
+  }
+  // A writer is stuck mid-update, most likely because it is the crashing
+  // thread. The last copy is still usable as every string is re-terminated
+  // when applied.
+  return false;
+}
+
+void bsg_state_mirror_apply(bsg_state_mirror *snapshot, bugsnag_report *report,
+                            time_t *foreground_start_time) {
+  if (snapshot->orientation != BSG_STATE_MIRROR_ORIENTATION_UNSET) {
+    bsg_state_mirror_copy_str(
+        report->device.orientation,
+        bsg_orientation_from_degrees(snapshot->orientation),
+        sizeof(report->device.orientation));
+  }
+  report->handled_events = snapshot->handled_events;
+  report->unhandled_events = snapshot->unhandled_events;
+  report->app.in_foreground = snapshot->in_foreground != 0;
+  report->app.low_memory = snapshot->low_memory != 0;
+  *foreground_start_time = (time_t)snapshot->foreground_start_time;
+  if (snapshot->left_foreground) {
+    report->app.duration_in_foreground_ms_offset = 0;
+  }
+  bsg_state_mirror_copy_str(report->context, snapshot->context,
+                            sizeof(report->context));
+  bsg_state_mirror_copy_str(report->user.id, snapshot->user_id,
+                            sizeof(report->user.id));
+  bsg_state_mirror_copy_str(report->user.name, snapshot->user_name,
+                            sizeof(report->user.name));
+  bsg_state_mirror_copy_str(report->user.email, snapshot->user_email,
+                            sizeof(report->user.email));
+  bsg_state_mirror_copy_str(report->app.version, snapshot->app_version,
+                            sizeof(report->app.version));
+  bsg_state_mirror_copy_str(report->app.release_stage, snapshot->release_stage,
+                            sizeof(report->app.release_stage));
+  bsg_state_mirror_copy_str(report->app.build_uuid, snapshot->build_uuid,
+                            sizeof(report->app.build_uuid));
+  bsg_state_mirror_copy_str(report->app.active_screen, snapshot->active_screen,
+                            sizeof(report->app.active_screen));
+  bsg_state_mirror_copy_str(report->session_id, snapshot->session_id,
+                            sizeof(report->session_id));
+  bsg_state_mirror_copy_str(report->session_start, snapshot->session_start,
+                            sizeof(report->session_start));
+}
+
+#ifdef __cplusplus
+}
+#endif
@@ -0,0 +1,91 @@
+/**
+ * Crash-relevant state shared with the Java layer through a direct ByteBuffer
+ */
+#ifndef BUGSNAG_UTILS_STATE_MIRROR_H
+#define BUGSNAG_UTILS_STATE_MIRROR_H
+
+#include <stdint.h>
+
+#include "../report.h"
+#include "build.h"
+
+#ifndef BSG_STATE_MIRROR_READ_ATTEMPTS
+/**
+ * Number of times a crash handler retries reading the mirror when a write is
+ * in progress before settling for a potentially torn copy
+ */
+#define BSG_STATE_MIRROR_READ_ATTEMPTS 128
+#endif
+
+/**
+ * Orientation value used until the Java layer reports a change, as the
+ * initial orientation is only known in its serialized form
+ */
+#define BSG_STATE_MIRROR_ORIENTATION_UNSET INT32_MIN
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/**
+ * Memory layout of the state buffer written by NativeStateMirror.java. The
+ * field offsets are duplicated on the Java side and must be kept in sync.
+ *
+ * Writers increment the sequence before and after each update, so an odd
+ * value means a write is in progress. Readers copy the fields and retry if
+ * the sequence was odd or changed during the copy.
+ */
+typedef struct {
+  int32_t sequence;
+  int32_t orientation;
+  int32_t handled_events;
+  int32_t unhandled_events;
+  /**
+   * Seconds since the epoch when the app last entered the foreground, or zero
+   */
+  int64_t foreground_start_time;
+  int8_t in_foreground;
+  int8_t low_memory;
+  /**
+   * Non-zero once the app has left the foreground since install
+   */
+  int8_t left_foreground;
+  int8_t padding[5];
+  char context[64];
+  char user_id[BUGSNAG_USER_INFO_LEN];
+  char user_name[BUGSNAG_USER_INFO_LEN];
+  char user_email[BUGSNAG_USER_INFO_LEN];
+  char app_version[32];
+  char release_stage[64];
+  char build_uuid[64];
+  char active_screen[64];
+  char session_id[33];
+  char session_start[33];
+} bsg_state_mirror;
+
+/**
+ * Copy the values held by a report into the mirror. Called once when the
+ * buffer is registered, before the Java layer starts writing to it.
+ */
+void bsg_state_mirror_init(bsg_state_mirror *mirror, bugsnag_report *report,
+                           time_t foreground_start_time);
+
+/**
+ * Take a consistent snapshot of the mirror, retrying a bounded number of
+ * times while a write is in progress.
+ *
+ * @return true if the snapshot was not torn by a concurrent write
+ */
+bool bsg_state_mirror_read(bsg_state_mirror *mirror,
+                           bsg_state_mirror *snapshot) __asyncsafe;
+
+/**
+ * Overwrite the mirrored fields of a report with a snapshot
+ */
+void bsg_state_mirror_apply(bsg_state_mirror *snapshot, bugsnag_report *report,
+                            time_t *foreground_start_time) __asyncsafe;
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -13,6 +13,9 @@
 SUITE(string_utils);
 SUITE(serialize_utils);
 SUITE(breadcrumbs);
+SUITE(crumb_ring);
+SUITE(state_mirror);
+SUITE(metadata_decoder);
 
 GREATEST_MAIN_DEFS();
 
@@ -24,6 +27,9 @@ JNIEXPORT int JNICALL Java_com_bugsnag_android_ndk_NativeCXXTest_run(
     RUN_SUITE(string_utils);
     RUN_SUITE(serialize_utils);
     RUN_SUITE(breadcrumbs);
+    RUN_SUITE(crumb_ring);
+    RUN_SUITE(state_mirror);
+    RUN_SUITE(metadata_decoder);
     GREATEST_MAIN_END();
 }
 
@@ -15,6 +15,7 @@ bugsnag_breadcrumb *init_breadcrumb(const char *name, const char *message, bsg_b
 
 TEST test_add_breadcrumb(void) {
   bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bugsnag_report_set_crumb_capacity(report, BUGSNAG_CRUMBS_MAX);
   bugsnag_breadcrumb *crumb = init_breadcrumb("stroll", "this is a drill.", BSG_CRUMB_USER);
   bugsnag_report_add_breadcrumb(report, crumb);
   ASSERT_EQ(1, report->crumb_count);
@@ -41,7 +42,7 @@ TEST test_add_breadcrumb(void) {
 
 TEST test_add_breadcrumbs_over_max(void) {
   bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
-  // HACK: assumes the max number of crumbs is 30
+  bugsnag_report_set_crumb_capacity(report, 30);
   for (int i=0; i < 64; i++) {
     char *format = malloc(sizeof(char) * 64);
     memset(format, 0, sizeof(char) * 64);
@@ -59,7 +60,7 @@ TEST test_add_breadcrumbs_over_max(void) {
   ASSERT(strcmp("crumb: 35", report->breadcrumbs[5].name) == 0);
   ASSERT(strcmp("crumb: 58", report->breadcrumbs[28].name) == 0);
   ASSERT(strcmp("crumb: 59", report->breadcrumbs[29].name) == 0);
-  ASSERT_EQ(BUGSNAG_CRUMBS_MAX, report->crumb_count);
+  ASSERT_EQ(30, report->crumb_count);
   ASSERT_EQ(4, report->crumb_first_index);
   free(report);
   PASS();
@@ -75,6 +76,7 @@ TEST test_clear_empty_breadcrumbs(void) {
 
 TEST test_clear_breadcrumbs(void) {
   bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bugsnag_report_set_crumb_capacity(report, BUGSNAG_CRUMBS_MAX);
   bugsnag_breadcrumb *crumb1 = init_breadcrumb("running!", "this is a drill.", BSG_CRUMB_USER);
   bugsnag_report_add_breadcrumb(report, crumb1);
   free(crumb1);
@@ -89,9 +91,39 @@ TEST test_clear_breadcrumbs(void) {
   PASS();
 }
 
+TEST test_add_breadcrumb_without_capacity(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bugsnag_breadcrumb *crumb = init_breadcrumb("stroll", "this is a drill.", BSG_CRUMB_USER);
+  bugsnag_report_add_breadcrumb(report, crumb);
+  ASSERT_EQ(0, report->crumb_count);
+  free(crumb);
+  free(report);
+  PASS();
+}
+
+TEST test_set_crumb_capacity(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bugsnag_report_set_crumb_capacity(report, 500);
+  ASSERT_EQ(BUGSNAG_CRUMBS_MAX, report->crumb_capacity);
+  bugsnag_report_set_crumb_capacity(report, -1);
+  ASSERT_EQ(0, report->crumb_capacity);
+  bugsnag_report_set_crumb_capacity(report, 2);
+  for (int i = 0; i < 3; i++) {
+    bugsnag_breadcrumb *crumb = init_breadcrumb("stroll", "go go go", BSG_CRUMB_USER);
+    bugsnag_report_add_breadcrumb(report, crumb);
+    free(crumb);
+  }
+  ASSERT_EQ(2, report->crumb_count);
+  ASSERT_EQ(1, report->crumb_first_index);
+  free(report);
+  PASS();
+}
+
 SUITE(breadcrumbs) {
   RUN_TEST(test_add_breadcrumb);
   RUN_TEST(test_add_breadcrumbs_over_max);
   RUN_TEST(test_clear_empty_breadcrumbs);
   RUN_TEST(test_clear_breadcrumbs);
+  RUN_TEST(test_add_breadcrumb_without_capacity);
+  RUN_TEST(test_set_crumb_capacity);
 }
@@ -0,0 +1,192 @@
+#include <greatest/greatest.h>
+#include <pthread.h>
+#include <report.h>
+#include <utils/crumb_ring.h>
+
+#define CRUMB_RING_THREADS 4
+#define CRUMB_RING_ADDS 2000
+
+bugsnag_breadcrumb *init_breadcrumb(const char *name, const char *message, bsg_breadcrumb_t type);
+
+void add_numbered_crumbs(bsg_crumb_ring *ring, int start, int end) {
+  char name[32];
+  for (int i = start; i < end; i++) {
+    sprintf(name, "crumb: %d", i);
+    bugsnag_breadcrumb *crumb = init_breadcrumb(name, "go go go", BSG_CRUMB_USER);
+    bsg_crumb_ring_add(ring, crumb);
+    free(crumb);
+  }
+}
+
+TEST test_ring_add_and_snapshot(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 5);
+  add_numbered_crumbs(ring, 0, 3);
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(3, report->crumb_count);
+  ASSERT_EQ(0, report->crumb_first_index);
+  ASSERT_EQ(5, report->crumb_capacity);
+  ASSERT_STR_EQ("crumb: 0", report->breadcrumbs[0].name);
+  ASSERT_STR_EQ("crumb: 2", report->breadcrumbs[2].name);
+  ASSERT_STR_EQ("go go go", report->breadcrumbs[2].metadata[0].value);
+  free(ring);
+  free(report);
+  PASS();
+}
+
+TEST test_ring_overwrites_oldest(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 30);
+  add_numbered_crumbs(ring, 0, 64);
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(30, report->crumb_count);
+  ASSERT_STR_EQ("crumb: 34", report->breadcrumbs[0].name);
+  ASSERT_STR_EQ("crumb: 63", report->breadcrumbs[29].name);
+  free(ring);
+  free(report);
+  PASS();
+}
+
+TEST test_ring_without_capacity(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 0);
+  bugsnag_breadcrumb *crumb = init_breadcrumb("stroll", "go go go", BSG_CRUMB_USER);
+  ASSERT_FALSE(bsg_crumb_ring_add(ring, crumb));
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(0, report->crumb_count);
+  free(crumb);
+  free(ring);
+  free(report);
+  PASS();
+}
+
+TEST test_ring_clear(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 10);
+  add_numbered_crumbs(ring, 0, 4);
+  bsg_crumb_ring_clear(ring);
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(0, report->crumb_count);
+
+  add_numbered_crumbs(ring, 4, 6);
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(2, report->crumb_count);
+  ASSERT_STR_EQ("crumb: 4", report->breadcrumbs[0].name);
+  ASSERT_STR_EQ("crumb: 5", report->breadcrumbs[1].name);
+  free(ring);
+  free(report);
+  PASS();
+}
+
+TEST test_ring_skips_slot_mid_write(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 10);
+  add_numbered_crumbs(ring, 0, 3);
+  // simulate a writer interrupted while copying the second crumb
+  ring->slots[1].sequence = 3;
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(2, report->crumb_count);
+  ASSERT_STR_EQ("crumb: 0", report->breadcrumbs[0].name);
+  ASSERT_STR_EQ("crumb: 2", report->breadcrumbs[1].name);
+
+  // a writer which wraps around to the busy slot drops its crumb
+  add_numbered_crumbs(ring, 3, 12);
+  ASSERT_EQ(3, ring->slots[1].sequence);
+  free(ring);
+  free(report);
+  PASS();
+}
+
+TEST test_ring_index_wraps(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 8);
+  // start just short of the point where the 32-bit ring index wraps
+  ring->head = UINT32_MAX - 4;
+  ring->clear_index = ring->head;
+  for (uint32_t index = ring->head - 8; index != ring->head; index++) {
+    ring->slots[index % 8].sequence = index * 2 + 2;
+  }
+  add_numbered_crumbs(ring, 0, 10);
+  ASSERT_EQ(5, ring->head);
+
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(8, report->crumb_count);
+  ASSERT_STR_EQ("crumb: 2", report->breadcrumbs[0].name);
+  ASSERT_STR_EQ("crumb: 9", report->breadcrumbs[7].name);
+
+  bsg_crumb_ring_clear(ring);
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT_EQ(0, report->crumb_count);
+  free(ring);
+  free(report);
+  PASS();
+}
+
+typedef struct {
+  bsg_crumb_ring *ring;
+  int thread;
+} crumb_ring_producer;
+
+void *crumb_ring_produce(void *arg) {
+  crumb_ring_producer *producer = arg;
+  char name[32];
+  for (int i = 0; i < CRUMB_RING_ADDS; i++) {
+    sprintf(name, "%d:%d", producer->thread, i);
+    bugsnag_breadcrumb *crumb = init_breadcrumb(name, name, BSG_CRUMB_STATE);
+    bsg_crumb_ring_add(producer->ring, crumb);
+    free(crumb);
+  }
+  return NULL;
+}
+
+TEST test_ring_concurrent_producers(void) {
+  bsg_crumb_ring *ring = calloc(1, sizeof(bsg_crumb_ring));
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  bsg_crumb_ring_init(ring, 25);
+  pthread_t threads[CRUMB_RING_THREADS];
+  crumb_ring_producer producers[CRUMB_RING_THREADS];
+
+  for (int i = 0; i < CRUMB_RING_THREADS; i++) {
+    producers[i].ring = ring;
+    producers[i].thread = i;
+    pthread_create(&threads[i], NULL, crumb_ring_produce, &producers[i]);
+  }
+  for (int i = 0; i < CRUMB_RING_THREADS; i++) {
+    pthread_join(threads[i], NULL);
+  }
+
+  ASSERT_EQ(CRUMB_RING_THREADS * CRUMB_RING_ADDS, ring->head);
+  bsg_crumb_ring_snapshot(ring, report);
+  ASSERT(report->crumb_count > 0);
+  ASSERT(report->crumb_count <= 25);
+
+  // every crumb must be intact, with its name and metadata from one write
+  int last_index[CRUMB_RING_THREADS] = {-1, -1, -1, -1};
+  for (int i = 0; i < report->crumb_count; i++) {
+    bugsnag_breadcrumb *crumb = &report->breadcrumbs[i];
+    int thread, index;
+    ASSERT_EQ(2, sscanf(crumb->name, "%d:%d", &thread, &index));
+    ASSERT_STR_EQ(crumb->name, crumb->metadata[0].value);
+    ASSERT(index > last_index[thread]);
+    last_index[thread] = index;
+  }
+  free(ring);
+  free(report);
+  PASS();
+}
+
+SUITE(crumb_ring) {
+  RUN_TEST(test_ring_add_and_snapshot);
+  RUN_TEST(test_ring_overwrites_oldest);
+  RUN_TEST(test_ring_without_capacity);
+  RUN_TEST(test_ring_clear);
+  RUN_TEST(test_ring_skips_slot_mid_write);
+  RUN_TEST(test_ring_index_wraps);
+  RUN_TEST(test_ring_concurrent_producers);
+}
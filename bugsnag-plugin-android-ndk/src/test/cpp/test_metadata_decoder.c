@@ -0,0 +1,137 @@
+#include <greatest/greatest.h>
+#include <report.h>
+#include <stdlib.h>
+#include <string.h>
+#include <utils/metadata_decoder.h>
+
+/**
+ * NativeMetadataEncoder.encode() output for the map
+ * {"app": {"name": "Example", "debug": true}, "custom": {"ratio": 0.25}}
+ * in little-endian order. NativeMetadataEncoderTest checks that the encoder
+ * still produces these bytes.
+ */
+static const uint8_t encoded_metadata[] = {
+    0x03, 0x00,                                     // count
+    0x02, 0x03, 'a', 'p', 'p', 0x04, 'n', 'a', 'm', 'e', 0x07,
+    'E', 'x', 'a', 'm', 'p', 'l', 'e',              // app.name
+    0x01, 0x03, 'a', 'p', 'p', 0x05, 'd', 'e', 'b', 'u', 'g',
+    0x01,                                           // app.debug
+    0x03, 0x06, 'c', 'u', 's', 't', 'o', 'm', 0x05, 'r', 'a', 't', 'i', 'o',
+    0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0xd0, 0x3f, // custom.ratio
+};
+
+#define APP_DEBUG_TYPE_OFFSET 20
+#define CUSTOM_SECTION_LENGTH_OFFSET 33
+
+/**
+ * Decode a copy of the encoded metadata with one byte replaced
+ */
+static bool decode_modified(bugsnag_report *report, size_t offset,
+                            uint8_t byte) {
+  uint8_t buf[sizeof(encoded_metadata)];
+  memcpy(buf, encoded_metadata, sizeof(buf));
+  buf[offset] = byte;
+  return bsg_decode_metadata(buf, sizeof(buf), report);
+}
+
+TEST test_decode_encoded_metadata(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  ASSERT(bsg_decode_metadata(encoded_metadata, sizeof(encoded_metadata),
+                             report));
+  ASSERT_EQ(3, report->metadata.value_count);
+
+  bsg_metadata_value *name = &report->metadata.values[0];
+  ASSERT_EQ(BSG_CHAR_VALUE, name->type);
+  ASSERT_STR_EQ("app", name->section);
+  ASSERT_STR_EQ("name", name->name);
+  ASSERT_STR_EQ("Example", name->char_value);
+
+  bsg_metadata_value *debug = &report->metadata.values[1];
+  ASSERT_EQ(BSG_BOOL_VALUE, debug->type);
+  ASSERT_STR_EQ("debug", debug->name);
+  ASSERT(debug->bool_value);
+
+  bsg_metadata_value *ratio = &report->metadata.values[2];
+  ASSERT_EQ(BSG_NUMBER_VALUE, ratio->type);
+  ASSERT_STR_EQ("custom", ratio->section);
+  ASSERT_STR_EQ("ratio", ratio->name);
+  ASSERT_EQ(0.25, ratio->double_value);
+  free(report);
+  PASS();
+}
+
+TEST test_decode_empty_buffer(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  report->metadata.value_count = 5;
+  ASSERT_FALSE(bsg_decode_metadata(NULL, 0, report));
+  ASSERT_EQ(0, report->metadata.value_count);
+  ASSERT_FALSE(bsg_decode_metadata(encoded_metadata, 0, report));
+  ASSERT_EQ(0, report->metadata.value_count);
+  free(report);
+  PASS();
+}
+
+TEST test_decode_bad_type(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  ASSERT_FALSE(decode_modified(report, APP_DEBUG_TYPE_OFFSET, 0x09));
+
+  // values before the malformed entry are retained
+  ASSERT_EQ(1, report->metadata.value_count);
+  ASSERT_STR_EQ("Example", report->metadata.values[0].char_value);
+  ASSERT_EQ(BSG_NONE_VALUE, report->metadata.values[1].type);
+  free(report);
+  PASS();
+}
+
+TEST test_decode_length_past_end(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  // fits the section capacity, but extends past the end of the buffer
+  ASSERT_FALSE(decode_modified(report, CUSTOM_SECTION_LENGTH_OFFSET, 30));
+  ASSERT_EQ(2, report->metadata.value_count);
+  ASSERT_EQ(BSG_NONE_VALUE, report->metadata.values[2].type);
+  free(report);
+  PASS();
+}
+
+TEST test_decode_length_over_capacity(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  ASSERT_FALSE(decode_modified(report, CUSTOM_SECTION_LENGTH_OFFSET, 32));
+  ASSERT_EQ(2, report->metadata.value_count);
+  free(report);
+  PASS();
+}
+
+TEST test_decode_truncated(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  // ends part way through the app.name value
+  ASSERT_FALSE(bsg_decode_metadata(encoded_metadata, 16, report));
+  ASSERT_EQ(0, report->metadata.value_count);
+
+  // ends part way through the custom.ratio double
+  ASSERT_FALSE(bsg_decode_metadata(encoded_metadata,
+                                   sizeof(encoded_metadata) - 1, report));
+  ASSERT_EQ(2, report->metadata.value_count);
+  ASSERT_STR_EQ("debug", report->metadata.values[1].name);
+  free(report);
+  PASS();
+}
+
+TEST test_decode_count_exceeds_entries(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  ASSERT_FALSE(decode_modified(report, 0, 5));
+  ASSERT_EQ(3, report->metadata.value_count);
+  ASSERT_EQ(0.25, report->metadata.values[2].double_value);
+  ASSERT_EQ(BSG_NONE_VALUE, report->metadata.values[3].type);
+  free(report);
+  PASS();
+}
+
+SUITE(metadata_decoder) {
+  RUN_TEST(test_decode_encoded_metadata);
+  RUN_TEST(test_decode_empty_buffer);
+  RUN_TEST(test_decode_bad_type);
+  RUN_TEST(test_decode_length_past_end);
+  RUN_TEST(test_decode_length_over_capacity);
+  RUN_TEST(test_decode_truncated);
+  RUN_TEST(test_decode_count_exceeds_entries);
+}
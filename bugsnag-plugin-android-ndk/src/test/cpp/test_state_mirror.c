@@ -0,0 +1,99 @@
+#include <greatest/greatest.h>
+#include <report.h>
+#include <utils/state_mirror.h>
+
+bugsnag_report *init_mirrored_report() {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  strcpy(report->context, "MainActivity");
+  strcpy(report->user.id, "123");
+  strcpy(report->app.release_stage, "production");
+  strcpy(report->device.orientation, "portrait");
+  report->app.in_foreground = true;
+  report->app.duration_in_foreground_ms_offset = 500;
+  return report;
+}
+
+TEST test_mirror_init(void) {
+  bugsnag_report *report = init_mirrored_report();
+  bsg_state_mirror *mirror = calloc(1, sizeof(bsg_state_mirror));
+  bsg_state_mirror_init(mirror, report, 1500000000);
+  ASSERT_EQ(0, mirror->sequence % 2);
+  ASSERT_EQ(BSG_STATE_MIRROR_ORIENTATION_UNSET, mirror->orientation);
+  ASSERT_EQ(1500000000, mirror->foreground_start_time);
+  ASSERT_EQ(1, mirror->in_foreground);
+  ASSERT_STR_EQ("MainActivity", mirror->context);
+  ASSERT_STR_EQ("123", mirror->user_id);
+  ASSERT_STR_EQ("production", mirror->release_stage);
+  free(mirror);
+  free(report);
+  PASS();
+}
+
+TEST test_mirror_apply(void) {
+  bugsnag_report *report = init_mirrored_report();
+  bsg_state_mirror *mirror = calloc(1, sizeof(bsg_state_mirror));
+  bsg_state_mirror_init(mirror, report, 1500000000);
+  strcpy(mirror->context, "SettingsActivity");
+  strcpy(mirror->session_id, "f1ab");
+  mirror->orientation = 90;
+  mirror->in_foreground = 0;
+  mirror->left_foreground = 1;
+  mirror->foreground_start_time = 0;
+  mirror->handled_events = 2;
+
+  bsg_state_mirror snapshot;
+  time_t foreground_start_time = 1500000000;
+  ASSERT(bsg_state_mirror_read(mirror, &snapshot));
+  bsg_state_mirror_apply(&snapshot, report, &foreground_start_time);
+  ASSERT_STR_EQ("SettingsActivity", report->context);
+  ASSERT_STR_EQ("f1ab", report->session_id);
+  ASSERT_STR_EQ("landscape", report->device.orientation);
+  ASSERT_STR_EQ("123", report->user.id);
+  ASSERT_EQ(false, report->app.in_foreground);
+  ASSERT_EQ(0, report->app.duration_in_foreground_ms_offset);
+  ASSERT_EQ(0, foreground_start_time);
+  ASSERT_EQ(2, report->handled_events);
+  free(mirror);
+  free(report);
+  PASS();
+}
+
+TEST test_mirror_apply_unset_orientation(void) {
+  bugsnag_report *report = init_mirrored_report();
+  bsg_state_mirror *mirror = calloc(1, sizeof(bsg_state_mirror));
+  bsg_state_mirror_init(mirror, report, 0);
+
+  bsg_state_mirror snapshot;
+  time_t foreground_start_time = 0;
+  bsg_state_mirror_read(mirror, &snapshot);
+  bsg_state_mirror_apply(&snapshot, report, &foreground_start_time);
+  ASSERT_STR_EQ("portrait", report->device.orientation);
+  ASSERT_EQ(500, report->app.duration_in_foreground_ms_offset);
+  free(mirror);
+  free(report);
+  PASS();
+}
+
+TEST test_mirror_read_during_write(void) {
+  bugsnag_report *report = init_mirrored_report();
+  bsg_state_mirror *mirror = calloc(1, sizeof(bsg_state_mirror));
+  bsg_state_mirror_init(mirror, report, 0);
+  mirror->sequence++; // a writer which never finishes
+  memset(mirror->context, 'a', sizeof(mirror->context)); // unterminated
+
+  bsg_state_mirror snapshot;
+  time_t foreground_start_time = 0;
+  ASSERT_FALSE(bsg_state_mirror_read(mirror, &snapshot));
+  bsg_state_mirror_apply(&snapshot, report, &foreground_start_time);
+  ASSERT_EQ(sizeof(report->context) - 1, strlen(report->context));
+  free(mirror);
+  free(report);
+  PASS();
+}
+
+SUITE(state_mirror) {
+  RUN_TEST(test_mirror_init);
+  RUN_TEST(test_mirror_apply);
+  RUN_TEST(test_mirror_apply_unset_orientation);
+  RUN_TEST(test_mirror_read_during_write);
+}
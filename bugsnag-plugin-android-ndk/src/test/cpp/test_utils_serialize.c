@@ -1,6 +1,9 @@
 #include <greatest/greatest.h>
 #include <utils/serializer.h>
 #include <stdlib.h>
+#include <fcntl.h>
+#include <unistd.h>
+#include <sys/stat.h>
 #include <utils/migrate.h>
 
 #define SERIALIZE_TEST_FILE "/data/data/com.bugsnag.android.ndk.test/cache/foo.crash"
@@ -8,6 +11,7 @@
 bugsnag_breadcrumb *init_breadcrumb(const char *name, const char *message, bsg_breadcrumb_t type);
 
 void generate_basic_report(bugsnag_report *report) {
+  bugsnag_report_set_crumb_capacity(report, BUGSNAG_CRUMBS_MAX_V2);
   strcpy(report->context, "SomeActivity");
   strcpy(report->exception.name, "SIGBUS");
   strcpy(report->exception.message, "POSIX is serious about oncoming traffic");
@@ -49,10 +53,45 @@ void generate_basic_report(bugsnag_report *report) {
   strcpy(report->session_start, "2019-03-19T12:58:19+00:00");
 }
 
+/**
+ * Copies the fields shared by all report versions into an older report
+ */
+#define BSG_DOWNGRADE_REPORT(old_report, report)                               \
+  do {                                                                         \
+    (old_report)->notifier = (report)->notifier;                               \
+    (old_report)->app = (report)->app;                                         \
+    (old_report)->device = (report)->device;                                   \
+    (old_report)->user = (report)->user;                                       \
+    (old_report)->exception = (report)->exception;                             \
+    (old_report)->metadata = (report)->metadata;                               \
+    (old_report)->crumb_count = (report)->crumb_count;                         \
+    (old_report)->crumb_first_index = (report)->crumb_first_index;             \
+    memcpy((old_report)->breadcrumbs, (report)->breadcrumbs,                   \
+           sizeof((old_report)->breadcrumbs));                                 \
+    strcpy((old_report)->context, (report)->context);                          \
+    (old_report)->severity = (report)->severity;                               \
+    strcpy((old_report)->session_id, (report)->session_id);                    \
+    strcpy((old_report)->session_start, (report)->session_start);              \
+    (old_report)->handled_events = (report)->handled_events;                   \
+  } while (0)
+
 bugsnag_report_v1 *bsg_generate_report_v1(void) {
-  bugsnag_report_v1 *report = calloc(1, sizeof(bugsnag_report_v1));
-  generate_basic_report((bugsnag_report *) report);
-  return report;
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  generate_basic_report(report);
+  bugsnag_report_v1 *report_v1 = calloc(1, sizeof(bugsnag_report_v1));
+  BSG_DOWNGRADE_REPORT(report_v1, report);
+  free(report);
+  return report_v1;
+}
+
+bugsnag_report_v2 *bsg_generate_report_v2(void) {
+  bugsnag_report *report = calloc(1, sizeof(bugsnag_report));
+  generate_basic_report(report);
+  bugsnag_report_v2 *report_v2 = calloc(1, sizeof(bugsnag_report_v2));
+  BSG_DOWNGRADE_REPORT(report_v2, report);
+  report_v2->unhandled_events = 2;
+  free(report);
+  return report_v2;
 }
 
 bugsnag_report *bsg_generate_report(void) {
@@ -62,6 +101,23 @@ bugsnag_report *bsg_generate_report(void) {
   return report;
 }
 
+/**
+ * Writes a report file in the format used by an earlier version, where the
+ * whole report struct followed the header
+ */
+bool bsg_write_legacy_report(int version, void *report, size_t report_size) {
+  bsg_report_header header = {.version = version, .big_endian = 1};
+  strcpy(header.os_build, "macOS Sierra");
+  int fd = open(SERIALIZE_TEST_FILE, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+  if (fd == -1) {
+    return false;
+  }
+  bool success = write(fd, &header, sizeof(header)) == sizeof(header) &&
+                 write(fd, report, report_size) == report_size;
+  close(fd);
+  return success;
+}
+
 TEST test_report_to_file(void) {
   bsg_environment *env = malloc(sizeof(bsg_environment));
   env->report_header.version = 7;
@@ -97,14 +153,8 @@ TEST test_file_to_report(void) {
 }
 
 TEST test_report_v1_migration(void) {
-  bsg_environment *env = malloc(sizeof(bsg_environment));
-  env->report_header.version = 1;
-  env->report_header.big_endian = 1;
-  strcpy(env->report_header.os_build, "macOS Sierra");
   bugsnag_report_v1 *generated_report = bsg_generate_report_v1();
-  memcpy(&env->next_report, generated_report, sizeof(bugsnag_report_v1));
-  strcpy(env->next_report_path, SERIALIZE_TEST_FILE);
-  bsg_serialize_report_to_file(env);
+  ASSERT(bsg_write_legacy_report(1, generated_report, sizeof(bugsnag_report_v1)));
 
   bugsnag_report *report = bsg_deserialize_report_from_file(SERIALIZE_TEST_FILE);
   ASSERT(report != NULL);
@@ -112,6 +162,65 @@ TEST test_report_v1_migration(void) {
   ASSERT(strcmp("2019-03-19T12:58:19+00:00", report->session_start) == 0);
   ASSERT_EQ(1, report->handled_events);
   ASSERT_EQ(1, report->unhandled_events);
+  ASSERT_EQ(BUGSNAG_CRUMBS_MAX_V2, report->crumb_capacity);
+  ASSERT_EQ(2, report->crumb_count);
+
+  free(generated_report);
+  free(report);
+  PASS();
+}
+
+TEST test_report_v2_migration(void) {
+  bugsnag_report_v2 *generated_report = bsg_generate_report_v2();
+  ASSERT(bsg_write_legacy_report(2, generated_report, sizeof(bugsnag_report_v2)));
+
+  bugsnag_report *report = bsg_deserialize_report_from_file(SERIALIZE_TEST_FILE);
+  ASSERT(report != NULL);
+  ASSERT(strcmp("SomeActivity", report->context) == 0);
+  ASSERT(strcmp("f1ab", report->session_id) == 0);
+  ASSERT_EQ(1, report->handled_events);
+  ASSERT_EQ(2, report->unhandled_events);
+  ASSERT_EQ(BUGSNAG_CRUMBS_MAX_V2, report->crumb_capacity);
+  ASSERT_EQ(2, report->crumb_count);
+  ASSERT(strcmp("enable blasters", report->breadcrumbs[1].name) == 0);
+
+  free(generated_report);
+  free(report);
+  PASS();
+}
+
+TEST test_report_writes_used_capacity(void) {
+  bsg_environment *env = calloc(1, sizeof(bsg_environment));
+  env->report_header.version = BUGSNAG_REPORT_VERSION;
+  bugsnag_report *generated_report = bsg_generate_report();
+  memcpy(&env->next_report, generated_report, sizeof(bugsnag_report));
+  strcpy(env->next_report_path, SERIALIZE_TEST_FILE);
+  unlink(SERIALIZE_TEST_FILE);
+  ASSERT(bsg_serialize_report_to_file(env));
+
+  struct stat file_stat;
+  ASSERT_EQ(0, stat(SERIALIZE_TEST_FILE, &file_stat));
+  size_t unused_size =
+      sizeof(bsg_stackframe) * (BUGSNAG_FRAMES_MAX - 2) +
+      sizeof(bsg_metadata_value) * (BUGSNAG_METADATA_MAX - 4) +
+      sizeof(bugsnag_breadcrumb) * (BUGSNAG_CRUMBS_MAX - 2);
+  ASSERT_EQ(sizeof(bsg_report_header) + sizeof(bugsnag_report) - unused_size,
+            file_stat.st_size);
+
+  bugsnag_report *report = bsg_deserialize_report_from_file(SERIALIZE_TEST_FILE);
+  ASSERT(report != NULL);
+  ASSERT_EQ(2, report->exception.frame_count);
+  ASSERT_EQ(454379, report->exception.stacktrace[0].frame_address);
+  ASSERT(strcmp("makinBacon", report->exception.stacktrace[0].method) == 0);
+  ASSERT_EQ(342334, report->exception.stacktrace[1].frame_address);
+  ASSERT_EQ(4, report->metadata.value_count);
+  ASSERT(strcmp("counter", report->metadata.values[3].name) == 0);
+  ASSERT_EQ(2, report->crumb_count);
+  ASSERT_EQ(BUGSNAG_CRUMBS_MAX_V2, report->crumb_capacity);
+  ASSERT(strcmp("decrease torque", report->breadcrumbs[0].name) == 0);
+  ASSERT(strcmp("enable blasters", report->breadcrumbs[1].name) == 0);
+  ASSERT(strcmp("SomeActivity", report->context) == 0);
+  ASSERT_EQ(2, report->unhandled_events);
 
   free(generated_report);
   free(env);
@@ -119,6 +228,24 @@ TEST test_report_v1_migration(void) {
   PASS();
 }
 
+TEST test_report_truncated_file(void) {
+  bsg_environment *env = calloc(1, sizeof(bsg_environment));
+  env->report_header.version = BUGSNAG_REPORT_VERSION;
+  bugsnag_report *generated_report = bsg_generate_report();
+  memcpy(&env->next_report, generated_report, sizeof(bugsnag_report));
+  strcpy(env->next_report_path, SERIALIZE_TEST_FILE);
+  unlink(SERIALIZE_TEST_FILE);
+  ASSERT(bsg_serialize_report_to_file(env));
+  ASSERT_EQ(0, truncate(SERIALIZE_TEST_FILE, sizeof(bsg_report_header) + 1024));
+
+  bugsnag_report *report = bsg_deserialize_report_from_file(SERIALIZE_TEST_FILE);
+  ASSERT(report == NULL);
+
+  free(generated_report);
+  free(env);
+  PASS();
+}
+
 // helper function
 JSON_Value *bsg_generate_json(void) {
   bugsnag_report *report = bsg_generate_report();
@@ -218,6 +345,20 @@ TEST test_report_exception_to_json(void) {
   PASS();
 }
 
+TEST test_report_to_json_file(void) {
+  bugsnag_report *report = bsg_generate_report();
+  ASSERT(bsg_serialize_report_to_json_file(report, SERIALIZE_TEST_FILE));
+
+  JSON_Value *root_value = json_parse_file(SERIALIZE_TEST_FILE);
+  ASSERT(root_value != NULL);
+  JSON_Object *event = json_value_get_object(root_value);
+  ASSERT(strcmp("SomeActivity", json_object_get_string(event, "context")) == 0);
+  ASSERT_EQ(2, json_array_get_count(json_object_get_array(event, "breadcrumbs")));
+  json_value_free(root_value);
+  free(report);
+  PASS();
+}
+
 TEST test_report_breadcrumbs_to_json(void) {
   JSON_Value *root_value = bsg_generate_json();
   JSON_Object *event = json_value_get_object(root_value);
@@ -243,6 +384,9 @@ SUITE(serialize_utils) {
   RUN_TEST(test_report_to_file);
   RUN_TEST(test_file_to_report);
   RUN_TEST(test_report_v1_migration);
+  RUN_TEST(test_report_v2_migration);
+  RUN_TEST(test_report_writes_used_capacity);
+  RUN_TEST(test_report_truncated_file);
   RUN_TEST(test_session_handled_counts);
   RUN_TEST(test_report_context_to_json);
   RUN_TEST(test_report_app_info_to_json);
@@ -251,5 +395,6 @@ SUITE(serialize_utils) {
   RUN_TEST(test_report_custom_info_to_json);
   RUN_TEST(test_report_exception_to_json);
   RUN_TEST(test_report_breadcrumbs_to_json);
+  RUN_TEST(test_report_to_json_file);
 }
 
@@ -0,0 +1,135 @@
+package com.bugsnag.android.ndk
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+class NativeMetadataEncoderTest {
+
+    /**
+     * A decoded metadata value, mirroring bsg_metadata_value
+     */
+    private data class Value(val section: String, val name: String, val value: Any)
+
+    /**
+     * Decodes metadata in the same manner as bsg_decode_metadata
+     */
+    private fun decode(bytes: ByteArray): List<Value> {
+        val buf = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder())
+        val count = buf.short.toInt()
+        return (0 until count).map {
+            val type = buf.get().toInt()
+            val section = readString(buf)
+            val name = readString(buf)
+            val value: Any = when (type) {
+                NativeMetadataEncoder.TYPE_BOOL -> buf.get().toInt() != 0
+                NativeMetadataEncoder.TYPE_STRING -> readString(buf)
+                NativeMetadataEncoder.TYPE_NUMBER -> buf.double
+                else -> throw IllegalStateException("Unknown type $type")
+            }
+            Value(section, name, value)
+        }.also { assertEquals(0, buf.remaining()) }
+    }
+
+    private fun readString(buf: ByteBuffer): String {
+        val bytes = ByteArray(buf.get().toInt() and 0xFF)
+        buf.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    /**
+     * Concatenates byte values and UTF-8 strings
+     */
+    private fun bytes(vararg parts: Any): ByteArray {
+        return parts.flatMap { part ->
+            when (part) {
+                is String -> part.toByteArray(Charsets.UTF_8).toList()
+                else -> listOf((part as Int).toByte())
+            }
+        }.toByteArray()
+    }
+
+    /**
+     * The fixture decoded by test_metadata_decoder.c, which must be updated if this changes
+     */
+    @Test
+    fun encodeMatchesNativeFixture() {
+        val metadata = linkedMapOf<String, Any>(
+            "app" to linkedMapOf("name" to "Example", "debug" to true),
+            "custom" to linkedMapOf("ratio" to 0.25)
+        )
+        val fixture = bytes(
+            3, 0,
+            2, 3, "app", 4, "name", 7, "Example",
+            1, 3, "app", 5, "debug", 1,
+            3, 6, "custom", 5, "ratio", 0, 0, 0, 0, 0, 0, 0xd0, 0x3f
+        )
+        assertEquals(ByteOrder.LITTLE_ENDIAN, ByteOrder.nativeOrder())
+        assertArrayEquals(fixture, NativeMetadataEncoder.encode(metadata))
+    }
+
+    @Test
+    fun encodeEmpty() {
+        assertEquals(emptyList<Value>(), decode(NativeMetadataEncoder.encode(null)))
+        assertEquals(emptyList<Value>(), decode(NativeMetadataEncoder.encode(mapOf())))
+    }
+
+    @Test
+    fun encodeRoundTrip() {
+        val metadata = linkedMapOf<String, Any>(
+            "app" to linkedMapOf("name" to "Example", "debug" to true, "count" to 5),
+            "custom" to linkedMapOf("ratio" to 0.25, "enabled" to false, "long" to 9L)
+        )
+        val expected = listOf(
+            Value("app", "name", "Example"),
+            Value("app", "debug", true),
+            Value("app", "count", 5.0),
+            Value("custom", "ratio", 0.25),
+            Value("custom", "enabled", false),
+            Value("custom", "long", 9.0)
+        )
+        assertEquals(expected, decode(NativeMetadataEncoder.encode(metadata)))
+    }
+
+    @Test
+    fun encodeSkipsUnsupportedValues() {
+        val metadata = linkedMapOf<String, Any>(
+            "section" to linkedMapOf(
+                "list" to listOf(1, 2),
+                "nested" to mapOf("a" to "b"),
+                "valid" to "yes"
+            ),
+            "notASection" to "value"
+        )
+        assertEquals(listOf(Value("section", "valid", "yes")),
+            decode(NativeMetadataEncoder.encode(metadata)))
+    }
+
+    @Test
+    fun encodeTruncatesToNativeCapacity() {
+        val metadata = mapOf<String, Any>(
+            "s".repeat(40) to mapOf("n".repeat(40) to "v".repeat(100))
+        )
+        val value = decode(NativeMetadataEncoder.encode(metadata)).single()
+        assertEquals("s".repeat(31), value.section)
+        assertEquals("n".repeat(31), value.name)
+        assertEquals("v".repeat(63), value.value)
+    }
+
+    @Test
+    fun encodeTruncatesOnCharacterBoundary() {
+        // each character is 3 bytes in UTF-8, so only 10 fit in 31 bytes
+        val metadata = mapOf<String, Any>("€".repeat(20) to mapOf("key" to "value"))
+        val value = decode(NativeMetadataEncoder.encode(metadata)).single()
+        assertEquals("€".repeat(10), value.section)
+    }
+
+    @Test
+    fun encodeLimitsValueCount() {
+        val section = (0 until 200).associate { "key$it" to it }
+        val values = decode(NativeMetadataEncoder.encode(mapOf("numbers" to section)))
+        assertEquals(NativeMetadataEncoder.MAX_VALUES, values.size)
+    }
+}